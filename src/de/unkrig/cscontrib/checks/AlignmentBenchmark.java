@@ -0,0 +1,102 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Measures the throughput of the {@link Alignment} check on large synthetic compilation units, for each of the "{@code
+ * applyTo...}" options alone, and for all of them together. Run it as described in {@link Benchmark}; the optional
+ * command line arguments are the number of compilation units and the number of blocks per compilation unit.
+ */
+public
+class AlignmentBenchmark extends CheckStyleTest {
+
+    public static void
+    main(String[] args) throws CheckstyleException {
+
+        final int units          = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int blocksPerUnit  = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        final String[] cus    = new String[units];
+        int            tokens = 0;
+        for (int i = 0; i < units; i++) {
+            cus[i]  = SyntheticCompilationUnits.generate("Unit" + i, blocksPerUnit, i, 0.05);
+            tokens += SyntheticCompilationUnits.countTokens(cus[i]);
+        }
+        System.out.println(String.format(
+            Locale.US,
+            "%d compilation units, %,d tokens/unit",
+            units,
+            tokens / units
+        ));
+
+        AlignmentBenchmark b = new AlignmentBenchmark();
+
+        for (String attributeName : AlignmentCheckTest.APPLY_TO_ATTRIBUTE_NAMES) {
+            b.measure(attributeName, AlignmentCheckTest.only(attributeName), cus, tokens);
+        }
+
+        b.measure("all", AlignmentCheckTest.all(), cus, tokens);
+    }
+
+    private void
+    measure(String name, String[] attributeNamesAndValues, final String[] cus, int tokens) {
+
+        final InMemoryChecker checker = this.createTwChecker(checkConfig(Alignment.class, attributeNamesAndValues));
+        try {
+
+            double nsPerPass = Benchmark.measure(name, 3, 10, new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        for (String cu : cus) checker.process(cu);
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                }
+            });
+
+            System.out.println(String.format(
+                Locale.US,
+                "    %,10.0f files/s %,10.1f ns/token",
+                1E9 * cus.length / nsPerPass,
+                nsPerPass / tokens
+            ));
+        } finally {
+            checker.destroy();
+        }
+    }
+}
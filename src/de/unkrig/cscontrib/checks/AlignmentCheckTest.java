@@ -28,9 +28,19 @@
 
 package de.unkrig.cscontrib.checks;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Assert;
 import org.junit.Test;
 
+import de.unkrig.cscontrib.util.CachingTreeWalker;
 import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.ParseCache;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
 
 /**
  * Test case for the {@link WrapMethodCheck}.
@@ -38,7 +48,7 @@ import de.unkrig.cscontrib.util.CheckStyleTest;
 public
 class AlignmentCheckTest extends CheckStyleTest {
 
-    private static final String PROPERLY_ALIGNED = (
+    static final String PROPERLY_ALIGNED = (
         ""
         + "public class Main {\n"
         + "\n"
@@ -67,7 +77,7 @@ class AlignmentCheckTest extends CheckStyleTest {
         + " }"
     );
     
-    private static final String MISALIGNED = (
+    static final String MISALIGNED = (
         ""
         + "public class Main {\n"                                                                    // 1
         + "\n"
@@ -108,7 +118,7 @@ class AlignmentCheckTest extends CheckStyleTest {
         + " }"
     );
 
-    private static final String[] APPLY_TO_ATTRIBUTE_NAMES = {
+    static final String[] APPLY_TO_ATTRIBUTE_NAMES = {
         "applyToAssignments",
         "applyToCaseGroupStatements",
         "applyToFieldInitializer",
@@ -204,7 +214,164 @@ class AlignmentCheckTest extends CheckStyleTest {
         csTest(Alignment.class, MISALIGNED).addAttributes(only("applyToParameterName")).assertMessages("11x14: 'param2' should be aligned with 'param1' in line 10");
     }
 
-    private String[]
+    /**
+     * Verifies that a TAB in front of every line shifts the columns of all messages by exactly one TAB width (8),
+     * but changes nothing else.
+     */
+    @Test public void
+    testTabIndented() {
+
+        for (String attributeName : APPLY_TO_ATTRIBUTE_NAMES) {
+
+            csTest(Alignment.class, tabIndented(PROPERLY_ALIGNED)).addAttributes(only(attributeName)).assertNoMessages();
+
+            List<String> expected = new ArrayList<String>();
+            for (String message : csTest(Alignment.class, MISALIGNED).addAttributes(only(attributeName)).getMessages()) {
+                int[] position = AlignmentCheckTest.position(message);
+                expected.add(position[0] + "x" + (position[1] + 8) + message.substring(message.indexOf(':')));
+            }
+
+            csTest(Alignment.class, tabIndented(MISALIGNED)).addAttributes(only(attributeName)).assertMessages(
+                expected.toArray(new String[expected.size()])
+            );
+        }
+    }
+
+    /**
+     * Verifies that tokens are aligned by their TAB-expanded columns, not by their character indexes.
+     */
+    @Test public void
+    testMixedTabsAndSpaces() {
+
+        csTest(Alignment.class, (
+            ""
+            + "public class Main {\n"
+            + "\tint     field1 = 7;\n"
+            + "        double  field2 = 7.0;\n"
+            + "}\n"
+        )).addAttributes(all()).assertNoMessages();
+
+        // Same character index, but different columns.
+        csTest(Alignment.class, (
+            ""
+            + "public class Main {\n"
+            + "\tint    field1 = 7;\n"
+            + "    int field2  = 7;\n"
+            + "}\n"
+        )).addAttributes(only("applyToFieldName")).assertMessages("3x9: 'field2' should be aligned with 'field1' in line 2");
+    }
+
+    /**
+     * Verifies that enabling all "{@code applyTo...}" options at once reports exactly the union of what the nine
+     * {@link #only(String)} configurations report individually, i.e. that collecting all column groups in one
+     * traversal neither loses nor duplicates nor alters any message.
+     */
+    @Test public void
+    testAllOptionsIsUnionOfSingleOptions() {
+        this.assertAllIsUnion(PROPERLY_ALIGNED);
+        this.assertAllIsUnion(MISALIGNED);
+    }
+
+    /**
+     * Same as {@link #testAllOptionsIsUnionOfSingleOptions()}, but on larger, randomly misaligned compilation units,
+     * where column groups of different options overlap and interleave.
+     */
+    @Test public void
+    testAllOptionsIsUnionOfSingleOptionsSynthetic() {
+        for (long seed = 0; seed < 5; seed++) {
+            this.assertAllIsUnion(SyntheticCompilationUnits.generate("Unit" + seed, 40, seed, 0.1));
+        }
+    }
+
+    /**
+     * Verifies that, with {@link #setParseCaching(boolean) parse caching}, the check reports the same messages as
+     * under the {@link com.puppycrawl.tools.checkstyle.TreeWalker}, for each configuration, and that each compilation
+     * unit is parsed only once.
+     */
+    @Test public void
+    testParseCaching() {
+
+        List<String> cus = new ArrayList<String>();
+        cus.add(PROPERLY_ALIGNED);
+        cus.add(MISALIGNED);
+        cus.add(tabIndented(MISALIGNED));
+        cus.add(SyntheticCompilationUnits.generate("Unit", 40, 0, 0.1));
+
+        List<String[]> configurations = new ArrayList<String[]>();
+        for (String attributeName : APPLY_TO_ATTRIBUTE_NAMES) configurations.add(only(attributeName));
+        configurations.add(all());
+
+        ParseCache parseCache = CachingTreeWalker.getParseCache();
+        int        hits       = parseCache.getHits();
+        int        misses     = parseCache.getMisses();
+
+        for (String cu : cus) {
+            for (String[] configuration : configurations) {
+
+                this.setParseCaching(false);
+                List<String> expected = csTest(Alignment.class, cu).addAttributes(configuration).getMessages();
+
+                this.setParseCaching(true);
+                Assert.assertEquals(Arrays.toString(configuration), expected, csTest(Alignment.class, cu).addAttributes(configuration).getMessages());
+            }
+        }
+
+        // Only the first cached run over each compilation unit may parse it.
+        Assert.assertTrue(parseCache.getMisses() - misses <= cus.size());
+        Assert.assertEquals(cus.size() * configurations.size(), (parseCache.getHits() - hits) + (parseCache.getMisses() - misses));
+    }
+
+    private void
+    assertAllIsUnion(String cu) {
+
+        List<String> union = new ArrayList<String>();
+        for (String attributeName : APPLY_TO_ATTRIBUTE_NAMES) {
+            union.addAll(csTest(Alignment.class, cu).addAttributes(only(attributeName)).getMessages());
+        }
+
+        List<String> all = new ArrayList<String>(csTest(Alignment.class, cu).addAttributes(all()).getMessages());
+
+        Collections.sort(union, AlignmentCheckTest.BY_POSITION);
+        Collections.sort(all, AlignmentCheckTest.BY_POSITION);
+        Assert.assertEquals(union, all);
+    }
+
+    /**
+     * Orders "{@code LINExCOLUMN: message}" strings by line, then column, then message text.
+     */
+    private static final Comparator<String>
+    BY_POSITION = new Comparator<String>() {
+
+        @Override public int
+        compare(String s1, String s2) {
+            int[] p1 = AlignmentCheckTest.position(s1), p2 = AlignmentCheckTest.position(s2);
+            if (p1[0] != p2[0]) return p1[0] < p2[0] ? -1 : 1;
+            if (p1[1] != p2[1]) return p1[1] < p2[1] ? -1 : 1;
+            return s1.compareTo(s2);
+        }
+    };
+
+    private static int[]
+    position(String message) {
+        int x     = message.indexOf('x');
+        int colon = message.indexOf(':');
+        try {
+            return new int[] {
+                Integer.parseInt(message.substring(0, x)),
+                Integer.parseInt(message.substring(x + 1, colon)),
+            };
+        } catch (RuntimeException re) {
+            return new int[] { Integer.MAX_VALUE, Integer.MAX_VALUE };
+        }
+    }
+
+    /**
+     * @return The <var>cu</var>, with a TAB inserted at the beginning of each line
+     */
+    static String
+    tabIndented(String cu) { return "\t" + cu.replace("\n", "\n\t"); }
+
+    static String[]
     only(String attributeName) {
         
         String[] result = new String[APPLY_TO_ATTRIBUTE_NAMES.length * 2];
@@ -218,4 +385,20 @@ class AlignmentCheckTest extends CheckStyleTest {
         
         return result;
     }
+
+    /**
+     * @return Attribute names and values that enable all the "{@code applyTo...}" options
+     */
+    static String[]
+    all() {
+
+        String[] result = new String[APPLY_TO_ATTRIBUTE_NAMES.length * 2];
+
+        for (int i = 0; i < APPLY_TO_ATTRIBUTE_NAMES.length; i++) {
+            result[2 * i]     = APPLY_TO_ATTRIBUTE_NAMES[i];
+            result[2 * i + 1] = "true";
+        }
+
+        return result;
+    }
 }
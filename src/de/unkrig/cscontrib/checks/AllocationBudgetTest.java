@@ -0,0 +1,88 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import de.unkrig.cscontrib.util.AllocationCheckStyleTest;
+import de.unkrig.cscontrib.util.PerformanceTests;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Verifies that the cs-contrib checks stay within their allocation budgets, see "{@code
+ * allocation-budgets.properties}".
+ * <p>
+ *   These are {@link PerformanceTests}, because the measurements depend on the JVM.
+ * </p>
+ */
+@Category(PerformanceTests.class) public
+class AllocationBudgetTest extends AllocationCheckStyleTest {
+
+    private static final String[] CUS = {
+        SyntheticCompilationUnits.generate("Unit1", 30, 1, 0),
+        SyntheticCompilationUnits.generate("Unit2", 30, 2, 0),
+        SyntheticCompilationUnits.generate("Unit3", 30, 3, 0),
+        SyntheticCompilationUnits.trailingComments("Unit4", 300),
+    };
+
+    @Before public void
+    assumeEnabled() {
+        PerformanceTests.assumeEnabled();
+    }
+
+    @Test public void
+    testWhitespace() {
+        this.assertAllocationBudget("Whitespace", checkConfig(Whitespace.class), AllocationBudgetTest.CUS);
+    }
+
+    @Test public void
+    testAlignment() {
+        this.assertAllocationBudget(
+            "Alignment",
+            checkConfig(Alignment.class, AlignmentCheckTest.all()),
+            AllocationBudgetTest.CUS
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheck() {
+        this.assertAllocationBudget("WrapMethodCheck", checkConfig(WrapMethodCheck.class), AllocationBudgetTest.CUS);
+    }
+
+    @Test public void
+    testCppCommentAlignment() {
+        this.assertAllocationBudget(
+            "CppCommentAlignment",
+            checkConfig(CppCommentAlignment.class),
+            AllocationBudgetTest.CUS
+        );
+    }
+}
@@ -0,0 +1,139 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+import de.unkrig.cscontrib.util.Allocations;
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.Benchmark;
+
+/**
+ * Compares the heap allocation and the time of recording audit events with an {@link AuditEventRecorder} with that of a
+ * listener that concatenates a message string for each event. Run it as described in {@link Benchmark}; the optional
+ * argument is the number of events (default: 200,000).
+ */
+public
+class AuditEventRecorderBenchmark {
+
+    public static void
+    main(String[] args) {
+
+        final AuditEvent[] events = AuditEventRecorderBenchmark.events(
+            args.length >= 1 ? Integer.parseInt(args[0]) : 200000
+        );
+
+        Runnable concatenating = new Runnable() {
+
+            @Override public void
+            run() { AuditEventRecorderBenchmark.replay(events, new ConcatenatingListener()); }
+        };
+
+        Runnable recording = new Runnable() {
+
+            @Override public void
+            run() { AuditEventRecorderBenchmark.replay(events, new AuditEventRecorder()); }
+        };
+
+        double concatenatingNs = Benchmark.measure("Concatenating listener, all events", 5, 20, concatenating);
+        double recordingNs     = Benchmark.measure("AuditEventRecorder, all events", 5, 20, recording);
+
+        long concatenatingBytes = Allocations.measure(concatenating);
+        long recordingBytes     = Allocations.measure(recording);
+
+        System.out.println(String.format(
+            Locale.US,
+            "%,d events: %,.1f vs. %,.1f ns/event, %,.1f vs. %,.1f bytes/event",
+            events.length,
+            concatenatingNs / events.length,
+            recordingNs / events.length,
+            (double) concatenatingBytes / events.length,
+            (double) recordingBytes / events.length
+        ));
+    }
+
+    /**
+     * @return Events as the {@code Whitespace} check would typically fire them; all for the same file
+     */
+    private static AuditEvent[]
+    events(int n) {
+
+        final String fileName = "Main.java";
+
+        AuditEvent[] result = new AuditEvent[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = new AuditEvent(AuditEventRecorderBenchmark.class, fileName, new LocalizedMessage(
+                1 + i / 4,                                                    // lineNo
+                1 + 8 * (i % 4),                                              // columnNo
+                "com.puppycrawl.tools.checkstyle.checks.whitespace.messages", // bundle
+                i % 2 == 0 ? "ws.notPreceded" : "ws.notFollowed",             // key
+                new Object[] { i % 3 == 0 ? "=" : "+" },                      // args
+                SeverityLevel.ERROR,                                          // severityLevel
+                null,                                                         // moduleId
+                Whitespace.class,                                             // sourceClass
+                null                                                          // customMessage
+            ));
+        }
+
+        return result;
+    }
+
+    private static void
+    replay(AuditEvent[] events, AuditListener listener) {
+        for (AuditEvent event : events) listener.addError(event);
+    }
+
+    /**
+     * Records the audit events the way the tests used to: As "<var>line</var>x<var>column</var>:
+     * <var>message</var>" strings.
+     */
+    static
+    class ConcatenatingListener implements AuditListener {
+
+        final List<String> messages    = new ArrayList<String>();
+        final List<String> sourceNames = new ArrayList<String>();
+
+        @Override public void auditStarted(AuditEvent event)                      {}
+        @Override public void auditFinished(AuditEvent event)                     {}
+        @Override public void fileStarted(AuditEvent event)                       {}
+        @Override public void fileFinished(AuditEvent event)                      {}
+        @Override public void addException(AuditEvent event, Throwable throwable) {}
+
+        @Override public void
+        addError(AuditEvent event) {
+            this.messages.add(event.getLine() + "x" + event.getColumn() + ": " + event.getMessage());
+            this.sourceNames.add(event.getSourceName());
+        }
+    }
+}
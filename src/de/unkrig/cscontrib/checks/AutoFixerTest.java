@@ -0,0 +1,325 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.AutoFixer;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Test cases for the {@link AutoFixer}, with the {@link Alignment} and the {@link WrapMethodCheck}.
+ */
+public
+class AutoFixerTest extends CheckStyleTest {
+
+    @ClassRule public static final TemporaryCorpus CORPUS = new TemporaryCorpus("cs-contrib-autofix", 100, 12, 0, 0.1);
+
+    @Test public void
+    testAlignmentNothingToFix() {
+        csTest(Alignment.class, AlignmentCheckTest.PROPERLY_ALIGNED).addAttributes(AlignmentCheckTest.all()).assertFixed(AlignmentCheckTest.PROPERLY_ALIGNED);
+    }
+
+    @Test public void
+    testAlignmentApplyToAssignments() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToAssignments")).assertFixed(misaligned(
+            "         y = 8;\n",
+            "         y   = 8;\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToCaseGroupStatements() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToCaseGroupStatements")).assertFixed(misaligned(
+            "         case 1: break;\n",
+            "         case 1:  break;\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToFieldInitializer() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToFieldInitializer")).assertFixed(misaligned(
+            "     double field4  = 7.0;             // Misaligned field initializers\n",
+            "     double field4 = 7.0;             // Misaligned field initializers\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToFieldName() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToFieldName")).assertFixed(misaligned(
+            "     int field1    = 7;\n",
+            "     int    field1    = 7;\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToLocalVariableInitializer() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToLocalVariableInitializer")).assertFixed(misaligned(
+            "         double locvar2  = 7.0;        // Misaligned local variable initializers\n",
+            "         double locvar2 = 7.0;        // Misaligned local variable initializers\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToLocalVariableName() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToLocalVariableName")).assertFixed(misaligned(
+            "         int locvar1    = 7;\n",
+            "         int    locvar1    = 7;\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToMethodBody() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToMethodBody")).assertFixed(misaligned(
+            "     public void        meth4()  {}    // Misaligned method bodies\n",
+            "     public void        meth4() {}    // Misaligned method bodies\n",
+            "     public void        meth6() {}    // Misaligned method bodies\n",
+            "     public void        meth6() { }    // Misaligned method bodies\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToMethodName() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToMethodName")).assertFixed(misaligned(
+            "     public void meth2()        {}     // Misaligned method names\n",
+            "     public void        meth2()        {}     // Misaligned method names\n"
+        ));
+    }
+
+    @Test public void
+    testAlignmentApplyToParameterName() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToParameterName")).assertFixed(misaligned(
+            "         int param2                    // Misaligned parameter names\n",
+            "         int      param2                    // Misaligned parameter names\n"
+        ));
+    }
+
+    @Test public void
+    testWrapMethodCheckColumn() {
+        csTest(WrapMethodCheck.class, "class Foo {\n    int\n     method() { System.out.println(\"HELLO\"); }\n}").assertFixed(
+            "class Foo {\n    int\n    method() { System.out.println(\"HELLO\"); }\n}"
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheckColumnTabIndented() {
+        csTest(WrapMethodCheck.class, "class Foo {\n\tint\n\t method() { System.out.println(\"HELLO\"); }\n}").assertFixed(
+            "class Foo {\n\tint\n\tmethod() { System.out.println(\"HELLO\"); }\n}"
+        );
+    }
+
+    @Test public void
+    testAlignmentMixedTabsAndSpaces() {
+        csTest(Alignment.class, "public class Main {\n\tint    field1 = 7;\n    int field2  = 7;\n}\n").addAttributes(AlignmentCheckTest.only("applyToFieldName")).assertFixed(
+            "public class Main {\n\tint    field1 = 7;\n    int        field2  = 7;\n}\n"
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheckMultipleArgsPerLine() {
+        csTest(WrapMethodCheck.class, "class Foo {\n    int\n    method() {\n        System.out.printf(\n            \"%s%n\", \"HELLO\"\n        );\n    }\n}").assertFixed(
+            "class Foo {\n    int\n    method() {\n        System.out.printf(\n            \"%s%n\",\n            \"HELLO\"\n        );\n    }\n}"
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheckMultipleParametersPerLine() {
+        csTest(WrapMethodCheck.class, "class Foo {\n    int\n    method(\n        int a, int b\n    ) {}\n}").assertFixed(
+            "class Foo {\n    int\n    method(\n        int a,\n        int b\n    ) {}\n}"
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheckOneLineDecl() {
+        csTest(WrapMethodCheck.class, "class Foo {\n    int method(int a, int b) {}\n}").addAttribute("allowOneLineDecl", "false").assertFixed(
+            "class Foo {\n    int\n    method(int a, int b) {}\n}"
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheckWrapDeclBeforeNameNever() {
+        csTest(WrapMethodCheck.class, "class Foo {\n    int\n    method() { System.out.println(\"HELLO\");\n}\n}").addAttribute("wrapDeclBeforeName", "never").assertFixed(
+            "class Foo {\n    int method() { System.out.println(\"HELLO\");\n}\n}"
+        );
+    }
+
+    @Test public void
+    testWrapMethodCheckUnwrapBeforeLineComment() {
+        csTest(WrapMethodCheck.class, "class Foo {\n    int // note\n    method() {}\n}").addAttribute("wrapDeclBeforeName", "never").assertFixed(
+            "class Foo {\n    int method() {} // note\n}"
+        );
+    }
+
+    @Test public void
+    testUnwrapBeforeLineComment() {
+        Assert.assertEquals(
+            "class Foo {\n    int method() {} // note\n}",
+            AutoFixer.fix("class Foo {\n    int // note\n    method() {}\n}", AutoFixerTest.unwrap(3, 5))
+        );
+    }
+
+    @Test public void
+    testUnwrapAfterCommentOnlyLine() {
+        String code = "class Foo {\n    int\n    // note\n    method() {}\n}";
+        Assert.assertEquals(code, AutoFixer.fix(code, AutoFixerTest.unwrap(4, 5)));
+    }
+
+    @Test public void
+    testUnwrapAfterBlockComment() {
+        String code = "class Foo {\n    int /* note */\n    method() {}\n}";
+        Assert.assertEquals(code, AutoFixer.fix(code, AutoFixerTest.unwrap(3, 5)));
+    }
+
+    @Test public void
+    testLeadingEmptyLines() {
+        AuditEventRecorder events = new AuditEventRecorder();
+        events.add(4, 6, null, null, null, "'int' must appear in column 5, not 6");
+        Assert.assertEquals(
+            "\n\nclass Foo {\n    int x;\n}\n",
+            AutoFixer.fix("\n\nclass Foo {\n     int x;\n}\n", events)
+        );
+    }
+
+    /**
+     * Verifies that the multi-pass fix maps the event columns with the TAB width of the checker configuration, not
+     * with the default TAB width.
+     */
+    @Test public void
+    testCheckerTabWidth() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class));
+
+        DefaultConfiguration checkerConfiguration = this.createCheckerConfig(treeWalker);
+        checkerConfiguration.addAttribute("tabWidth", "4");
+
+        InMemoryChecker checker = CheckStyleTest.createChecker(checkerConfiguration);
+        try {
+            Assert.assertEquals(4, checker.getTabWidth());
+            Assert.assertEquals(
+                "class Foo {\n\tint\n\tmethod() { System.out.println(\"HELLO\"); }\n}",
+                AutoFixer.fix(
+                    checker,
+                    "Foo.java",
+                    "class Foo {\n\tint\n\t method() { System.out.println(\"HELLO\"); }\n}",
+                    AutoFixer.DEFAULT_MAX_PASSES
+                ).code
+            );
+        } finally {
+            checker.destroy();
+        }
+    }
+
+    /**
+     * Verifies that fixing files in parallel yields the same code, in the same file order, as fixing them one after
+     * the other.
+     */
+    @Test public void
+    testBatchSameAsSequential() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class));
+
+        List<String> expected = new ArrayList<String>();
+        {
+            InMemoryChecker checker = this.createTwChecker(treeWalker.getChildren());
+            try {
+                for (File file : AutoFixerTest.CORPUS.getFiles()) {
+                    String code = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+                    expected.add(AutoFixer.fix(checker, file.getPath(), code, AutoFixer.DEFAULT_MAX_PASSES).code);
+                }
+            } finally {
+                checker.destroy();
+            }
+        }
+
+        for (int parallelism : new int[] { 1, 4 }) {
+
+            AutoFixer fixer = new AutoFixer(this.createCheckerConfig(treeWalker), parallelism);
+            try {
+                final List<File>   files  = new ArrayList<File>();
+                final List<String> actual = new ArrayList<String>();
+
+                fixer.process(Arrays.asList(AutoFixerTest.CORPUS.getFiles()), new AutoFixer.Output() {
+
+                    @Override public void
+                    fixed(File file, AutoFixer.Result result) {
+                        files.add(file);
+                        actual.add(result.code);
+                    }
+                });
+
+                Assert.assertEquals("Parallelism " + parallelism, Arrays.asList(AutoFixerTest.CORPUS.getFiles()), files);
+                Assert.assertEquals("Parallelism " + parallelism, expected, actual);
+            } finally {
+                fixer.destroy();
+            }
+        }
+    }
+
+    /**
+     * @return A recorder with one "unwrap" event at the given position
+     */
+    private static AuditEventRecorder
+    unwrap(int line, int column) {
+        AuditEventRecorder events = new AuditEventRecorder();
+        events.add(line, column, null, null, null, "'method' must appear on same line as 'int'");
+        return events;
+    }
+
+    /**
+     * @return {@link AlignmentCheckTest#MISALIGNED}, with the given lines replaced
+     */
+    private static String
+    misaligned(String... oldAndNewLines) {
+
+        String result = AlignmentCheckTest.MISALIGNED;
+        for (int i = 0; i < oldAndNewLines.length; i += 2) {
+            Assert.assertTrue(oldAndNewLines[i], result.contains(oldAndNewLines[i]));
+            result = result.replace(oldAndNewLines[i], oldAndNewLines[i + 1]);
+        }
+
+        return result;
+    }
+}
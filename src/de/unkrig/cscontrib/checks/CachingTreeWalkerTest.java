@@ -0,0 +1,93 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.cscontrib.util.CachingTreeWalker;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+
+/**
+ * Tests for the {@link CachingTreeWalker}.
+ */
+public
+class CachingTreeWalkerTest extends CheckStyleTest {
+
+    /**
+     * Verifies that the {@link CachingTreeWalker} yields the same messages as the {@link
+     * com.puppycrawl.tools.checkstyle.TreeWalker}, for all the configurations of the {@link AlignmentCheckTest},
+     * and that the compilation units are parsed only once.
+     */
+    @Test public void
+    testSameMessagesAsTreeWalker() {
+
+        String[] cus = { AlignmentCheckTest.PROPERLY_ALIGNED, AlignmentCheckTest.MISALIGNED };
+
+        final int hits = CachingTreeWalker.getParseCache().getHits();
+
+        for (String attributeName : AlignmentCheckTest.APPLY_TO_ATTRIBUTE_NAMES) {
+            for (String cu : cus) {
+
+                this.setParseCaching(false);
+                List<String> expected = csTest(Alignment.class, cu).addAttributes(AlignmentCheckTest.only(attributeName)).getMessages();
+
+                this.setParseCaching(true);
+                List<String> actual = csTest(Alignment.class, cu).addAttributes(AlignmentCheckTest.only(attributeName)).getMessages();
+
+                Assert.assertEquals(attributeName, expected, actual);
+            }
+        }
+
+        // Only the first check of each compilation unit may require a parse.
+        int n = AlignmentCheckTest.APPLY_TO_ATTRIBUTE_NAMES.length * cus.length;
+        Assert.assertTrue(CachingTreeWalker.getParseCache().getHits() - hits >= n - cus.length);
+    }
+
+    @Test public void
+    testCommentChecks() {
+
+        String cu = (
+            ""
+            + "class Foo {     //\n"
+            + "    int x;      //\n"
+            + "    int yyy;      //\n"
+            + "}\n"
+        );
+
+        this.setParseCaching(false);
+        List<String> expected = csTest(CppCommentAlignment.class, cu).getMessages();
+
+        this.setParseCaching(true);
+        Assert.assertEquals(expected, csTest(CppCommentAlignment.class, cu).getMessages());
+        Assert.assertEquals(expected, csTest(CppCommentAlignment.class, cu).getMessages());
+    }
+}
@@ -0,0 +1,182 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.cscontrib.util.CheckDaemon;
+import de.unkrig.cscontrib.util.LatencyHistogram;
+import de.unkrig.cscontrib.util.MessageCollector;
+import de.unkrig.cscontrib.util.ParallelChecker;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Compares the latency of checking a few files, as a pre-commit hook would, in three ways: By starting a new JVM (with
+ * the {@link CheckDaemon} in STDIN mode), by configuring a new checker in a running JVM, and by asking a warm {@link
+ * CheckDaemon}. Run it as described in {@link de.unkrig.cscontrib.util.Benchmark}; the optional command line arguments
+ * are the number of files per request and the number of cold JVM starts.
+ */
+public
+class CheckDaemonBenchmark {
+
+    public static void
+    main(String[] args) throws Exception {
+
+        final int filesPerRequest = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        final int coldStarts      = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        TemporaryCorpus corpus = new TemporaryCorpus("cs-contrib-daemon-benchmark", filesPerRequest, 30, 0, 0.05);
+        try {
+            File[] files  = corpus.getFiles();
+            File   config = new File(corpus.getDirectory(), "checkstyle.xml");
+            CheckDaemonBenchmark.writeConfiguration(config);
+
+            Configuration configuration = ConfigurationLoader.loadConfiguration(
+                config.getPath(),
+                new PropertiesExpander(System.getProperties())
+            );
+
+            // Cold: JVM startup, configuration and check.
+            LatencyHistogram coldJvm = new LatencyHistogram();
+            for (int i = 0; i < coldStarts; i++) {
+                long start = System.nanoTime();
+                CheckDaemonBenchmark.checkInNewJvm(config, files);
+                coldJvm.record(System.nanoTime() - start);
+            }
+            CheckDaemonBenchmark.report("Cold: new JVM", coldJvm);
+
+            // Cold: configuration and check.
+            LatencyHistogram coldChecker = new LatencyHistogram();
+            for (int i = 0; i < 20; i++) {
+                long            start = System.nanoTime();
+                ParallelChecker pc    = new ParallelChecker(configuration, 1);
+                try {
+                    pc.process(Arrays.asList(files), new MessageCollector());
+                } finally {
+                    pc.destroy();
+                }
+                coldChecker.record(System.nanoTime() - start);
+            }
+            CheckDaemonBenchmark.report("Cold: new checker", coldChecker);
+
+            // Warm: request to a running daemon.
+            CheckDaemon daemon = new CheckDaemon(configuration, Runtime.getRuntime().availableProcessors());
+            try {
+                File tokenFile = new File(corpus.getDirectory(), "token");
+                int  port      = daemon.listen(0, tokenFile);
+
+                for (int i = 0; i < 50; i++) CheckDaemon.check(port, tokenFile, Arrays.asList(files));
+
+                LatencyHistogram warm = new LatencyHistogram();
+                for (int i = 0; i < 200; i++) {
+                    long start = System.nanoTime();
+                    CheckDaemon.check(port, tokenFile, Arrays.asList(files));
+                    warm.record(System.nanoTime() - start);
+                }
+                CheckDaemonBenchmark.report("Warm: daemon over socket", warm);
+            } finally {
+                daemon.destroy();
+            }
+        } finally {
+            corpus.delete();
+        }
+    }
+
+    private static void
+    checkInNewJvm(File config, File[] files) throws IOException, InterruptedException {
+
+        List<String> command = Arrays.asList(
+            new File(System.getProperty("java.home"), "bin/java").getPath(),
+            "-cp",
+            System.getProperty("java.class.path"),
+            CheckDaemon.class.getName(),
+            config.getPath()
+        );
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        OutputStream os = process.getOutputStream();
+        for (File file : files) os.write((file.getPath() + '\n').getBytes("UTF-8"));
+        os.close();
+
+        InputStream is = process.getInputStream();
+        while (is.read() != -1);
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0) throw new IOException("Exit code " + exitCode);
+    }
+
+    private static void
+    writeConfiguration(File config) throws IOException {
+
+        Writer w = new OutputStreamWriter(new FileOutputStream(config), "UTF-8");
+        try {
+            w.write(
+                ""
+                + "<?xml version=\"1.0\"?>\n"
+                + "<!DOCTYPE module PUBLIC\n"
+                + "    \"-//Checkstyle//DTD Checkstyle Configuration 1.3//EN\"\n"
+                + "    \"https://checkstyle.org/dtds/configuration_1_3.dtd\">\n"
+                + "<module name=\"Checker\">\n"
+                + "  <module name=\"TreeWalker\">\n"
+                + "    <module name=\"" + Alignment.class.getName() + "\" />\n"
+                + "    <module name=\"" + WrapMethodCheck.class.getName() + "\" />\n"
+                + "    <module name=\"" + CppCommentAlignment.class.getName() + "\" />\n"
+                + "    <module name=\"" + Whitespace.class.getName() + "\" />\n"
+                + "  </module>\n"
+                + "</module>\n"
+            );
+        } finally {
+            w.close();
+        }
+    }
+
+    private static void
+    report(String name, LatencyHistogram latencies) {
+        System.out.println(String.format(
+            Locale.US,
+            "%-30s p50 < %,10.1f ms, p99 < %,10.1f ms, max %,10.1f ms",
+            name,
+            latencies.getPercentileNs(50) / 1E6,
+            latencies.getPercentileNs(99) / 1E6,
+            latencies.getMaxNs() / 1E6
+        ));
+    }
+}
@@ -0,0 +1,241 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+
+import de.unkrig.cscontrib.util.CheckDaemon;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MessageCollector;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Drives a {@link CheckDaemon} through a local socket and through its STDIN/STDOUT protocol, and verifies that it
+ * answers exactly the audit events that a freshly configured checker reports.
+ */
+public
+class CheckDaemonTest extends CheckStyleTest {
+
+    @ClassRule public static final TemporaryCorpus CORPUS = new TemporaryCorpus("cs-contrib-daemon", 20, 12, 0, 0.05);
+
+    private final DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+
+    private CheckDaemon daemon;
+    private int         port;
+    private File        tokenFile;
+
+    @Before public void
+    startDaemon() throws IOException {
+
+        this.treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+        this.treeWalker.addChild(checkConfig(WrapMethodCheck.class));
+        this.treeWalker.addChild(checkConfig(CppCommentAlignment.class));
+        this.treeWalker.addChild(checkConfig(Whitespace.class));
+
+        this.daemon    = new CheckDaemon(this.createCheckerConfig(this.treeWalker), 2);
+        this.tokenFile = new File(CheckDaemonTest.CORPUS.getDirectory(), "token");
+        this.port      = this.daemon.listen(0, this.tokenFile);
+    }
+
+    @After public void
+    stopDaemon() {
+        this.daemon.destroy();
+    }
+
+    @Test public void
+    testSocket() throws Exception {
+
+        List<String> expected = this.expected(CheckDaemonTest.CORPUS.getFiles());
+
+        // The second and third requests are served by warm checkers.
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("Request #" + i, expected, CheckDaemon.check(this.port, this.tokenFile, Arrays.asList(CheckDaemonTest.CORPUS.getFiles())));
+        }
+
+        // One file at a time, as a pre-commit hook would do it.
+        for (File file : CheckDaemonTest.CORPUS.getFiles()) {
+            Assert.assertEquals(file.getName(), this.expected(file), CheckDaemon.check(this.port, this.tokenFile, Collections.singletonList(file)));
+        }
+    }
+
+    @Test public void
+    testConcurrentClients() throws Exception {
+
+        final List<String> expected = this.expected(CheckDaemonTest.CORPUS.getFiles());
+        final List<Object> results  = Collections.synchronizedList(new ArrayList<Object>());
+
+        List<Thread> clients = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            clients.add(new Thread() {
+
+                @Override public void
+                run() {
+                    try {
+                        results.add(CheckDaemon.check(CheckDaemonTest.this.port, CheckDaemonTest.this.tokenFile, Arrays.asList(CheckDaemonTest.CORPUS.getFiles())));
+                    } catch (Exception e) {
+                        results.add(e);
+                    }
+                }
+            });
+        }
+        for (Thread client : clients) client.start();
+        for (Thread client : clients) client.join();
+
+        Assert.assertEquals(clients.size(), results.size());
+        for (Object result : results) Assert.assertEquals(expected, result);
+    }
+
+    /**
+     * Verifies that a file that cannot be read is reported as one message, like {@link
+     * com.puppycrawl.tools.checkstyle.Checker} does, and that the other files of the request are checked nevertheless.
+     */
+    @Test public void
+    testNonexistentFile() throws Exception {
+
+        File noSuchFile = new File(CheckDaemonTest.CORPUS.getDirectory(), "NoSuchFile.java");
+        File file       = CheckDaemonTest.CORPUS.getFiles()[0];
+
+        List<String> answer = CheckDaemon.check(this.port, this.tokenFile, Arrays.asList(noSuchFile, file));
+
+        Assert.assertTrue(answer.toString(), !answer.isEmpty() && answer.get(0).startsWith(noSuchFile.getAbsolutePath() + ":1x0: Got an exception - "));
+        Assert.assertEquals(this.expected(file), answer.subList(1, answer.size()));
+
+        // The daemon must still be usable.
+        Assert.assertEquals(this.expected(file), CheckDaemon.check(this.port, this.tokenFile, Collections.singletonList(file)));
+    }
+
+    @Test public void
+    testWrongToken() throws Exception {
+
+        File wrongTokenFile = new File(CheckDaemonTest.CORPUS.getDirectory(), "wrong-token");
+        Files.write(wrongTokenFile.toPath(), "0123456789abcdef".getBytes("UTF-8"));
+        try {
+            Assert.assertEquals(
+                Collections.singletonList("ERROR: Authentication failed"),
+                CheckDaemon.check(this.port, wrongTokenFile, Collections.singletonList(CheckDaemonTest.CORPUS.getFiles()[0]))
+            );
+
+            // An unauthenticated "SHUTDOWN" must not stop the daemon.
+            CheckDaemon.shutdown(this.port, wrongTokenFile);
+        } finally {
+            wrongTokenFile.delete();
+        }
+
+        Assert.assertEquals(this.expected(CheckDaemonTest.CORPUS.getFiles()[0]), CheckDaemon.check(this.port, this.tokenFile, Collections.singletonList(CheckDaemonTest.CORPUS.getFiles()[0])));
+    }
+
+    @Test public void
+    testTokenFilePermissions() throws Exception {
+
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        Assert.assertEquals(
+            EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+            Files.getPosixFilePermissions(this.tokenFile.toPath())
+        );
+    }
+
+    @Test public void
+    testStdin() throws Exception {
+
+        StringBuilder request = new StringBuilder();
+        for (File file : CheckDaemonTest.CORPUS.getFiles()) request.append(file.getPath()).append('\n');
+        request.append('\n');
+        request.append(CheckDaemonTest.CORPUS.getFiles()[0].getPath()).append('\n'); // Pending at end-of-input.
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.daemon.serve(new ByteArrayInputStream(request.toString().getBytes("UTF-8")), out);
+
+        List<String> expected = new ArrayList<String>(this.expected(CheckDaemonTest.CORPUS.getFiles()));
+        expected.add("");
+        expected.addAll(this.expected(CheckDaemonTest.CORPUS.getFiles()[0]));
+        expected.add("");
+
+        Assert.assertEquals(expected, Arrays.asList(new String(out.toByteArray(), "UTF-8").split("\n", -1)).subList(0, expected.size()));
+    }
+
+    @Test public void
+    testShutdown() throws Exception {
+
+        CheckDaemon.shutdown(this.port, this.tokenFile);
+        this.daemon.awaitShutdown();
+
+        Assert.assertFalse(this.tokenFile.exists());
+
+        try {
+            new Socket(InetAddress.getLoopbackAddress(), this.port).close();
+            Assert.fail("Daemon still listening");
+        } catch (IOException ioe) {
+            ;
+        }
+    }
+
+    /**
+     * @return The answer lines that the daemon is expected to send for the <var>files</var>
+     */
+    private List<String>
+    expected(File... files) {
+
+        InMemoryChecker checker = this.createTwChecker(this.treeWalker.getChildren());
+        try {
+            MessageCollector events = CheckStyleTest.process(checker, files);
+
+            List<String> result = new ArrayList<String>();
+            for (int i = 0; i < events.size(); i++) result.add(events.getFileName(i) + ":" + events.format(i));
+
+            return result;
+        } finally {
+            checker.destroy();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+import de.unkrig.cscontrib.util.CheckProfiler;
+import de.unkrig.cscontrib.util.CheckProfiler.CheckTiming;
+import de.unkrig.cscontrib.util.CheckProfiler.FileTiming;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.ParseOnlyCheck;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Tests for the {@link CheckProfiler}.
+ */
+public
+class CheckProfilerTest extends CheckStyleTest {
+
+    private static final List<String> CUS = new ArrayList<String>();
+    static {
+        for (int i = 0; i < 10; i++) CheckProfilerTest.CUS.add(SyntheticCompilationUnits.generate("Unit" + i, 3 * (i + 1), i, 0.05));
+    }
+
+    @Test public void
+    testTimings() {
+
+        CheckProfiler profiler = this.profile(
+            CheckProfilerTest.CUS,
+            checkConfig(Alignment.class, AlignmentCheckTest.all()),
+            checkConfig(WrapMethodCheck.class),
+            checkConfig(ParseOnlyCheck.class)
+        );
+
+        List<FileTiming> files = profiler.getFileTimings();
+        Assert.assertEquals(CheckProfilerTest.CUS.size(), files.size());
+        Assert.assertEquals("Unit0.java", files.get(0).fileName);
+        Assert.assertEquals(CheckProfilerTest.CUS.size(), profiler.getFileLatencies().getCount());
+
+        // Each check executes on each file, and all checks together take less time than the files.
+        long filesWallNs = 0, checksWallNs = 0;
+        for (FileTiming ft : files) {
+            filesWallNs += ft.wallNs;
+            Assert.assertNotNull(ft.getCheckTiming(Alignment.class.getName()));
+            Assert.assertNotNull(ft.getCheckTiming(WrapMethodCheck.class.getName()));
+            Assert.assertNotNull(ft.getCheckTiming(ParseOnlyCheck.class.getName()));
+        }
+        for (CheckTiming ct : profiler.getCheckTimings()) {
+            Assert.assertEquals(ct.checkName, CheckProfilerTest.CUS.size(), ct.getFiles());
+            Assert.assertEquals(CheckProfilerTest.CUS.size(), profiler.getCheckLatencies(ct.checkName).getCount());
+            checksWallNs += ct.getWallNs();
+        }
+        Assert.assertEquals(3, profiler.getCheckTimings().size());
+        Assert.assertTrue(checksWallNs <= filesWallNs);
+
+        // Each compilation unit declares exactly one class.
+        Assert.assertEquals(CheckProfilerTest.CUS.size(), profiler.getTokenVisits(ParseOnlyCheck.class.getName(), TokenTypes.CLASS_DEF));
+        Assert.assertEquals(0, profiler.getTokenVisits(ParseOnlyCheck.class.getName(), TokenTypes.METHOD_DEF));
+    }
+
+    /**
+     * Profiles the {@link Whitespace} check, which visits token types beyond {@code TokenUtil.getTokenTypesTotalNumber()},
+     * e.g. {@code GENERIC_START}, {@code LAMBDA} and {@code METHOD_REF}.
+     */
+    @Test public void
+    testHighTokenTypes() {
+
+        List<String> cus = new ArrayList<String>();
+        cus.add(
+            ""
+            + "import java.util.*;\n"
+            + "import java.util.function.*;\n"
+            + "\n"
+            + "public class Generics {\n"
+            + "\n"
+            + "    @SuppressWarnings(\"unchecked\") List<String> list = new ArrayList<String>();\n"
+            + "\n"
+            + "    void meth(String... args) {\n"
+            + "        Function<String, Integer> f1 = s -> s.length();\n"
+            + "        Function<String, Integer> f2 = String::length;\n"
+            + "        try (java.io.StringReader r = new java.io.StringReader(\"\")) {\n"
+            + "            Map<String, List<Integer>> m = new HashMap<>();\n"
+            + "        }\n"
+            + "    }\n"
+            + "}\n"
+        );
+
+        CheckProfiler profiler = this.profile(cus, checkConfig(Whitespace.class));
+
+        Assert.assertEquals(1, profiler.getFileTimings().size());
+        Assert.assertNotNull(profiler.getCheckTiming(Whitespace.class.getName()));
+        Assert.assertTrue(profiler.getTokenVisits(Whitespace.class.getName(), TokenTypes.GENERIC_START) > 0);
+        Assert.assertTrue(profiler.getTokenVisits(Whitespace.class.getName(), TokenTypes.LAMBDA) > 0);
+
+        // The report names the token types, with their visit counts.
+        List<String> report = CheckProfilerTest.report(profiler, 3);
+        int          i      = report.indexOf("Token visits of " + Whitespace.class.getName() + ":");
+        Assert.assertTrue(report.toString(), i != -1);
+
+        List<String> visits = new ArrayList<String>();
+        for (i++; i < report.size() && report.get(i).startsWith("  "); i++) visits.add(report.get(i).trim().replace(",", ""));
+        Assert.assertTrue(visits.toString(), visits.contains("GENERIC_START " + profiler.getTokenVisits(Whitespace.class.getName(), TokenTypes.GENERIC_START)));
+        Assert.assertTrue(visits.toString(), visits.contains("LAMBDA " + profiler.getTokenVisits(Whitespace.class.getName(), TokenTypes.LAMBDA)));
+        for (String visit : visits) Assert.assertFalse(visit, visit.endsWith(" 0"));
+    }
+
+    @Test public void
+    testTopN() {
+
+        CheckProfiler profiler = this.profile(
+            CheckProfilerTest.CUS,
+            checkConfig(Alignment.class, AlignmentCheckTest.all()),
+            checkConfig(ParseOnlyCheck.class)
+        );
+
+        List<FileTiming> slowestFiles = profiler.getSlowestFiles(3);
+        Assert.assertEquals(3, slowestFiles.size());
+        for (int i = 1; i < slowestFiles.size(); i++) {
+            Assert.assertTrue(slowestFiles.get(i - 1).wallNs >= slowestFiles.get(i).wallNs);
+        }
+
+        List<CheckTiming> slowestChecks = profiler.getSlowestChecks(5);
+        Assert.assertEquals(2, slowestChecks.size());
+        Assert.assertTrue(slowestChecks.get(0).getWallNs() >= slowestChecks.get(1).getWallNs());
+
+        Assert.assertTrue(profiler.getFileLatencies().getPercentileNs(50) <= profiler.getFileLatencies().getMaxNs());
+
+        // The report lists the slowest files and checks, slowest first.
+        List<String> report = CheckProfilerTest.report(profiler, 3);
+
+        int i = report.indexOf("Slowest 3 of " + CheckProfilerTest.CUS.size() + " files (wall/CPU ms):");
+        Assert.assertTrue(report.toString(), i != -1);
+        for (FileTiming ft : slowestFiles) {
+            String line = report.get(++i);
+            Assert.assertTrue(line, line.endsWith("  " + ft.fileName));
+        }
+
+        Assert.assertEquals("Slowest 3 of 2 checks (wall/CPU ms):", report.get(++i));
+        for (CheckTiming ct : slowestChecks) {
+            String line = report.get(++i);
+            Assert.assertTrue(line, line.endsWith("  " + ct.checkName));
+        }
+
+        Assert.assertEquals("Per-file latencies:", report.get(++i));
+    }
+
+    private static List<String>
+    report(CheckProfiler profiler, int n) {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            PrintStream ps = new PrintStream(baos, true, "UTF-8");
+            profiler.report(ps, n);
+            ps.close();
+
+            return Arrays.asList(new String(baos.toByteArray(), "UTF-8").split("\r?\n"));
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Locale;
+
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+
+/**
+ * Measures how much time per assertion the {@link CheckStyleTest#CHECKER_POOL checker pool} saves. Run it as described
+ * in {@link Benchmark}.
+ */
+public
+class CheckerPoolBenchmark extends CheckStyleTest {
+
+    private static final String CU = (
+        ""
+        + "public class Main {\n"
+        + "\n"
+        + "     int    field1 = 7;\n"
+        + "     double field2 = 7.0;\n"
+        + "\n"
+        + "     public static void meth1(\n"
+        + "         String[] param1,\n"
+        + "         int      param2\n"
+        + "     ) {\n"
+        + "         y   = 8;\n"
+        + "         yyy = 8.0;\n"
+        + "     }\n"
+        + " }"
+    );
+
+    public static void
+    main(String[] args) {
+
+        final CheckerPoolBenchmark b = new CheckerPoolBenchmark();
+
+        Runnable assertion = new Runnable() {
+
+            @Override public void
+            run() {
+                b.csTest(Alignment.class, CheckerPoolBenchmark.CU)
+                .addAttribute("applyToAssignments", "true")
+                .assertNoMessages();
+            }
+        };
+
+        b.setCheckerPooling(false);
+        double unpooled = Benchmark.measure("Alignment, new checker per assertion", 500, 5000, assertion);
+
+        b.setCheckerPooling(true);
+        double pooled = Benchmark.measure("Alignment, pooled checker", 500, 5000, assertion);
+
+        System.out.println(String.format(
+            Locale.US,
+            "Pooling saves %,.0f ns (%.0f%%) per assertion",
+            unpooled - pooled,
+            100 * (unpooled - pooled) / unpooled
+        ));
+    }
+}
@@ -0,0 +1,161 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.utils.CommonUtil;
+
+import de.unkrig.cscontrib.util.Allocations;
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.ColumnIndex;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Compares computing the TAB-expanded column of each token by rescanning the line text (as each of the {@link
+ * Alignment}, {@link WrapMethodCheck} and {@link CppCommentAlignment} checks does) with building one {@link
+ * ColumnIndex} per file and querying it. Run it as described in {@link Benchmark}; the optional command line arguments
+ * are the number of compilation units and the number of blocks per compilation unit.
+ */
+public
+class ColumnIndexBenchmark {
+
+    /**
+     * How many checks ask for the column of each token.
+     */
+    private static final int CHECKS = 3;
+
+    public static void
+    main(String[] args) {
+
+        final int units         = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int blocksPerUnit = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        final String[][] files   = new String[units][];
+        final int[][][]  tokens  = new int[units][][];
+        int              queries = 0;
+        for (int i = 0; i < units; i++) {
+            files[i]  = ColumnIndexBenchmark.tabIndented(SyntheticCompilationUnits.generate("Unit" + i, blocksPerUnit, i, 0.05));
+            tokens[i] = ColumnIndexBenchmark.tokenStarts(files[i]);
+            for (int[] t : tokens[i]) queries += ColumnIndexBenchmark.CHECKS * t.length;
+        }
+
+        Runnable rescanning = new Runnable() {
+
+            @Override public void
+            run() {
+                int sum = 0;
+                for (int f = 0; f < files.length; f++) {
+                    for (int c = 0; c < ColumnIndexBenchmark.CHECKS; c++) {
+                        for (int l = 0; l < files[f].length; l++) {
+                            for (int index : tokens[f][l]) sum += CommonUtil.lengthExpandedTabs(files[f][l], index, 8);
+                        }
+                    }
+                }
+                ColumnIndexBenchmark.sink = sum;
+            }
+        };
+
+        Runnable indexed = new Runnable() {
+
+            @Override public void
+            run() {
+                int sum = 0;
+                for (int f = 0; f < files.length; f++) {
+                    ColumnIndex ci = new ColumnIndex(files[f], 8);
+                    for (int c = 0; c < ColumnIndexBenchmark.CHECKS; c++) {
+                        for (int l = 0; l < files[f].length; l++) {
+                            for (int index : tokens[f][l]) sum += ci.expandedColumn(l + 1, index);
+                        }
+                    }
+                }
+                ColumnIndexBenchmark.sink = sum;
+            }
+        };
+
+        double rescanningNs = Benchmark.measure("Rescanning the line for each query", 10, 20, rescanning);
+        double indexedNs    = Benchmark.measure("One ColumnIndex per file", 10, 20, indexed);
+
+        System.out.println(String.format(
+            Locale.US,
+            "%,d queries: %,.1f vs. %,.1f ns/query, %,.2f vs. %,.2f bytes/query",
+            queries,
+            rescanningNs / queries,
+            indexedNs / queries,
+            (double) Allocations.measure(rescanning) / queries,
+            (double) Allocations.measure(indexed) / queries
+        ));
+    }
+
+    /**
+     * Defeats dead code elimination.
+     */
+    static volatile int sink;
+
+    /**
+     * @return The lines of the <var>code</var>, with each leading group of four spaces replaced with one TAB
+     */
+    private static String[]
+    tabIndented(String code) {
+
+        String[] result = code.split("\n");
+        for (int i = 0; i < result.length; i++) {
+            String line = result[i];
+            int    n    = 0;
+            while (line.startsWith("    ", 4 * n)) n++;
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < n; j++) sb.append('\t');
+            result[i] = sb.append(line, 4 * n, line.length()).toString();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return For each line, the indexes of the characters that follow whitespace, i.e. (roughly) where tokens start
+     */
+    private static int[][]
+    tokenStarts(String[] lines) {
+
+        int[][] result = new int[lines.length][];
+        for (int l = 0; l < lines.length; l++) {
+            String        line    = lines[l];
+            List<Integer> indexes = new ArrayList<Integer>();
+            for (int i = 0; i < line.length(); i++) {
+                if (!Character.isWhitespace(line.charAt(i)) && (i == 0 || Character.isWhitespace(line.charAt(i - 1)))) {
+                    indexes.add(i);
+                }
+            }
+            result[l] = new int[indexes.size()];
+            for (int i = 0; i < result[l].length; i++) result[l][i] = indexes.get(i);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.utils.CommonUtil;
+
+import de.unkrig.cscontrib.util.ColumnIndex;
+
+/**
+ * Verifies that the {@link ColumnIndex} computes exactly the columns that {@link CommonUtil#lengthExpandedTabs(String,
+ * int, int)} computes, and that it is shared per file.
+ */
+public
+class ColumnIndexTest {
+
+    @Test public void
+    testSameAsLengthExpandedTabs() {
+
+        Random r = new Random(0);
+        for (int n = 0; n < 2000; n++) {
+
+            int      tabWidth = 1 + r.nextInt(8);
+            String[] lines    = ColumnIndexTest.randomLines(r);
+
+            ColumnIndex ci = new ColumnIndex(lines, tabWidth);
+            for (int i = 0; i < lines.length; i++) {
+
+                Assert.assertEquals(lines[i].indexOf('\t') != -1, ci.hasTabs(i + 1));
+
+                for (int index = 0; index <= lines[i].length(); index++) {
+                    Assert.assertEquals(
+                        lines[i].replace('\t', 'T') + " @ " + index,
+                        CommonUtil.lengthExpandedTabs(lines[i], index, tabWidth),
+                        ci.expandedColumn(i + 1, index)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test public void
+    testIndexIsInverse() {
+
+        Random r = new Random(1);
+        for (int n = 0; n < 2000; n++) {
+
+            int      tabWidth = 1 + r.nextInt(8);
+            String[] lines    = ColumnIndexTest.randomLines(r);
+
+            ColumnIndex ci = new ColumnIndex(lines, tabWidth);
+            for (int i = 0; i < lines.length; i++) {
+                for (int column = 0; column < 80; column++) {
+
+                    // The character at the index must cover the column.
+                    int index = ci.index(i + 1, column);
+                    Assert.assertTrue(ci.expandedColumn(i + 1, index) <= column);
+                    Assert.assertTrue(ci.expandedColumn(i + 1, index + 1) > column);
+                }
+            }
+        }
+    }
+
+    @Test public void
+    testSharedPerFile() {
+
+        FileContents fc1 = new FileContents(new FileText(new File("A.java"), Arrays.asList("class A {", "\tint x;", "}")));
+        FileContents fc2 = new FileContents(new FileText(new File("B.java"), Arrays.asList("class B {", "\tint x;", "}")));
+
+        ColumnIndex ci = ColumnIndex.of(fc1, 8);
+        Assert.assertSame(ci, ColumnIndex.of(fc1, 8));
+        Assert.assertEquals(9, ci.expandedColumn(2, 2));
+
+        Assert.assertNotSame(ci, ColumnIndex.of(fc1, 4));
+        Assert.assertEquals(5, ColumnIndex.of(fc1, 4).expandedColumn(2, 2));
+
+        Assert.assertNotSame(ci, ColumnIndex.of(fc2, 8));
+    }
+
+    private static String[]
+    randomLines(Random r) {
+
+        String[] result = new String[1 + r.nextInt(5)];
+        for (int i = 0; i < result.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = r.nextInt(40); j > 0; j--) sb.append(r.nextInt(4) == 0 ? '\t' : r.nextInt(3) == 0 ? ' ' : 'x');
+            result[i] = sb.toString();
+        }
+
+        return result;
+    }
+}
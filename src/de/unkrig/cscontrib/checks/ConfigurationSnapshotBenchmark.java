@@ -0,0 +1,122 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.ConfigurationSnapshot;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+
+/**
+ * Compares the time to create a configured checker from a {@link DefaultConfiguration} (as {@link
+ * #createCheckerConfig(com.puppycrawl.tools.checkstyle.api.Configuration)} and {@link
+ * #createTwChecker(com.puppycrawl.tools.checkstyle.api.Configuration...)} do) with the time to create it from a {@link
+ * ConfigurationSnapshot}, both when the snapshot is read once and when it is read for each checker (as at JVM startup).
+ * Run it as described in {@link Benchmark}; the optional command line argument is the number of checkers per
+ * measurement.
+ */
+public
+class ConfigurationSnapshotBenchmark extends CheckStyleTest {
+
+    public static void
+    main(String[] args) throws Exception {
+
+        final int checkers = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+        final ConfigurationSnapshotBenchmark b = new ConfigurationSnapshotBenchmark();
+
+        final DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class, "allowMultipleArgsPerLine", "true", "wrapDeclBeforeName", "always"));
+        treeWalker.addChild(checkConfig(CppCommentAlignment.class));
+        treeWalker.addChild(checkConfig(Whitespace.class));
+
+        final ConfigurationSnapshot snapshot = ConfigurationSnapshot.compile(
+            b.createCheckerConfig(treeWalker),
+            Thread.currentThread().getContextClassLoader()
+        );
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        snapshot.writeTo(baos);
+        final byte[] bytes = baos.toByteArray();
+
+        double configuredNs = Benchmark.measure("DefaultConfiguration + Checker.configure()", 3, 10, new Runnable() {
+
+            @Override public void
+            run() {
+                for (int i = 0; i < checkers; i++) b.createTwChecker(treeWalker.getChildren()).destroy();
+            }
+        });
+
+        double snapshotNs = Benchmark.measure("Snapshot, read once", 3, 10, new Runnable() {
+
+            @Override public void
+            run() {
+                try {
+                    for (int i = 0; i < checkers; i++) snapshot.createChecker().destroy();
+                } catch (CheckstyleException ce) {
+                    throw new AssertionError(ce);
+                }
+            }
+        });
+
+        double readNs = Benchmark.measure("Snapshot, read for each checker", 3, 10, new Runnable() {
+
+            @Override public void
+            run() {
+                try {
+                    for (int i = 0; i < checkers; i++) {
+                        InMemoryChecker checker = ConfigurationSnapshot.readFrom(new ByteArrayInputStream(bytes)).createChecker();
+                        checker.destroy();
+                    }
+                } catch (CheckstyleException ce) {
+                    throw new AssertionError(ce);
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        });
+
+        System.out.println(String.format(
+            Locale.US,
+            "Snapshot: %,d bytes; per checker: %,.1f vs. %,.1f vs. %,.1f us",
+            bytes.length,
+            configuredNs / checkers / 1000,
+            snapshotNs / checkers / 1000,
+            readNs / checkers / 1000
+        ));
+    }
+}
@@ -0,0 +1,251 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.ConfigurationSnapshot;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MessageCollector;
+import de.unkrig.cscontrib.util.ParseOnlyCheck;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Verifies that checkers configured from a {@link ConfigurationSnapshot} behave exactly like checkers configured
+ * from the original configuration.
+ */
+public
+class ConfigurationSnapshotTest extends CheckStyleTest {
+
+    private static final String WRAPPED_BEFORE_METHOD_NAME = (
+        ""
+        + "class Foo {\n"
+        + "    int\n"
+        + "    method() { System.out.println(\"HELLO\");\n}\n"
+        + "}"
+    );
+
+    @Test public void
+    testSameMessages() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class, "allowMultipleArgsPerLine", "true", "wrapDeclBeforeName", "never"));
+        treeWalker.addChild(checkConfig(CppCommentAlignment.class, "severity", "warning"));
+        treeWalker.addChild(checkConfig(Whitespace.class));
+
+        List<String> cus = new ArrayList<String>(Arrays.asList(
+            AlignmentCheckTest.PROPERLY_ALIGNED,
+            AlignmentCheckTest.MISALIGNED,
+            ConfigurationSnapshotTest.WRAPPED_BEFORE_METHOD_NAME
+        ));
+        for (int i = 0; i < 5; i++) cus.add(SyntheticCompilationUnits.generate("Unit" + i, 20, i, 0.1));
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshotTest.roundTrip(ConfigurationSnapshot.compile(
+            this.createCheckerConfig(treeWalker),
+            Thread.currentThread().getContextClassLoader()
+        ));
+
+        InMemoryChecker original = this.createTwChecker(treeWalker.getChildren());
+        InMemoryChecker restored = snapshot.createChecker();
+        try {
+            for (String cu : cus) {
+                Assert.assertEquals(ConfigurationSnapshotTest.messages(original, cu), ConfigurationSnapshotTest.messages(restored, cu));
+            }
+        } finally {
+            original.destroy();
+            restored.destroy();
+        }
+    }
+
+    @Test public void
+    testAttributesTakeEffect() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class, "wrapDeclBeforeName", "never"));
+
+        InMemoryChecker checker = ConfigurationSnapshot.compile(
+            this.createCheckerConfig(treeWalker),
+            Thread.currentThread().getContextClassLoader()
+        ).createChecker();
+        try {
+            Assert.assertEquals(
+                Arrays.asList("3x5: 'method' must appear on same line as 'int'"),
+                ConfigurationSnapshotTest.messages(checker, ConfigurationSnapshotTest.WRAPPED_BEFORE_METHOD_NAME)
+            );
+        } finally {
+            checker.destroy();
+        }
+    }
+
+    /**
+     * Verifies that the snapshot chooses the same one of overloaded setters as {@code BeanUtils}.
+     */
+    @Test public void
+    testOverloadedSetter() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(OverloadedSetterCheck.class, "limit", "7"));
+
+        InMemoryChecker original = this.createTwChecker(treeWalker.getChildren());
+        InMemoryChecker restored = ConfigurationSnapshot.compile(
+            this.createCheckerConfig(treeWalker),
+            Thread.currentThread().getContextClassLoader()
+        ).createChecker();
+        try {
+            List<String> messages = ConfigurationSnapshotTest.messages(original, ConfigurationSnapshotTest.WRAPPED_BEFORE_METHOD_NAME);
+            Assert.assertEquals(1, messages.size());
+            Assert.assertEquals(messages, ConfigurationSnapshotTest.messages(restored, ConfigurationSnapshotTest.WRAPPED_BEFORE_METHOD_NAME));
+        } finally {
+            original.destroy();
+            restored.destroy();
+        }
+    }
+
+    /**
+     * Verifies that a snapshot loads the modules through the class loader that it was compiled with, not through the
+     * context class loader.
+     */
+    @Test public void
+    testModuleClassLoader() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class, "wrapDeclBeforeName", "never"));
+
+        ConfigurationSnapshot snapshot = ConfigurationSnapshot.compile(
+            this.createCheckerConfig(treeWalker),
+            ConfigurationSnapshotTest.class.getClassLoader()
+        );
+
+        // A class loader that cannot load any of the modules.
+        ClassLoader bootstrapOnly = new URLClassLoader(new URL[0], null);
+
+        Thread      thread = Thread.currentThread();
+        ClassLoader saved  = thread.getContextClassLoader();
+        thread.setContextClassLoader(bootstrapOnly);
+        try {
+            InMemoryChecker checker = snapshot.createChecker();
+            try {
+                Assert.assertEquals(
+                    Arrays.asList("3x5: 'method' must appear on same line as 'int'"),
+                    ConfigurationSnapshotTest.messages(checker, ConfigurationSnapshotTest.WRAPPED_BEFORE_METHOD_NAME)
+                );
+            } finally {
+                checker.destroy();
+            }
+
+            InMemoryChecker unconfigured = new InMemoryChecker();
+            try {
+                snapshot.configure(unconfigured, bootstrapOnly);
+                Assert.fail("CheckstyleException expected");
+            } catch (CheckstyleException ce) {
+                ;
+            } finally {
+                unconfigured.destroy();
+            }
+        } finally {
+            thread.setContextClassLoader(saved);
+        }
+    }
+
+    @Test public void
+    testInvalidAttributes() {
+        this.assertCompileFails(checkConfig(WrapMethodCheck.class, "noSuchAttribute", "true"));
+        this.assertCompileFails(checkConfig(WrapMethodCheck.class, "allowMultipleArgsPerLine", "maybe"));
+    }
+
+    private void
+    assertCompileFails(DefaultConfiguration checkConfiguration) {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfiguration);
+
+        try {
+            ConfigurationSnapshot.compile(this.createCheckerConfig(treeWalker), Thread.currentThread().getContextClassLoader());
+            Assert.fail("CheckstyleException expected");
+        } catch (CheckstyleException ce) {
+            ;
+        }
+    }
+
+    private static ConfigurationSnapshot
+    roundTrip(ConfigurationSnapshot snapshot) throws IOException {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        snapshot.writeTo(baos);
+
+        return ConfigurationSnapshot.readFrom(new ByteArrayInputStream(baos.toByteArray()));
+    }
+
+    private static List<String>
+    messages(InMemoryChecker checker, String cu) throws CheckstyleException {
+
+        MessageCollector result = new MessageCollector();
+
+        checker.addListener(result);
+        try {
+            checker.process(cu);
+        } finally {
+            checker.removeListener(result);
+        }
+
+        return new ArrayList<String>(result.getMessages());
+    }
+
+    /**
+     * Has overloaded setters for its "{@code limit}" property, and reports which one was invoked.
+     */
+    public static
+    class OverloadedSetterCheck extends ParseOnlyCheck {
+
+        private String limit = "unset";
+
+        public void setLimit(int limit)    { this.limit = "int " + limit; }
+        public void setLimit(String limit) { this.limit = "String " + limit; }
+
+        @Override public void
+        visitToken(DetailAST ast) { this.log(ast, "limit set through " + this.limit); }
+    }
+}
@@ -0,0 +1,182 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MessageCollector;
+import de.unkrig.cscontrib.util.ParseOnlyCheck;
+import de.unkrig.cscontrib.util.PerformanceTests;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Measures the throughput of the cs-contrib checks on a generated corpus of Java files, and fails iff the
+ * throughput of all checks together falls below a threshold. The following system properties configure the test:
+ * <dl>
+ *   <dt>{@code cscontrib.corpus.files}</dt>
+ *   <dd>The number of files in the corpus (default 10,000)</dd>
+ *   <dt>{@code cscontrib.corpus.blocksPerFile}</dt>
+ *   <dd>The size of each file, see {@link SyntheticCompilationUnits#generate(String, int, long, double)} (default 6)</dd>
+ *   <dt>{@code cscontrib.corpus.minFilesPerSecond}</dt>
+ *   <dd>The threshold; by default 0, i.e. the throughput is only reported</dd>
+ * </dl>
+ * The corpus is a function of these properties only, so the results are reproducible.
+ * <p>
+ *   This is one of the {@link PerformanceTests}.
+ * </p>
+ */
+public
+class CorpusThroughputTest extends CheckStyleTest {
+
+    private static final int    FILES                = Integer.getInteger("cscontrib.corpus.files", 10000);
+    private static final int    BLOCKS_PER_FILE      = Integer.getInteger("cscontrib.corpus.blocksPerFile", 6);
+    private static final double MIN_FILES_PER_SECOND = Double.parseDouble(System.getProperty("cscontrib.corpus.minFilesPerSecond", "0"));
+
+    private static final Class<?>[] CHECK_CLASSES = {
+        Whitespace.class,
+        Alignment.class,
+        WrapMethodCheck.class,
+        CppCommentAlignment.class,
+    };
+
+    @ClassRule public static final TemporaryCorpus CORPUS = new TemporaryCorpus(
+        "cs-contrib-corpus",
+        CorpusThroughputTest.FILES,
+        CorpusThroughputTest.BLOCKS_PER_FILE,
+        0,                                   // seed
+        0.02                                 // misalignmentRate
+    );
+
+    private static long corpusBytes;
+
+    /**
+     * Runs each check alone, and then all checks together, over the corpus, and reports files/s, MB/s and the
+     * share of each check in the total check time (that is, the time in excess of parsing).
+     */
+    @Test @Category(PerformanceTests.class) public void
+    testThroughput() {
+
+        PerformanceTests.assumeEnabled();
+
+        CorpusThroughputTest.corpusBytes = 0;
+        for (File file : CorpusThroughputTest.CORPUS.getFiles()) CorpusThroughputTest.corpusBytes += file.length();
+
+        final int    files = CorpusThroughputTest.CORPUS.getFiles().length;
+        final double mb    = CorpusThroughputTest.corpusBytes / 1E6;
+
+        System.out.println(String.format(Locale.US, "Corpus: %,d files, %,.1f MB", files, mb));
+
+        long parseNs = this.measure(checkConfig(ParseOnlyCheck.class));
+        CorpusThroughputTest.report("(parsing only)", parseNs, -1);
+
+        long[] checkNs       = new long[CorpusThroughputTest.CHECK_CLASSES.length];
+        long   totalExcessNs = 0;
+        for (int i = 0; i < checkNs.length; i++) {
+            checkNs[i]    =  this.measure(checkConfig(CorpusThroughputTest.CHECK_CLASSES[i]));
+            totalExcessNs += Math.max(0, checkNs[i] - parseNs);
+        }
+        for (int i = 0; i < checkNs.length; i++) {
+            CorpusThroughputTest.report(
+                CorpusThroughputTest.CHECK_CLASSES[i].getSimpleName(),
+                checkNs[i],
+                totalExcessNs == 0 ? 0 : 100.0 * Math.max(0, checkNs[i] - parseNs) / totalExcessNs
+            );
+        }
+
+        Configuration[] all = new Configuration[CorpusThroughputTest.CHECK_CLASSES.length];
+        for (int i = 0; i < all.length; i++) all[i] = checkConfig(CorpusThroughputTest.CHECK_CLASSES[i]);
+        long allNs = this.measure(all);
+        CorpusThroughputTest.report("(all checks)", allNs, -1);
+
+        double filesPerSecond = 1E9 * files / allNs;
+        Assert.assertTrue(
+            String.format(Locale.US, "%,.0f files/s is below the threshold of %,.0f files/s", filesPerSecond, CorpusThroughputTest.MIN_FILES_PER_SECOND),
+            filesPerSecond >= CorpusThroughputTest.MIN_FILES_PER_SECOND
+        );
+    }
+
+    /**
+     * Runs the checks over the corpus twice: Once to warm up and to determine the expected messages, and then
+     * timed. Only the processing is timed; the messages are compared afterwards.
+     *
+     * @return The duration of the timed run, in nanoseconds
+     */
+    private long
+    measure(Configuration... checkConfigurations) {
+
+        List<String>    expected;
+        InMemoryChecker checker = this.createTwChecker(checkConfigurations);
+        try {
+            expected = CheckStyleTest.process(checker, CorpusThroughputTest.CORPUS.getFiles()).getMessages();
+        } finally {
+            checker.destroy();
+        }
+
+        MessageCollector actual;
+        long             ns;
+        checker = this.createTwChecker(checkConfigurations);
+        try {
+            long start = System.nanoTime();
+            actual = CheckStyleTest.process(checker, CorpusThroughputTest.CORPUS.getFiles());
+            ns     = System.nanoTime() - start;
+        } finally {
+            checker.destroy();
+        }
+
+        actual.assertMessages(expected.toArray(new String[expected.size()]));
+        return ns;
+    }
+
+    /**
+     * @param share The share of the check, in percent, or -1
+     */
+    private static void
+    report(String name, long ns, double share) {
+        System.out.println(String.format(
+            Locale.US,
+            "  %-20s %,10.0f files/s %,8.2f MB/s%s",
+            name,
+            1E9 * CorpusThroughputTest.CORPUS.getFiles().length / ns,
+            1E3 * CorpusThroughputTest.corpusBytes / ns,
+            share == -1 ? "" : String.format(Locale.US, " %5.1f%%", share)
+        ));
+    }
+}
@@ -28,11 +28,19 @@
 
 package de.unkrig.cscontrib.checks;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.Test;
+import org.junit.experimental.categories.Category;
 
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 
 import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.PerformanceTests;
+import de.unkrig.cscontrib.util.Scaling;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+import de.unkrig.commons.nullanalysis.Nullable;
 
 /**
  * Test case for the {@link CppCommentAlignment} check.
@@ -124,4 +132,56 @@ class CppCommentAlignmentCheckTest extends CheckStyleTest {
         
         csTest(CppCommentAlignment.class, compilationUnit).assertNoMessages();
     }
+
+    /**
+     * Test that comments are aligned by their TAB-expanded columns (TAB width 8).
+     */
+    @Test public void
+    testCppCommentsWithTabs() {
+
+        String compilationUnit = (
+            ""
+            + "class Foo {\n"
+            + "    int x;\t\t\t//\n"
+            + "    int yy;\t\t\t//\n"
+            + "    int zzz;                    //\n"
+            + "\tint zzzz;\t\t//\n"
+            + "}\n"
+        );
+
+        csTest(CppCommentAlignment.class, compilationUnit).assertNoMessages();
+    }
+
+    /**
+     * Test that the check accepts long runs of consecutive properly aligned trailing comments, like in generated
+     * tables.
+     */
+    @Test public void
+    testLongRunsOfTrailingComments() {
+        csTest(CppCommentAlignment.class, SyntheticCompilationUnits.trailingComments("Table", 10000)).assertNoMessages();
+    }
+
+    /**
+     * Test that the check executes in linear time and retains linear memory on long runs of consecutive trailing
+     * comments.
+     */
+    @Test @Category(PerformanceTests.class) public void
+    testLongRunsOfTrailingCommentsScaling() {
+
+        PerformanceTests.assumeEnabled();
+
+        final int[] sizes = { 1000, 10000, 100000 };
+
+        final Map<Integer, String> compilationUnits = new HashMap<Integer, String>();
+        for (int size : sizes) compilationUnits.put(size, SyntheticCompilationUnits.trailingComments("Table", size));
+
+        Scaling.assertLinear("CppCommentAlignment", 3, new Scaling.SizedOperation() {
+
+            @Override @Nullable public Object
+            run(int size) {
+                csTest(CppCommentAlignment.class, compilationUnits.get(size)).assertNoMessages();
+                return null;
+            }
+        }, sizes);
+    }
 }
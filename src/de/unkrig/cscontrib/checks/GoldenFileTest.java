@@ -0,0 +1,201 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.GoldenFile;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Test case for the {@link GoldenFile}.
+ */
+public
+class GoldenFileTest extends CheckStyleTest {
+
+    @ClassRule public static final TemporaryCorpus CORPUS = new TemporaryCorpus("cs-contrib-golden", 50, 12, 0, 0.2);
+
+    /**
+     * Regenerates the golden file for the corpus, and verifies that {@link #verifyGolden(com.puppycrawl.tools.checkstyle.Checker,
+     * File[], File, File)} then succeeds.
+     */
+    @Test public void
+    testRegenerateAndVerify() throws Exception {
+
+        Configuration[] checks = { checkConfig(Alignment.class, AlignmentCheckTest.all()), checkConfig(Whitespace.class) };
+
+        GoldenFile      golden  = new GoldenFile(GoldenFileTest.goldenFile(), GoldenFileTest.CORPUS.getDirectory(), true);
+        InMemoryChecker checker = this.createTwChecker(checks);
+        checker.addListener(golden);
+        try {
+            checker.process(Arrays.asList(GoldenFileTest.CORPUS.getFiles()));
+        } finally {
+            checker.destroy();
+        }
+        golden.assertMatches();
+
+        // The golden file has one line per event, with file names relative to the corpus directory.
+        List<String> lines = Files.readAllLines(GoldenFileTest.goldenFile().toPath(), StandardCharsets.UTF_8);
+        List<String> events;
+        checker = this.createTwChecker(checks);
+        try {
+            events = CheckStyleTest.process(checker, GoldenFileTest.CORPUS.getFiles()).getMessages();
+        } finally {
+            checker.destroy();
+        }
+        Assert.assertEquals(events.size(), lines.size());
+        Assert.assertTrue(lines.size() > 50);
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertTrue(lines.get(i), lines.get(i).matches("Unit\\d+\\.java:\\Q" + events.get(i) + "\\E"));
+        }
+
+        this.verifyGolden(this.createTwChecker(checks), GoldenFileTest.CORPUS.getFiles(), GoldenFileTest.goldenFile(), GoldenFileTest.CORPUS.getDirectory());
+    }
+
+    @Test public void
+    testMatching() throws IOException {
+
+        List<String> expected = GoldenFileTest.lines(1000);
+        GoldenFile   golden   = this.compare(expected, expected);
+
+        Assert.assertTrue(golden.matches());
+        Assert.assertEquals(1000, golden.getMatchCount());
+        golden.assertMatches();
+    }
+
+    /**
+     * Verifies that each missing, unexpected or changed event yields one diff line, not a mismatch of all the events
+     * that follow it.
+     */
+    @Test public void
+    testConciseDiff() throws IOException {
+
+        List<String> expected = GoldenFileTest.lines(1000);
+
+        List<String> actual = new ArrayList<String>(expected);
+        actual.remove(5);
+        actual.add(100, "Unit1.java:1x1: Extra");
+        actual.set(500, "Unit5.java:1x1: Changed");
+
+        GoldenFile golden = this.compare(expected, actual);
+        Assert.assertEquals(2, golden.getMissingCount());
+        Assert.assertEquals(2, golden.getUnexpectedCount());
+        Assert.assertEquals(998, golden.getMatchCount());
+        Assert.assertEquals(
+            ""
+            + "Golden file \"" + GoldenFileTest.goldenFile() + "\": 998 matching, 2 missing, 2 unexpected events; run with \"-Dcscontrib.golden.regenerate=true\" to update it\n"
+            + "-6: Unit0.java:6x5: 'field5' should be aligned with 'field0' in line 3\n"
+            + "+Unit1.java:1x1: Extra\n"
+            + "-501: Unit5.java:1x5: 'field500' should be aligned with 'field0' in line 3\n"
+            + "+Unit5.java:1x1: Changed",
+            golden.getDiff()
+        );
+    }
+
+    /**
+     * Verifies the re-synchronization after blocks of missing and of unexpected events.
+     */
+    @Test public void
+    testBlocks() throws IOException {
+
+        List<String> expected = GoldenFileTest.lines(10000);
+
+        List<String> actual = new ArrayList<String>(expected);
+        actual.subList(1000, 1300).clear();
+        for (int i = 0; i < 300; i++) actual.add(5000, "Unit0.java:1x1: Extra " + i);
+
+        GoldenFile golden = this.compare(expected, actual);
+        Assert.assertEquals(300, golden.getMissingCount());
+        Assert.assertEquals(300, golden.getUnexpectedCount());
+        Assert.assertTrue(golden.getDiff(), golden.getDiff().endsWith("\n... and 580 more"));
+    }
+
+    @Test public void
+    testTruncated() throws IOException {
+
+        List<String> expected = GoldenFileTest.lines(1000);
+
+        Assert.assertEquals(990, this.compare(expected, expected.subList(0, 10)).getMissingCount());
+        Assert.assertEquals(990, this.compare(expected.subList(0, 10), expected).getUnexpectedCount());
+    }
+
+    @Test public void
+    testMissingGoldenFile() {
+        try {
+            new GoldenFile(new File(GoldenFileTest.CORPUS.getDirectory(), "no-such-file.txt"), null, false);
+            Assert.fail();
+        } catch (IOException ioe) {
+            Assert.assertTrue(ioe.getMessage(), ioe.getMessage().contains("-Dcscontrib.golden.regenerate=true"));
+        }
+    }
+
+    /**
+     * Regenerates the golden file from the <var>expected</var> lines, and then compares the <var>actual</var> lines
+     * with it.
+     */
+    private GoldenFile
+    compare(List<String> expected, List<String> actual) throws IOException {
+
+        GoldenFile golden = new GoldenFile(GoldenFileTest.goldenFile(), null, true);
+        for (String line : expected) golden.add(line);
+        golden.finish();
+
+        golden = new GoldenFile(GoldenFileTest.goldenFile(), null, false);
+        for (String line : actual) golden.add(line);
+        golden.finish();
+
+        return golden;
+    }
+
+    private static List<String>
+    lines(int n) {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+            result.add("Unit" + i / 100 + ".java:" + (i % 100 + 1) + "x5: 'field" + i + "' should be aligned with 'field0' in line 3");
+        }
+        return result;
+    }
+
+    private static File
+    goldenFile() { return new File(GoldenFileTest.CORPUS.getDirectory(), "expected.txt"); }
+}
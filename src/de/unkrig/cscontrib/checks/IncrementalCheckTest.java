@@ -0,0 +1,175 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.IncrementalChecker;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Tests for the {@link IncrementalChecker}.
+ */
+public
+class IncrementalCheckTest extends CheckStyleTest {
+
+    /**
+     * Edits within one block of fields, of a method and of one-line methods.
+     */
+    @Test public void
+    testEditWithinBlock() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(3, 4, "     int    field1 = 7;\n");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(20, 21, "         y   = 8;\n");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(30, 31, "     public void        meth2() {}\n");
+        csTest(Alignment.class, AlignmentCheckTest.PROPERLY_ALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(4, 5, "     double fieldTwo = 7.0;\n");
+    }
+
+    /**
+     * Edits that insert or delete lines, so that the messages after the edit must be shifted.
+     */
+    @Test public void
+    testInsertAndDelete() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(4, 4, "     long lll = 7L;\n     char c = 'c';\n");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(6, 7, "");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(14, 16, "");
+    }
+
+    /**
+     * Edits that add or remove empty lines, and thus split or merge blocks.
+     */
+    @Test public void
+    testSplitAndMergeBlocks() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(5, 6, "");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(4, 4, "\n");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(31, 32, "");
+    }
+
+    /**
+     * Edits next to and within block comments and doc comments that contain empty lines; these must not split
+     * blocks.
+     */
+    @Test public void
+    testEmptyLineInBlockComment() {
+
+        String cu = (
+            ""
+            + "public class Comments {\n"
+            + "\n"
+            + "    int    a = 1;     // One\n"
+            + "    String bb = \"\";   // Two\n"
+            + "    /*\n"
+            + "     * A block comment with an empty line.\n"
+            + "\n"
+            + "     */\n"
+            + "    long   ccc = 3L;  // Three\n"
+            + "    /**\n"
+            + "     * A doc comment with an empty line.\n"
+            + "\n"
+            + "     */\n"
+            + "    char d = 'd'; // Four\n"
+            + "\n"
+            + "    int e = 5;\n"
+            + "}\n"
+        );
+
+        for (Class<?> checkClass : new Class<?>[] { Alignment.class, CppCommentAlignment.class }) {
+            csTest(checkClass, cu).assertIncrementalEdit(3, 4, "    int a = 1; // One\n");
+            csTest(checkClass, cu).assertIncrementalEdit(7, 8, "     * No longer empty.\n");
+            csTest(checkClass, cu).assertIncrementalEdit(6, 7, "\n");
+            csTest(checkClass, cu).assertIncrementalEdit(12, 12, "\n");
+            csTest(checkClass, cu).assertIncrementalEdit(15, 16, "    char d = 'd';     // Four\n");
+        }
+    }
+
+    /**
+     * Edits outside the members of the type, which require a complete re-check.
+     */
+    @Test public void
+    testEditOutsideMembers() {
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(1, 2, "public class Main2 {\n");
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).assertIncrementalEdit(37, 38, "}\nclass Other {}\n");
+    }
+
+    /**
+     * Edits in a large compilation unit, for each of the checks that are typically re-run after each save.
+     */
+    @Test public void
+    testLargeCompilationUnit() {
+
+        String cu = SyntheticCompilationUnits.generate("Large", 300, 7, 0.05);
+
+        int l1 = IncrementalCheckTest.fieldLine(cu, 500), l2 = IncrementalCheckTest.fieldLine(cu, 1000), l3 = IncrementalCheckTest.fieldLine(cu, 1500);
+
+        for (Class<?> checkClass : new Class<?>[] { Alignment.class, WrapMethodCheck.class, CppCommentAlignment.class }) {
+            csTest(checkClass, cu).assertIncrementalEdit(l1, l1 + 1, "    int    x = 8; // Trailing comment\n");
+            csTest(checkClass, cu).assertIncrementalEdit(l2, l2, "\n    public static void m() {}\n");
+            csTest(checkClass, cu).assertIncrementalEdit(l3, l3 + 1, "");
+        }
+    }
+
+    /**
+     * @return The number of the first line at or after <var>line</var> that declares a field
+     */
+    private static int
+    fieldLine(String cu, int line) {
+
+        String[] lines = cu.split("\n");
+        while (!lines[line - 1].matches("    \\S.* = null;.*")) line++;
+
+        return line;
+    }
+
+    /**
+     * Verifies that an edit within one block indeed re-checks only a small part of a large compilation unit.
+     */
+    @Test public void
+    testRechecksOnlyRegion() {
+
+        String cu = SyntheticCompilationUnits.generate("Large", 300, 7, 0.05);
+
+        InMemoryChecker checker = this.createTwChecker(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+        try {
+            IncrementalChecker ic = new IncrementalChecker(checker);
+
+            List<String> before = ic.check(cu);
+            List<String> after  = ic.edit(1000, 1001, ic.getCode().split("\n")[999] + "\n");
+
+            Assert.assertEquals(before, after);
+            Assert.assertTrue(ic.getLastRecheckedLines() != -1);
+            Assert.assertTrue(ic.getLastRecheckedLines() < cu.split("\n").length / 10);
+        } finally {
+            checker.destroy();
+        }
+    }
+}
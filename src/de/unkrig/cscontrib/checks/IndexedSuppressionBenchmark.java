@@ -0,0 +1,243 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.IndexedSuppressionFilter;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Compares matching each audit event against each suppression comment of the file with the {@link
+ * IndexedSuppressionFilter.Index}, on files with thousands of "{@code // SUPPRESS CHECKSTYLE}" comments, and measures
+ * what the {@link IndexedSuppressionFilter} adds to a run of the {@link Whitespace} and {@link Alignment} checks. Run
+ * it as described in {@link Benchmark}; the optional command line arguments are the number of compilation units and the
+ * number of blocks per compilation unit.
+ */
+public
+class IndexedSuppressionBenchmark extends CheckStyleTest {
+
+    private static final String[] REGEXES     = { "Whitespace", "Alignment", "WrapMethod|LineLength", "Javadoc" };
+    private static final String[] CHECK_NAMES = { "Whitespace", "Alignment", "WrapMethod" };
+
+    public static void
+    main(String[] args) throws CheckstyleException {
+
+        final int units         = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final int blocksPerUnit = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        final String[][] files        = new String[units][];
+        int              suppressions = 0, lookups = 0;
+        for (int i = 0; i < units; i++) {
+            files[i] = IndexedSuppressionBenchmark.suppressed(
+                SyntheticCompilationUnits.generate("Unit" + i, blocksPerUnit, i, 0.05)
+            ).split("\n");
+            suppressions += new IndexedSuppressionFilter.Index(files[i]).getSuppressionCount();
+            lookups      += IndexedSuppressionBenchmark.CHECK_NAMES.length * files[i].length;
+        }
+        System.out.println(String.format(
+            Locale.US,
+            "%,d files, %,d suppressions per file",
+            units,
+            suppressions / units
+        ));
+
+        Runnable linear = new Runnable() {
+
+            @Override public void
+            run() {
+                int sum = 0;
+                for (String[] lines : files) {
+                    Linear l = new Linear(lines);
+                    for (int lineNo = 1; lineNo <= lines.length; lineNo++) {
+                        for (String checkName : IndexedSuppressionBenchmark.CHECK_NAMES) {
+                            if (l.isSuppressed(lineNo, checkName)) sum++;
+                        }
+                    }
+                }
+                IndexedSuppressionBenchmark.sink = sum;
+            }
+        };
+
+        Runnable indexed = new Runnable() {
+
+            @Override public void
+            run() {
+                int sum = 0;
+                for (String[] lines : files) {
+                    IndexedSuppressionFilter.Index index = new IndexedSuppressionFilter.Index(lines);
+                    for (int lineNo = 1; lineNo <= lines.length; lineNo++) {
+                        for (String checkName : IndexedSuppressionBenchmark.CHECK_NAMES) {
+                            if (index.isSuppressed(lineNo, checkName)) sum++;
+                        }
+                    }
+                }
+                IndexedSuppressionBenchmark.sink = sum;
+            }
+        };
+
+        double linearNs  = Benchmark.measure("Each event against each suppression", 2, 5, linear);
+        double indexedNs = Benchmark.measure("IndexedSuppressionFilter.Index", 10, 20, indexed);
+
+        System.out.println(String.format(
+            Locale.US,
+            "%,d lookups: %,.1f vs. %,.1f ns/lookup",
+            lookups,
+            linearNs / lookups,
+            indexedNs / lookups
+        ));
+
+        String[] cus = new String[units];
+        for (int i = 0; i < units; i++) cus[i] = IndexedSuppressionBenchmark.join(files[i]);
+
+        IndexedSuppressionBenchmark b = new IndexedSuppressionBenchmark();
+        b.measure("Whitespace and Alignment", cus, false);
+        b.measure("Whitespace and Alignment, IndexedSuppressionFilter", cus, true);
+    }
+
+    /**
+     * Defeats dead code elimination.
+     */
+    static volatile int sink;
+
+    private void
+    measure(String name, final String[] cus, boolean filter) throws CheckstyleException {
+
+        Configuration whitespace = checkConfig(Whitespace.class);
+        Configuration alignment  = checkConfig(Alignment.class, AlignmentCheckTest.all());
+
+        final InMemoryChecker checker = (
+            filter
+            ? this.createTwChecker(whitespace, alignment, checkConfig(IndexedSuppressionFilter.class))
+            : this.createTwChecker(whitespace, alignment)
+        );
+        final AuditEventRecorder recorder = new AuditEventRecorder();
+
+        checker.addListener(recorder);
+        try {
+
+            double nsPerPass = Benchmark.measure(name, 3, 10, new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        for (String cu : cus) checker.process(cu);
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                    recorder.clear();
+                }
+            });
+
+            System.out.println(String.format(Locale.US, "    %,10.0f files/s", 1E9 * cus.length / nsPerPass));
+        } finally {
+            checker.removeListener(recorder);
+            checker.destroy();
+        }
+    }
+
+    /**
+     * @return The <var>code</var>, with a suppression comment at the end of every other line
+     */
+    private static String
+    suppressed(String code) {
+
+        String[]      lines = code.split("\n");
+        StringBuilder sb    = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            sb.append(lines[i]);
+            if (i % 2 == 1) {
+                sb.append(" // SUPPRESS CHECKSTYLE ").append(IndexedSuppressionBenchmark.REGEXES[i / 2 % 4]);
+                if (i % 3 == 0) sb.append(':').append(i % 5);
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private static String
+    join(String[] lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) sb.append(line).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Parses the suppression comments once, like the {@link IndexedSuppressionFilter.Index}, but then matches each
+     * lookup against all of them, like checkstyle's own comment-based suppression filters do.
+     */
+    static
+    class Linear {
+
+        private static final Pattern SUPPRESSION = Pattern.compile("//\\s*SUPPRESS CHECKSTYLE\\s+([^\\s:]+)(?::(\\d+))?");
+
+        private final int[]     firstLines, lastLines;
+        private final Pattern[] patterns;
+
+        Linear(String[] lines) {
+
+            int[]     firstLines = new int[lines.length], lastLines = new int[lines.length];
+            Pattern[] patterns   = new Pattern[lines.length];
+            int       n          = 0;
+            for (int i = 0; i < lines.length; i++) {
+                Matcher m = Linear.SUPPRESSION.matcher(lines[i]);
+                if (!m.find()) continue;
+
+                firstLines[n] = i + 1;
+                lastLines[n]  = i + 1 + (m.group(2) == null ? 0 : Integer.parseInt(m.group(2)));
+                patterns[n++] = Pattern.compile(m.group(1));
+            }
+
+            this.firstLines = Arrays.copyOf(firstLines, n);
+            this.lastLines  = Arrays.copyOf(lastLines, n);
+            this.patterns   = Arrays.copyOf(patterns, n);
+        }
+
+        boolean
+        isSuppressed(int lineNo, String checkName) {
+            for (int i = 0; i < this.patterns.length; i++) {
+                if (
+                    lineNo >= this.firstLines[i]
+                    && lineNo <= this.lastLines[i]
+                    && this.patterns[i].matcher(checkName).find()
+                ) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.IndexedSuppressionFilter;
+
+/**
+ * Test case for the {@link IndexedSuppressionFilter}.
+ */
+public
+class IndexedSuppressionFilterTest extends CheckStyleTest {
+
+    private static final String NEW = (
+        ""
+        + "public class Foo {\n"
+        + "    void method() {\n"
+        + "        new java.util.ArrayList();\n"
+        + "        new/**/java.util.ArrayList();\n"
+        + "        /**/new java.util.ArrayList();\n"
+        + "        /**/new/**/java.util.ArrayList();\n"
+        + "    }\n"
+        + "}\n"
+    );
+
+    @Test public void
+    testWhitespaceSameLine() {
+
+        multiCsTest(NEW.replace("        new/**/java.util.ArrayList();\n", "        new/**/java.util.ArrayList(); // SUPPRESS CHECKSTYLE Whitespace\n"))
+        .addCheck(Whitespace.class)
+        .addCheck(IndexedSuppressionFilter.class)
+        .assertMessages(Whitespace.class, "6x16: 'new' is not followed by whitespace (option 'NEW')");
+    }
+
+    @Test public void
+    testWhitespaceOtherCheck() {
+
+        multiCsTest(NEW.replace("        new/**/java.util.ArrayList();\n", "        new/**/java.util.ArrayList(); // SUPPRESS CHECKSTYLE Alignment|WrapMethod\n"))
+        .addCheck(Whitespace.class)
+        .addCheck(IndexedSuppressionFilter.class)
+        .assertMessages(
+            Whitespace.class,
+            "4x12: 'new' is not followed by whitespace (option 'NEW')",
+            "6x16: 'new' is not followed by whitespace (option 'NEW')"
+        );
+    }
+
+    @Test public void
+    testWhitespaceLineCount() {
+
+        // Suppresses the comment line (3) and the two lines after it (4 and 5).
+        multiCsTest(NEW.replace("    void method() {\n", "    void method() {\n        // SUPPRESS CHECKSTYLE White:2\n"))
+        .addCheck(Whitespace.class)
+        .addCheck(IndexedSuppressionFilter.class)
+        .assertMessages(Whitespace.class, "7x16: 'new' is not followed by whitespace (option 'NEW')");
+    }
+
+    @Test public void
+    testAlignmentSameLine() {
+
+        String cu = (
+            AlignmentCheckTest.MISALIGNED
+            .replace("// Misaligned field names", "// SUPPRESS CHECKSTYLE Alignment")
+            .replace("// Misaligned method bodies", "// SUPPRESS CHECKSTYLE Alignment")
+        );
+
+        multiCsTest(cu)
+        .addCheck(Alignment.class, AlignmentCheckTest.all())
+        .addCheck(IndexedSuppressionFilter.class)
+        .assertMessages(
+            Alignment.class,
+            "7x21: '=' should be aligned with '=' in line 6",
+            "11x14: 'param2' should be aligned with 'param1' in line 10",
+            "15x17: 'locvar2' should be aligned with 'locvar1' in line 14",
+            "18x26: '=' should be aligned with '=' in line 17",
+            "21x14: '=' should be aligned with '=' in line 20",
+            "25x19: 'x' should be aligned with 'break' in line 24",
+            "30x18: 'meth2' should be aligned with 'meth1' in line 29"
+        );
+    }
+
+    @Test public void
+    testAlignmentLineCount() {
+
+        // Suppresses lines 1 through 15.
+        multiCsTest("// SUPPRESS CHECKSTYLE Alignment:14\n" + AlignmentCheckTest.MISALIGNED)
+        .addCheck(Alignment.class, AlignmentCheckTest.all())
+        .addCheck(IndexedSuppressionFilter.class)
+        .assertMessages(
+            Alignment.class,
+            "16x17: 'locvar2' should be aligned with 'locvar1' in line 15",
+            "19x26: '=' should be aligned with '=' in line 18",
+            "22x14: '=' should be aligned with '=' in line 21",
+            "26x19: 'x' should be aligned with 'break' in line 25",
+            "31x18: 'meth2' should be aligned with 'meth1' in line 30",
+            "34x34: '{' should be aligned with '{' in line 33",
+            "37x34: '}' should be aligned with '}' in line 36"
+        );
+    }
+
+    /**
+     * Verifies that a suppression affects only the checks that its regex matches, when {@link Whitespace} and {@link
+     * Alignment} run under the same tree walker.
+     */
+    @Test public void
+    testWhitespaceAndAlignment() {
+
+        String[] cus = { AlignmentCheckTest.MISALIGNED, NEW };
+        for (String cu : cus) {
+
+            List<String> whitespace = csTest(Whitespace.class, cu).getMessages();
+            List<String> alignment  = csTest(Alignment.class, cu).addAttributes(AlignmentCheckTest.all()).getMessages();
+
+            this.assertMessages(whitespace, alignment, cu, null);
+            this.assertMessages(whitespace, Collections.<String>emptyList(), cu, "Alignment");
+            this.assertMessages(Collections.<String>emptyList(), alignment, cu, "Whitespace");
+            this.assertMessages(Collections.<String>emptyList(), Collections.<String>emptyList(), cu, "Whitespace|Alignment");
+        }
+    }
+
+    /**
+     * Verifies {@link IndexedSuppressionFilter.Index} against matching each line against each suppression comment,
+     * for random, overlapping and adjacent suppressions.
+     */
+    @Test public void
+    testIndexAgainstLinearScan() {
+
+        String[] regexes    = { "Whitespace", "Alignment|WrapMethod", "Align", "LineLength" };
+        String[] checkNames = { "Whitespace", "Alignment", "WrapMethod", "CppCommentAlignment", "Javadoc" };
+
+        for (long seed = 0; seed < 20; seed++) {
+            Random   r     = new Random(seed);
+            String[] lines = new String[500];
+            for (int i = 0; i < lines.length; i++) {
+                int choice = r.nextInt(10);
+                lines[i] = (
+                    choice == 0 ? "    x = 7; // SUPPRESS CHECKSTYLE " + regexes[r.nextInt(regexes.length)] :
+                    choice == 1 ? "    // SUPPRESS CHECKSTYLE " + regexes[r.nextInt(regexes.length)] + ':' + r.nextInt(20) :
+                    "    x = 7;"
+                );
+            }
+
+            IndexedSuppressionFilter.Index index = new IndexedSuppressionFilter.Index(lines);
+            for (int lineNo = 1; lineNo <= lines.length + 20; lineNo++) {
+                for (String checkName : checkNames) {
+                    Assert.assertEquals(
+                        "Seed " + seed + ", line " + lineNo + ", " + checkName,
+                        IndexedSuppressionFilterTest.isSuppressed(lines, lineNo, checkName),
+                        index.isSuppressed(lineNo, checkName)
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that a suppression comment with a malformed regex is ignored, and does not affect the other
+     * suppressions of the file.
+     */
+    @Test public void
+    testMalformedRegex() {
+
+        String[] lines = {
+            "    x = 7; // SUPPRESS CHECKSTYLE (Foo",
+            "    x = 7; // SUPPRESS CHECKSTYLE Whitespace",
+            "    // SUPPRESS CHECKSTYLE [Align:3",
+            "    x = 7; // SUPPRESS CHECKSTYLE (Foo",
+        };
+
+        IndexedSuppressionFilter.Index index = new IndexedSuppressionFilter.Index(lines);
+        Assert.assertEquals(1, index.getSuppressionCount());
+        Assert.assertFalse(index.isSuppressed(1, "Foo"));
+        Assert.assertFalse(index.isSuppressed(1, "(Foo"));
+        Assert.assertTrue(index.isSuppressed(2, "Whitespace"));
+        Assert.assertFalse(index.isSuppressed(4, "Alignment"));
+
+        multiCsTest(NEW.replace("        new/**/java.util.ArrayList();\n", "        new/**/java.util.ArrayList(); // SUPPRESS CHECKSTYLE (Whitespace\n"))
+        .addCheck(Whitespace.class)
+        .addCheck(IndexedSuppressionFilter.class)
+        .assertMessages(
+            Whitespace.class,
+            "4x12: 'new' is not followed by whitespace (option 'NEW')",
+            "6x16: 'new' is not followed by whitespace (option 'NEW')"
+        );
+    }
+
+    @Test public void
+    testCheckName() {
+        Assert.assertEquals("WrapMethod", IndexedSuppressionFilter.checkName(WrapMethodCheck.class.getName()));
+        Assert.assertEquals("Whitespace", IndexedSuppressionFilter.checkName(Whitespace.class.getName()));
+    }
+
+    /**
+     * Runs {@link Whitespace} and {@link Alignment} on the <var>cu</var>, with a suppression comment for the
+     * <var>regex</var> on the first line, and verifies the messages of both checks.
+     *
+     * @param regex {@code null} means no suppression comment
+     */
+    private void
+    assertMessages(List<String> expectedWhitespace, List<String> expectedAlignment, String cu, @Nullable String regex) {
+
+        // Put the comment at the end of the first line, so that the line numbers don't change.
+        if (regex != null) cu = cu.replaceFirst("\n", " // SUPPRESS CHECKSTYLE " + regex + ":9999\n");
+
+        Map<String, List<String>> actual = (
+            multiCsTest(cu)
+            .addCheck(Whitespace.class)
+            .addCheck(Alignment.class, AlignmentCheckTest.all())
+            .addCheck(IndexedSuppressionFilter.class)
+            .getMessages()
+        );
+
+        Assert.assertEquals(regex, expectedWhitespace, IndexedSuppressionFilterTest.orEmpty(actual.get(Whitespace.class.getName())));
+        Assert.assertEquals(regex, expectedAlignment, IndexedSuppressionFilterTest.orEmpty(actual.get(Alignment.class.getName())));
+    }
+
+    private static List<String>
+    orEmpty(@Nullable List<String> messages) { return messages == null ? new ArrayList<String>() : messages; }
+
+    /**
+     * The straightforward implementation: Matches the line against each suppression comment of the file.
+     */
+    static boolean
+    isSuppressed(String[] lines, int lineNo, String checkName) {
+
+        Pattern suppression = Pattern.compile("//\\s*SUPPRESS CHECKSTYLE\\s+([^\\s:]+)(?::(\\d+))?");
+        for (int i = 0; i < lines.length; i++) {
+            Matcher m = suppression.matcher(lines[i]);
+            if (!m.find()) continue;
+
+            int count = m.group(2) == null ? 0 : Integer.parseInt(m.group(2));
+            if (lineNo >= i + 1 && lineNo <= i + 1 + count && Pattern.compile(m.group(1)).matcher(checkName).find()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
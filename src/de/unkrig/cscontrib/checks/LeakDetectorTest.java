@@ -0,0 +1,191 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.LeakDetector;
+import de.unkrig.cscontrib.util.ParseOnlyCheck;
+import de.unkrig.cscontrib.util.PerformanceTests;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Verifies that the cs-contrib checks retain neither the checker nor any {@link DetailAST} or {@link
+ * com.puppycrawl.tools.checkstyle.api.FileContents} across many files and create/destroy cycles.
+ * <p>
+ *   The unit tests run a few cycles over a few files; the {@link PerformanceTests heavy run} also verifies the
+ *   retained heap.
+ * </p>
+ */
+public
+class LeakDetectorTest extends CheckStyleTest {
+
+    private static final int CYCLES       = 20;
+    private static final int SMALL_CYCLES = 3;
+    private static final int SMALL_FILES  = 10;
+
+    private static List<String> cus = new ArrayList<String>();
+
+    @BeforeClass public static void
+    generate() {
+        for (int i = 0; i < 100; i++) {
+            LeakDetectorTest.cus.add(SyntheticCompilationUnits.generate("Unit" + i, 12, i, 0.1));
+        }
+    }
+
+    @Test public void
+    testWhitespace() {
+        this.assertNoLeaks(checkConfig(Whitespace.class));
+    }
+
+    @Test public void
+    testAlignment() {
+        this.assertNoLeaks(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+    }
+
+    @Test public void
+    testWrapMethodCheck() {
+        this.assertNoLeaks(checkConfig(WrapMethodCheck.class));
+    }
+
+    @Test public void
+    testCppCommentAlignment() {
+        this.assertNoLeaks(checkConfig(CppCommentAlignment.class));
+    }
+
+    @Test public void
+    testAllChecks() {
+        this.assertNoLeaks(LeakDetectorTest.allChecks());
+    }
+
+    /**
+     * Runs all checks many times over all files, and verifies also the retained heap.
+     */
+    @Test @Category(PerformanceTests.class) public void
+    testHeavyRun() {
+
+        PerformanceTests.assumeEnabled();
+
+        LeakDetector.Result result = LeakDetector.run(LeakDetectorTest.CYCLES, LeakDetectorTest.cus, LeakDetectorTest.allChecks());
+        result.assertNoLeaks();
+        result.assertRetainedBytes();
+    }
+
+    /**
+     * Verifies that the {@link LeakDetector} does detect a check that keeps the AST of each file.
+     */
+    @Test public void
+    testDetectsLeak() {
+
+        try {
+            LeakDetector.Result result = LeakDetector.run(3, LeakDetectorTest.cus.subList(0, 10), checkConfig(LeakyCheck.class));
+
+            Assert.assertEquals(result.toString(), 30, result.retainedAsts);
+            Assert.assertEquals(result.toString(), 10, result.maxAstsPerLiveChecker);
+            Assert.assertEquals(result.toString(), 0, result.retainedCheckers);
+        } finally {
+            LeakyCheck.ASTS.clear();
+        }
+    }
+
+    /**
+     * Verifies that {@link #assertMessages(com.puppycrawl.tools.checkstyle.Checker, String, String...)} destroys the
+     * checker even if the assertion fails.
+     */
+    @Test public void
+    testVerifyDestroysCheckerOnFailure() {
+
+        DestroyRecordingCheck.destroyed = false;
+
+        boolean failed = false;
+        try {
+            this.assertMessages(this.createTwChecker(checkConfig(DestroyRecordingCheck.class)), "class A {}\n", "1x1: No such message");
+        } catch (AssertionError ae) {
+            failed = true;
+        }
+        Assert.assertTrue(failed);
+        Assert.assertTrue(DestroyRecordingCheck.destroyed);
+    }
+
+    private void
+    assertNoLeaks(Configuration... checkConfigurations) {
+        LeakDetector.run(
+            LeakDetectorTest.SMALL_CYCLES,
+            LeakDetectorTest.cus.subList(0, LeakDetectorTest.SMALL_FILES),
+            checkConfigurations
+        ).assertNoLeaks();
+    }
+
+    private static Configuration[]
+    allChecks() {
+        return new Configuration[] {
+            checkConfig(Whitespace.class),
+            checkConfig(Alignment.class, AlignmentCheckTest.all()),
+            checkConfig(WrapMethodCheck.class),
+            checkConfig(CppCommentAlignment.class),
+        };
+    }
+
+    /**
+     * Keeps the AST of each file it checks.
+     */
+    public static
+    class LeakyCheck extends ParseOnlyCheck {
+
+        static final List<DetailAST> ASTS = new ArrayList<DetailAST>();
+
+        @Override public void
+        beginTree(DetailAST rootAst) { LeakyCheck.ASTS.add(rootAst); }
+    }
+
+    /**
+     * Notes whether it was destroyed.
+     */
+    public static
+    class DestroyRecordingCheck extends ParseOnlyCheck {
+
+        static volatile boolean destroyed;
+
+        @Override public void
+        destroy() {
+            DestroyRecordingCheck.destroyed = true;
+            super.destroy();
+        }
+    }
+}
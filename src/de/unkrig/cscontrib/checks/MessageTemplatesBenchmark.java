@@ -0,0 +1,157 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+import de.unkrig.cscontrib.util.Allocations;
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MessageTemplates;
+
+/**
+ * Measures the time and the allocations per message of formatting the messages of a file with heavy {@link Whitespace}
+ * and {@link Alignment} violations: With {@link LocalizedMessage#getMessage()} vs. with {@link MessageTemplates}, and,
+ * for a complete checker run, formatting each message as it is issued vs. recording it with an {@link
+ * AuditEventRecorder} and formatting it only on demand. Run it as described in {@link Benchmark}; the optional command
+ * line argument is the number of blocks of the compilation unit.
+ */
+public
+class MessageTemplatesBenchmark extends CheckStyleTest {
+
+    public static void
+    main(String[] args) throws CheckstyleException {
+
+        final String cu = MessageTemplatesTest.heavilyViolating(args.length > 0 ? Integer.parseInt(args[0]) : 1000);
+
+        final LocalizedMessage[] lms = new MessageTemplatesTest().localizedMessages(cu).toArray(new LocalizedMessage[0]);
+
+        Runnable getMessage = new Runnable() {
+
+            @Override public void
+            run() {
+                int sum = 0;
+                for (LocalizedMessage lm : lms) sum += lm.getMessage().length();
+                MessageTemplatesBenchmark.sink = sum;
+            }
+        };
+
+        Runnable templates = new Runnable() {
+
+            @Override public void
+            run() {
+                int sum = 0;
+                for (LocalizedMessage lm : lms) sum += MessageTemplates.format(lm).length();
+                MessageTemplatesBenchmark.sink = sum;
+            }
+        };
+
+        double getMessageNs = Benchmark.measure("LocalizedMessage.getMessage()", 5, 20, getMessage);
+        double templatesNs  = Benchmark.measure("MessageTemplates.format()", 5, 20, templates);
+
+        System.out.println(String.format(
+            Locale.US,
+            "%,d messages: %,.1f vs. %,.1f ns/message, %,.1f vs. %,.1f bytes/message",
+            lms.length,
+            getMessageNs / lms.length,
+            templatesNs / lms.length,
+            (double) Allocations.measure(getMessage) / lms.length,
+            (double) Allocations.measure(templates) / lms.length
+        ));
+
+        MessageTemplatesBenchmark b = new MessageTemplatesBenchmark();
+        b.measure("Checker, getMessage() as each event is issued", cu, lms.length, new AuditListener() {
+            @Override public void auditStarted(AuditEvent event)                      {}
+            @Override public void auditFinished(AuditEvent event)                     {}
+            @Override public void fileStarted(AuditEvent event)                       {}
+            @Override public void fileFinished(AuditEvent event)                      {}
+            @Override public void addException(AuditEvent event, Throwable throwable) {}
+            @Override public void addError(AuditEvent event)                          { MessageTemplatesBenchmark.sink = event.getMessage().length(); }
+        }, false);
+        b.measure("Checker, AuditEventRecorder, no formatting", cu, lms.length, new AuditEventRecorder(), false);
+        b.measure("Checker, AuditEventRecorder, all formatted", cu, lms.length, new AuditEventRecorder(), true);
+    }
+
+    /**
+     * Defeats dead code elimination.
+     */
+    static volatile int sink;
+
+    private void
+    measure(String name, final String cu, int messages, final AuditListener listener, final boolean format) {
+
+        final InMemoryChecker checker = this.createTwChecker(
+            checkConfig(Whitespace.class),
+            checkConfig(Alignment.class, AlignmentCheckTest.all())
+        );
+
+        checker.addListener(listener);
+        try {
+
+            Runnable pass = new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        checker.process(cu);
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                    if (listener instanceof AuditEventRecorder) {
+                        AuditEventRecorder recorder = (AuditEventRecorder) listener;
+                        if (format) {
+                            int sum = 0;
+                            for (int i = 0; i < recorder.size(); i++) sum += recorder.getMessage(i).length();
+                            MessageTemplatesBenchmark.sink = sum;
+                        }
+                        recorder.clear();
+                    }
+                }
+            };
+
+            double nsPerPass    = Benchmark.measure(name, 3, 10, pass);
+            long   bytesPerPass = Allocations.measure(pass);
+
+            System.out.println(String.format(
+                Locale.US,
+                "    %,10.1f ns/message %,10.1f bytes/message",
+                nsPerPass / messages,
+                (double) bytesPerPass / messages
+            ));
+        } finally {
+            checker.removeListener(listener);
+            checker.destroy();
+        }
+    }
+}
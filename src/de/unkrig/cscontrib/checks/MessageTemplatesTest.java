@@ -0,0 +1,186 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MessageTemplates;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Verifies that {@link MessageTemplates#format(LocalizedMessage)} produces exactly what {@link
+ * LocalizedMessage#getMessage()} produces.
+ */
+public
+class MessageTemplatesTest extends CheckStyleTest {
+
+    private static final String WHITESPACE_BUNDLE = "com.puppycrawl.tools.checkstyle.checks.whitespace.messages";
+
+    @Test public void
+    testBundleKeyAndCustomMessages() throws ClassNotFoundException {
+
+        Class<?> sourceClass = Class.forName("com.puppycrawl.tools.checkstyle.checks.whitespace.WhitespaceAfterCheck");
+
+        LocalizedMessage[] lms = {
+            new LocalizedMessage(1, WHITESPACE_BUNDLE, "ws.notFollowed", new Object[] { "new" }, null, sourceClass, null),
+            new LocalizedMessage(1, WHITESPACE_BUNDLE, "ws.preceded", new Object[] { "(" }, null, sourceClass, null),
+            new LocalizedMessage(1, WHITESPACE_BUNDLE, "ws.notFollowed", null, null, sourceClass, null),
+            new LocalizedMessage(1, WHITESPACE_BUNDLE, "no.such.key", new Object[] { "x" }, null, sourceClass, null),
+            new LocalizedMessage(1, "no.such.messages", "Value ''{0}'' at {1}", new Object[] { "x", 7 }, null, sourceClass, null),
+            new LocalizedMessage(1, WHITESPACE_BUNDLE, "ws.notFollowed", new Object[] { "new" }, null, sourceClass, "Custom ''{0}''"),
+        };
+
+        Assert.assertEquals("'new' is not followed by whitespace.", MessageTemplates.format(lms[0]));
+        Assert.assertEquals("Value 'x' at 7", MessageTemplates.format(lms[4]));
+        Assert.assertEquals("Custom 'new'", MessageTemplates.format(lms[5]));
+
+        // Twice, so that the second round uses the cached templates, and with a change of the locale in between.
+        try {
+            for (Locale locale : new Locale[] { Locale.ENGLISH, Locale.ENGLISH, Locale.GERMAN, Locale.GERMAN }) {
+                LocalizedMessage.setLocale(locale);
+                for (LocalizedMessage lm : lms) Assert.assertEquals(locale.toString(), lm.getMessage(), MessageTemplates.format(lm));
+            }
+        } finally {
+            LocalizedMessage.setLocale(Locale.ENGLISH);
+        }
+    }
+
+    /**
+     * Verifies the messages that the {@link Whitespace} and the {@link Alignment} check issue for a compilation unit
+     * with many violations.
+     */
+    @Test public void
+    testWhitespaceAndAlignment() throws CheckstyleException {
+
+        List<LocalizedMessage> lms = this.localizedMessages(MessageTemplatesTest.heavilyViolating(50));
+        Assert.assertTrue(lms.size() > 100);
+
+        for (LocalizedMessage lm : lms) Assert.assertEquals(lm.getMessage(), MessageTemplates.format(lm));
+    }
+
+    /**
+     * Verifies that threads that format with the same templates concurrently do not interfere.
+     */
+    @Test public void
+    testConcurrentFormatting() throws Exception {
+
+        final List<LocalizedMessage> lms      = this.localizedMessages(MessageTemplatesTest.heavilyViolating(20));
+        final List<String>           expected = new ArrayList<String>();
+        for (LocalizedMessage lm : lms) expected.add(lm.getMessage());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<List<String>>() {
+
+                    @Override public List<String>
+                    call() {
+                        List<String> result = new ArrayList<String>();
+                        for (int j = 0; j < 50; j++) {
+                            result.clear();
+                            for (LocalizedMessage lm : lms) result.add(MessageTemplates.format(lm));
+                        }
+                        return result;
+                    }
+                }));
+            }
+
+            for (Future<List<String>> future : futures) Assert.assertEquals(expected, future.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The {@link LocalizedMessage}s that the {@link Whitespace} and the {@link Alignment} check issue for the
+     *         <var>cu</var>
+     */
+    List<LocalizedMessage>
+    localizedMessages(String cu) throws CheckstyleException {
+
+        final List<LocalizedMessage> result = new ArrayList<LocalizedMessage>();
+
+        InMemoryChecker checker = this.createTwChecker(
+            checkConfig(Whitespace.class),
+            checkConfig(Alignment.class, AlignmentCheckTest.all())
+        );
+        try {
+            checker.addListener(new AuditListener() {
+                @Override public void auditStarted(AuditEvent event)                      {}
+                @Override public void auditFinished(AuditEvent event)                     {}
+                @Override public void fileStarted(AuditEvent event)                       {}
+                @Override public void fileFinished(AuditEvent event)                      {}
+                @Override public void addException(AuditEvent event, Throwable throwable) {}
+                @Override public void addError(AuditEvent event)                          { result.add(event.getLocalizedMessage()); }
+            });
+            checker.process(cu);
+        } finally {
+            checker.destroy();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return A compilation unit with <var>blocks</var> randomly misaligned blocks, and a method where every other
+     *         line violates the {@link Whitespace} check
+     */
+    static String
+    heavilyViolating(int blocks) {
+
+        String        cu = SyntheticCompilationUnits.generate("Violating", blocks, 0, 0.5);
+        StringBuilder sb = new StringBuilder(cu.substring(0, cu.lastIndexOf('}')));
+
+        sb.append("    void violations() {\n");
+        for (int i = 0; i < 10 * blocks; i++) {
+            sb.append("        new/**/java.util.ArrayList();\n");
+            sb.append("        /**/new java.util.ArrayList();\n");
+        }
+        sb.append("    }\n}\n");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,100 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MultiCheckRunner;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Compares executing all cs-contrib checks under one tree walker (one parse per compilation unit) with executing each
+ * check under its own tree walker (one parse per check and compilation unit). Run it as described in {@link Benchmark}.
+ */
+public
+class MultiCheckBenchmark extends CheckStyleTest {
+
+    public static void
+    main(String[] args) throws CheckstyleException {
+
+        final String[] cus = new String[20];
+        for (int i = 0; i < cus.length; i++) cus[i] = SyntheticCompilationUnits.generate("Unit" + i, 200, i, 0.05);
+
+        final Configuration[] checkConfigurations = {
+            checkConfig(Alignment.class),
+            checkConfig(CppCommentAlignment.class),
+            checkConfig(Whitespace.class),
+            checkConfig(WrapMethodCheck.class),
+        };
+
+        MultiCheckBenchmark b = new MultiCheckBenchmark();
+
+        final InMemoryChecker[] checkers = new InMemoryChecker[checkConfigurations.length];
+        for (int i = 0; i < checkers.length; i++) checkers[i] = b.createTwChecker(checkConfigurations[i]);
+
+        final MultiCheckRunner runner = new MultiCheckRunner(checkConfigurations);
+
+        try {
+            double separate = Benchmark.measure("One tree walker per check", 3, 10, new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        for (String cu : cus) {
+                            for (InMemoryChecker checker : checkers) checker.process(cu);
+                        }
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                }
+            });
+
+            double shared = Benchmark.measure("One tree walker for all checks", 3, 10, new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        for (String cu : cus) runner.process(InMemoryChecker.DEFAULT_FILE_NAME, cu);
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                }
+            });
+
+            System.out.println(String.format(Locale.US, "Speedup: %.2f", separate / shared));
+        } finally {
+            for (InMemoryChecker checker : checkers) checker.destroy();
+            runner.destroy();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+
+/**
+ * Tests for executing several checks under one tree walker.
+ */
+public
+class MultiCheckTest extends CheckStyleTest {
+
+    private static final Class<?>[] CHECKS = {
+        Alignment.class,
+        CppCommentAlignment.class,
+        Whitespace.class,
+        WrapMethodCheck.class,
+    };
+
+    @Test public void
+    testMessagesAreReportedPerCheck() {
+
+        multiCsTest(
+            ""
+            + "class Foo {\n"
+            + "    int\n"
+            + "     method() { System.out.println(\"HELLO\"); }\n"
+            + "}"
+        )
+        .addCheck(Alignment.class)
+        .addCheck(WrapMethodCheck.class)
+        .assertMessages(WrapMethodCheck.class, "3x6: 'method' must appear in column 5, not 6");
+    }
+
+    /**
+     * Verifies that each check issues the same messages, no matter whether it executes under its own tree walker,
+     * or together with all other checks.
+     */
+    @Test public void
+    testSameMessagesAsOneCheckPerTreeWalker() {
+        this.assertSameMessagesAsOneCheckPerTreeWalker(AlignmentCheckTest.PROPERLY_ALIGNED);
+        this.assertSameMessagesAsOneCheckPerTreeWalker(AlignmentCheckTest.MISALIGNED);
+        this.assertSameMessagesAsOneCheckPerTreeWalker(
+            ""
+            + "public class Foo {\n"
+            + "    void method() {\n"
+            + "        new java.util.ArrayList();\n"
+            + "        new/**/java.util.ArrayList();\n"
+            + "        run(ArrayList:: new );\n"
+            + "    }\n"
+            + "}\n"
+        );
+    }
+
+    private void
+    assertSameMessagesAsOneCheckPerTreeWalker(String cu) {
+
+        MultiCsTest multiCsTest = multiCsTest(cu);
+        for (Class<?> checkClass : MultiCheckTest.CHECKS) multiCsTest.addCheck(checkClass);
+
+        Map<String, List<String>> actual = multiCsTest.getMessages();
+
+        for (Class<?> checkClass : MultiCheckTest.CHECKS) {
+
+            List<String> actualMessages = actual.get(checkClass.getName());
+            if (actualMessages == null) actualMessages = Collections.emptyList();
+
+            Assert.assertEquals(checkClass.getSimpleName(), csTest(checkClass, cu).getMessages(), actualMessages);
+        }
+    }
+}
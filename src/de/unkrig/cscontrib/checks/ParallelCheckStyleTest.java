@@ -0,0 +1,127 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.ParallelComputer;
+import org.junit.experimental.categories.Categories.CategoryFilter;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.PerformanceTests;
+
+/**
+ * Verifies that the {@link CheckStyleTest} harness can execute assertions concurrently.
+ */
+public
+class ParallelCheckStyleTest extends CheckStyleTest {
+
+    private static final int THREADS                = 16;
+    private static final int ASSERTIONS_PER_THREAD  = 200;
+
+    /**
+     * Runs the same {@link CsTest} from many threads and verifies that all runs produce identical messages.
+     */
+    @Test public void
+    testSameCsTestFromManyThreads() throws Exception {
+
+        final CsTest csTest = csTest(Whitespace.class, (
+            ""
+            + "public class Foo {\n"
+            + "    void method() {\n"
+            + "        new java.util.ArrayList();\n"
+            + "        new/**/java.util.ArrayList();\n"
+            + "        /**/new java.util.ArrayList();\n"
+            + "        /**/new/**/java.util.ArrayList();\n"
+            + "    }\n"
+            + "}\n"
+        ));
+
+        final List<String> expected = Arrays.asList(
+            "4x12: 'new' is not followed by whitespace (option 'NEW')",
+            "6x16: 'new' is not followed by whitespace (option 'NEW')"
+        );
+        Assert.assertEquals(expected, csTest.getMessages());
+
+        ExecutorService executor = Executors.newFixedThreadPool(ParallelCheckStyleTest.THREADS);
+        try {
+
+            List<Future<List<List<String>>>> futures = new ArrayList<Future<List<List<String>>>>();
+            for (int i = 0; i < ParallelCheckStyleTest.THREADS; i++) {
+                futures.add(executor.submit(new Callable<List<List<String>>>() {
+
+                    @Override public List<List<String>>
+                    call() {
+                        List<List<String>> result = new ArrayList<List<String>>();
+                        for (int j = 0; j < ParallelCheckStyleTest.ASSERTIONS_PER_THREAD; j++) {
+                            result.add(csTest.getMessages());
+                        }
+                        return result;
+                    }
+                }));
+            }
+
+            for (Future<List<List<String>>> future : futures) {
+                for (List<String> actual : future.get()) Assert.assertEquals(expected, actual);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the functional tests of all checks with JUNIT's {@link ParallelComputer}, i.e. all test classes and all
+     * test methods concurrently. The {@link PerformanceTests} are excluded, because they measure time and memory.
+     */
+    @Test public void
+    testChecksSuiteInParallel() {
+
+        Result result = new JUnitCore().run(Request.classes(
+            new ParallelComputer(true, true),
+            AlignmentCheckTest.class,
+            CppCommentAlignmentCheckTest.class,
+            JavaTest.class,
+            WhitespaceCheckTest.class,
+            WrapMethodCheckTest.class
+        ).filterWith(CategoryFilter.exclude(PerformanceTests.class)));
+
+        Assert.assertTrue(result.getFailures().toString(), result.wasSuccessful());
+    }
+}
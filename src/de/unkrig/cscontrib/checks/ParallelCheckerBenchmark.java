@@ -0,0 +1,101 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.ParallelChecker;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Measures how the throughput of the {@link ParallelChecker} scales with the number of threads, for all cs-contrib
+ * checks on a generated corpus. Run it as described in {@link Benchmark}; the optional command line arguments are the
+ * number of files and the maximum number of threads (default: the number of available processors).
+ */
+public
+class ParallelCheckerBenchmark extends CheckStyleTest {
+
+    public static void
+    main(String[] args) {
+
+        final int files      = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        TemporaryCorpus temporaryCorpus = new TemporaryCorpus("cs-contrib-parallel-benchmark", files, 12, 0, 0.05);
+        try {
+            final List<File> corpus = Arrays.asList(temporaryCorpus.getFiles());
+
+            DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+            treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+            treeWalker.addChild(checkConfig(CppCommentAlignment.class));
+            treeWalker.addChild(checkConfig(Whitespace.class));
+            treeWalker.addChild(checkConfig(WrapMethodCheck.class));
+            DefaultConfiguration checkerConfiguration = new ParallelCheckerBenchmark().createCheckerConfig(treeWalker);
+
+            double singleNs = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+
+                final ParallelChecker pc = new ParallelChecker(checkerConfiguration, threads);
+                try {
+                    double ns = Benchmark.measure(threads + " thread(s)", 2, 5, new Runnable() {
+
+                        @Override public void
+                        run() {
+                            try {
+                                pc.process(corpus, new AuditEventRecorder());
+                            } catch (CheckstyleException ce) {
+                                throw new AssertionError(ce);
+                            }
+                        }
+                    });
+                    if (threads == 1) singleNs = ns;
+
+                    System.out.println(String.format(
+                        Locale.US,
+                        "    %,10.0f files/s, speedup %.2f",
+                        1E9 * files / ns,
+                        singleNs / ns
+                    ));
+                } finally {
+                    pc.destroy();
+                }
+            }
+        } finally {
+            temporaryCorpus.delete();
+        }
+    }
+}
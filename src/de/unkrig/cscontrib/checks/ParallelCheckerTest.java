@@ -0,0 +1,168 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.filefilters.BeforeExecutionExclusionFileFilter;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.MessageCollector;
+import de.unkrig.cscontrib.util.ParallelChecker;
+import de.unkrig.cscontrib.util.TemporaryCorpus;
+
+/**
+ * Verifies that the {@link ParallelChecker} reports exactly the same audit events, in the same order, as a single
+ * {@link com.puppycrawl.tools.checkstyle.Checker}.
+ */
+public
+class ParallelCheckerTest extends CheckStyleTest {
+
+    @ClassRule public static final TemporaryCorpus CORPUS = new TemporaryCorpus("cs-contrib-parallel", 200, 12, 0, 0.05);
+
+    @Test public void
+    testSameEventsAsSingleThreaded() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+        treeWalker.addChild(checkConfig(WrapMethodCheck.class));
+        treeWalker.addChild(checkConfig(CppCommentAlignment.class));
+        treeWalker.addChild(checkConfig(Whitespace.class));
+        DefaultConfiguration checkerConfiguration = this.createCheckerConfig(treeWalker);
+
+        List<String> expected;
+        {
+            InMemoryChecker checker = this.createTwChecker(treeWalker.getChildren());
+            try {
+                expected = ParallelCheckerTest.eventsWithFileNames(CheckStyleTest.process(checker, ParallelCheckerTest.CORPUS.getFiles()));
+            } finally {
+                checker.destroy();
+            }
+        }
+
+        for (int parallelism : new int[] { 1, 2, 7 }) {
+
+            ParallelChecker pc = new ParallelChecker(checkerConfiguration, parallelism);
+            try {
+                final List<String> fileOrder = new ArrayList<String>();
+                MessageCollector   collector = new MessageCollector() {
+                    @Override public void fileStarted(AuditEvent event) { fileOrder.add(event.getFileName()); }
+                };
+
+                pc.process(Arrays.asList(ParallelCheckerTest.CORPUS.getFiles()), collector);
+
+                Assert.assertEquals("Parallelism " + parallelism, expected, ParallelCheckerTest.eventsWithFileNames(collector));
+
+                Assert.assertEquals(ParallelCheckerTest.CORPUS.getFiles().length, fileOrder.size());
+                for (int i = 0; i < ParallelCheckerTest.CORPUS.getFiles().length; i++) {
+                    Assert.assertEquals(ParallelCheckerTest.CORPUS.getFiles()[i].getAbsolutePath(), fileOrder.get(i));
+                }
+            } finally {
+                pc.destroy();
+            }
+        }
+    }
+
+    /**
+     * Verifies that, like the {@link com.puppycrawl.tools.checkstyle.Checker}, the {@link ParallelChecker} skips
+     * files that do not have one of the "{@code fileExtensions}" or that a before-execution file filter rejects.
+     */
+    @Test public void
+    testFileExtensionsAndFilters() throws Exception {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        treeWalker.addChild(checkConfig(Alignment.class, AlignmentCheckTest.all()));
+
+        DefaultConfiguration filter = new DefaultConfiguration(BeforeExecutionExclusionFileFilter.class.getName());
+        filter.addAttribute("fileNamePattern", "Unit1\\d*\\.java$");
+
+        DefaultConfiguration checkerConfiguration = this.createCheckerConfig(treeWalker);
+        checkerConfiguration.addChild(filter);
+
+        List<String> expected;
+        {
+            InMemoryChecker checker = CheckStyleTest.createChecker(checkerConfiguration);
+            try {
+                expected = ParallelCheckerTest.eventsWithFileNames(CheckStyleTest.process(checker, ParallelCheckerTest.CORPUS.getFiles()));
+            } finally {
+                checker.destroy();
+            }
+        }
+
+        ParallelChecker pc = new ParallelChecker(checkerConfiguration, 4);
+        try {
+            final List<String> fileOrder = new ArrayList<String>();
+            MessageCollector   collector = new MessageCollector() {
+                @Override public void fileStarted(AuditEvent event) { fileOrder.add(event.getFileName()); }
+            };
+
+            pc.process(Arrays.asList(ParallelCheckerTest.CORPUS.getFiles()), collector);
+
+            Assert.assertEquals(expected, ParallelCheckerTest.eventsWithFileNames(collector));
+            Assert.assertFalse(fileOrder.isEmpty());
+            for (String fileName : fileOrder) Assert.assertFalse(fileName, new File(fileName).getName().matches("Unit1\\d*\\.java"));
+        } finally {
+            pc.destroy();
+        }
+
+        checkerConfiguration.addAttribute("fileExtensions", "txt");
+        pc = new ParallelChecker(checkerConfiguration, 4);
+        try {
+            MessageCollector collector = new MessageCollector() {
+                @Override public void fileStarted(AuditEvent event) { Assert.fail(event.getFileName()); }
+            };
+
+            pc.process(Arrays.asList(ParallelCheckerTest.CORPUS.getFiles()), collector);
+
+            Assert.assertEquals(0, collector.size());
+        } finally {
+            pc.destroy();
+        }
+    }
+
+    private static List<String>
+    eventsWithFileNames(MessageCollector collector) {
+
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < collector.size(); i++) result.add(collector.getFileName(i) + ":" + collector.format(i));
+
+        return result;
+    }
+}
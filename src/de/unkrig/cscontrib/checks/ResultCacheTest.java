@@ -0,0 +1,226 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.MessageTemplates;
+import de.unkrig.cscontrib.util.ResultCache;
+
+/**
+ * Verifies that messages from the {@link ResultCache} are exactly the messages of a cold check, and that the cache
+ * entries are invalidated by any change of the configuration or the code.
+ */
+public
+class ResultCacheTest extends CheckStyleTest {
+
+    private File        file;
+    private ResultCache cache;
+
+    @Before public void
+    openCache() throws IOException {
+        this.file  = File.createTempFile("cs-contrib-results", ".bin");
+        this.cache = new ResultCache(this.file);
+        this.setResultCache(this.cache);
+    }
+
+    @After public void
+    deleteCache() throws IOException {
+        this.cache.close();
+        this.file.delete();
+    }
+
+    @Test public void
+    testHitsEqualColdChecks() {
+
+        for (String cu : new String[] { AlignmentCheckTest.PROPERLY_ALIGNED, AlignmentCheckTest.MISALIGNED }) {
+            for (String attributeName : AlignmentCheckTest.APPLY_TO_ATTRIBUTE_NAMES) {
+
+                List<String> cold = this.cold(cu, AlignmentCheckTest.only(attributeName));
+
+                int hits = this.cache.getHits();
+                Assert.assertEquals(cold, csTest(Alignment.class, cu).addAttributes(AlignmentCheckTest.only(attributeName)).getMessages());
+                Assert.assertEquals(hits, this.cache.getHits());
+                Assert.assertEquals(cold, csTest(Alignment.class, cu).addAttributes(AlignmentCheckTest.only(attributeName)).getMessages());
+                Assert.assertEquals(hits + 1, this.cache.getHits());
+            }
+        }
+    }
+
+    @Test public void
+    testHitsPassColdAssertions() {
+        for (int i = 0; i < 2; i++) {
+            csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToAssignments")).assertMessages("21x14: '=' should be aligned with '=' in line 20");
+            csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToFieldName")).assertMessages("4x13: 'field2' should be aligned with 'field1' in line 3");
+            csTest(Alignment.class, AlignmentCheckTest.PROPERLY_ALIGNED).addAttributes(AlignmentCheckTest.all()).assertNoMessages();
+        }
+        Assert.assertEquals(3, this.cache.getHits());
+    }
+
+    /**
+     * Any change of the configuration must miss, even the change of a property that does not affect the messages.
+     */
+    @Test public void
+    testPropertyChangesInvalidate() {
+
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToAssignments")).getMessages();
+
+        int misses = this.cache.getMisses();
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToFieldName")).getMessages();
+        Assert.assertEquals(misses + 1, this.cache.getMisses());
+
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToAssignments")).addAttribute("severity", "warning").getMessages();
+        Assert.assertEquals(misses + 2, this.cache.getMisses());
+
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.only("applyToAssignments")).addAttribute("id", "alignment1").getMessages();
+        Assert.assertEquals(misses + 3, this.cache.getMisses());
+
+        csTest(WrapMethodCheck.class, AlignmentCheckTest.MISALIGNED).getMessages();
+        Assert.assertEquals(misses + 4, this.cache.getMisses());
+    }
+
+    @Test public void
+    testContentChangesInvalidate() {
+
+        csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).getMessages();
+
+        int misses = this.cache.getMisses();
+        List<String> cold = this.cold(AlignmentCheckTest.MISALIGNED + " ", AlignmentCheckTest.all());
+        Assert.assertEquals(cold, csTest(Alignment.class, AlignmentCheckTest.MISALIGNED + " ").addAttributes(AlignmentCheckTest.all()).getMessages());
+        Assert.assertEquals(misses + 1, this.cache.getMisses());
+    }
+
+    /**
+     * The entries survive closing and re-opening the cache.
+     */
+    @Test public void
+    testPersistence() throws IOException {
+
+        List<String> cold = csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).getMessages();
+
+        this.cache.close();
+        this.cache = new ResultCache(this.file);
+        this.setResultCache(this.cache);
+
+        Assert.assertEquals(1, this.cache.size());
+        Assert.assertEquals(cold, csTest(Alignment.class, AlignmentCheckTest.MISALIGNED).addAttributes(AlignmentCheckTest.all()).getMessages());
+        Assert.assertEquals(1, this.cache.getHits());
+    }
+
+    /**
+     * The messages are localized, so a change of the locale must miss.
+     */
+    @Test public void
+    testLocaleChangesInvalidate() throws IOException {
+
+        Configuration configuration = new DefaultConfiguration("Checker");
+
+        Locale locale = MessageTemplates.getLocale();
+        try {
+            LocalizedMessage.setLocale(Locale.GERMAN);
+            this.cache.put(configuration, "Foo.java", "class Foo {}\n", new AuditEventRecorder());
+            Assert.assertNotNull(this.cache.get(configuration, "Foo.java", "class Foo {}\n"));
+
+            LocalizedMessage.setLocale(Locale.FRENCH);
+            Assert.assertNull(this.cache.get(configuration, "Foo.java", "class Foo {}\n"));
+
+            LocalizedMessage.setLocale(Locale.GERMAN);
+            Assert.assertNotNull(this.cache.get(configuration, "Foo.java", "class Foo {}\n"));
+        } finally {
+            LocalizedMessage.setLocale(locale);
+        }
+    }
+
+    /**
+     * Several instances (like several processes) can append to the same cache file.
+     */
+    @Test public void
+    testSharedFile() throws Exception {
+
+        final Configuration configuration = new DefaultConfiguration("Checker");
+
+        ResultCache cache2 = new ResultCache(this.file);
+        try {
+            final ResultCache[] caches = { this.cache, cache2 };
+
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                final int ii = i;
+                threads.add(new Thread() {
+
+                    @Override public void
+                    run() {
+                        try {
+                            for (int j = 0; j < 50; j++) {
+                                caches[ii % 2].put(configuration, "Foo" + ii + "_" + j + ".java", "class Foo {}\n", new AuditEventRecorder());
+                            }
+                        } catch (IOException ioe) {
+                            throw new AssertionError(ioe);
+                        }
+                    }
+                });
+            }
+            for (Thread t : threads) t.start();
+            for (Thread t : threads) t.join();
+        } finally {
+            cache2.close();
+        }
+
+        this.cache.close();
+        this.cache = new ResultCache(this.file);
+        this.setResultCache(this.cache);
+
+        Assert.assertEquals(200, this.cache.size());
+    }
+
+    private List<String>
+    cold(String cu, String[] attributeNamesAndValues) {
+        this.setResultCache(null);
+        try {
+            return csTest(Alignment.class, cu).addAttributes(attributeNamesAndValues).getMessages();
+        } finally {
+            this.setResultCache(this.cache);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Locale;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+
+import de.unkrig.cscontrib.util.Allocations;
+import de.unkrig.cscontrib.util.AuditEventRecorder;
+import de.unkrig.cscontrib.util.Benchmark;
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.InMemoryChecker;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Measures the time and the allocations per token of the {@link Whitespace} check, with the default configuration, and
+ * with all tokens in all four option lists ("{@code whitespaceBefore}", "{@code noWhitespaceBefore}", "{@code
+ * whitespaceAfter}" and "{@code noWhitespaceAfter}"), which is the worst case for the per-token option lookup. Run it
+ * as described in {@link Benchmark}; the optional command line arguments are the number of compilation units and the
+ * number of blocks per compilation unit.
+ */
+public
+class WhitespaceBenchmark extends CheckStyleTest {
+
+    private static final String[] OPTION_LISTS = {
+        "whitespaceBefore",
+        "noWhitespaceBefore",
+        "whitespaceAfter",
+        "noWhitespaceAfter",
+    };
+
+    public static void
+    main(String[] args) throws CheckstyleException {
+
+        final int units         = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final int blocksPerUnit = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        final String[] cus    = new String[units];
+        int            tokens = 0;
+        for (int i = 0; i < units; i++) {
+            cus[i]  = SyntheticCompilationUnits.generate("Unit" + i, blocksPerUnit, i, 0.05);
+            tokens += SyntheticCompilationUnits.countTokens(cus[i]);
+        }
+
+        String allTokens = WhitespaceBenchmark.allTokens();
+
+        String[] all = new String[2 * WhitespaceBenchmark.OPTION_LISTS.length];
+        for (int i = 0; i < WhitespaceBenchmark.OPTION_LISTS.length; i++) {
+            all[2 * i]     = WhitespaceBenchmark.OPTION_LISTS[i];
+            all[2 * i + 1] = allTokens;
+        }
+
+        WhitespaceBenchmark b = new WhitespaceBenchmark();
+        b.measure("default", new String[0], cus, tokens);
+        b.measure("all options", all, cus, tokens);
+    }
+
+    /**
+     * @return The names of all the tokens that the {@link Whitespace} check supports, comma-separated; determined by
+     *         reflection, as the token enum is not part of the check's API
+     */
+    private static String
+    allTokens() {
+
+        for (Class<?> c : Whitespace.class.getDeclaredClasses()) {
+            if (!c.isEnum()) continue;
+
+            StringBuilder sb = new StringBuilder();
+            for (Object constant : c.getEnumConstants()) {
+                if (sb.length() > 0) sb.append(',');
+                sb.append(((Enum<?>) constant).name().toLowerCase(Locale.ENGLISH));
+            }
+            if (sb.indexOf("new__meth_ref") != -1) return sb.toString();
+        }
+
+        throw new AssertionError("Cannot determine the tokens of the Whitespace check");
+    }
+
+    private void
+    measure(String name, String[] attributeNamesAndValues, final String[] cus, int tokens) {
+
+        final InMemoryChecker    checker  = this.createTwChecker(checkConfig(Whitespace.class, attributeNamesAndValues));
+        final AuditEventRecorder recorder = new AuditEventRecorder();
+
+        checker.addListener(recorder);
+        try {
+
+            Runnable pass = new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        for (String cu : cus) checker.process(cu);
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                    recorder.clear();
+                }
+            };
+
+            double nsPerPass    = Benchmark.measure(name, 3, 10, pass);
+            long   bytesPerPass = Allocations.measure(pass);
+
+            System.out.println(String.format(
+                Locale.US,
+                "    %,10.0f files/s %,10.1f ns/token %,10.1f bytes/token",
+                1E9 * cus.length / nsPerPass,
+                nsPerPass / tokens,
+                (double) bytesPerPass / tokens
+            ));
+        } finally {
+            checker.removeListener(recorder);
+            checker.destroy();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE LineLength|Javadoc:9999
+
+package de.unkrig.cscontrib.checks;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.LatencyFuzzer;
+import de.unkrig.cscontrib.util.LatencyFuzzer.Finding;
+import de.unkrig.cscontrib.util.PerformanceTests;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Verifies that pathological compilation units, namely the seeds of the {@link WorstCaseSearch}, scaled up, are
+ * checked within their latency budgets. The system property "{@code cscontrib.latency.budgetFactor}" (default 1)
+ * scales all budgets, e.g. for slow build machines.
+ * <p>
+ *   These are {@link PerformanceTests}, because the budgets are wall-clock times.
+ * </p>
+ */
+@Category(PerformanceTests.class) public
+class WorstCaseLatencyTest extends CheckStyleTest {
+
+    private static final double BUDGET_FACTOR = Double.parseDouble(System.getProperty("cscontrib.latency.budgetFactor", "1"));
+
+    @Before public void
+    assumeEnabled() {
+        PerformanceTests.assumeEnabled();
+    }
+
+    @Test public void
+    testDeeplyNestedCalls() {
+        String cu = SyntheticCompilationUnits.nestedCalls("Nested", 300);
+        this.assertLatency(WrapMethodCheck.class, cu, 1000);
+        this.assertLatency(Whitespace.class, cu, 1000);
+    }
+
+    @Test public void
+    testHugeSwitch() {
+        this.assertLatency(Alignment.class, SyntheticCompilationUnits.hugeSwitch("Switch", 10000), 2000, AlignmentCheckTest.all());
+    }
+
+    @Test public void
+    testDenseComments() {
+        this.assertLatency(CppCommentAlignment.class, SyntheticCompilationUnits.denseComments("Comments", 10000), 2000);
+    }
+
+    private void
+    assertLatency(final Class<?> checkClass, String cu, long budgetMs, final String... attributeNamesAndValues) {
+
+        Finding f = new LatencyFuzzer(new LatencyFuzzer.Target() {
+
+            @Override public void
+            check(String code) { csTest(checkClass, code).addAttributes(attributeNamesAndValues).getMessages(); }
+        }, 0).measure(cu);
+
+        Assert.assertNotNull(checkClass.getSimpleName() + ": Invalid input", f);
+
+        double ms = f.ns / 1E6, budget = budgetMs * WorstCaseLatencyTest.BUDGET_FACTOR;
+        if (ms > budget) {
+            Assert.fail(String.format(Locale.US, "%s took %,.1f ms, which exceeds the budget of %,.1f ms", checkClass.getSimpleName(), ms, budget));
+        }
+    }
+}
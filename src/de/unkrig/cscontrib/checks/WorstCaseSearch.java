@@ -0,0 +1,106 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.checks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import de.unkrig.cscontrib.util.CheckStyleTest;
+import de.unkrig.cscontrib.util.LatencyFuzzer;
+import de.unkrig.cscontrib.util.LatencyFuzzer.Finding;
+import de.unkrig.cscontrib.util.SyntheticCompilationUnits;
+
+/**
+ * Searches, for each cs-contrib check, for compilation units that maximize the check's runtime per byte, see {@link
+ * LatencyFuzzer}. Run it as described in {@link de.unkrig.cscontrib.util.Benchmark}; the optional command line
+ * arguments are the number of iterations per check, and a directory where the worst case of each check is saved,
+ * see {@link LatencyFuzzer#save(Finding, File, String, double)}.
+ */
+public
+class WorstCaseSearch extends CheckStyleTest {
+
+    private static final Class<?>[] CHECK_CLASSES = {
+        Whitespace.class,
+        Alignment.class,
+        WrapMethodCheck.class,
+        CppCommentAlignment.class,
+    };
+
+    public static void
+    main(String[] args) throws IOException {
+
+        final int  iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final File saveTo     = args.length > 1 ? new File(args[1]) : null;
+
+        final List<String> seeds = Arrays.asList(
+            SyntheticCompilationUnits.nestedCalls("Nested", 50),
+            SyntheticCompilationUnits.hugeSwitch("Switch", 500),
+            SyntheticCompilationUnits.denseComments("Comments", 500),
+            SyntheticCompilationUnits.generate("Generated", 30, 0, 0.05)
+        );
+
+        final WorstCaseSearch wcs = new WorstCaseSearch();
+
+        for (final Class<?> checkClass : WorstCaseSearch.CHECK_CLASSES) {
+
+            LatencyFuzzer fuzzer = new LatencyFuzzer(new LatencyFuzzer.Target() {
+
+                @Override public void
+                check(String cu) { wcs.check(checkClass, cu); }
+            }, 0);
+
+            List<Finding> findings = fuzzer.search(seeds, iterations, 3, 100000);
+
+            System.out.println(checkClass.getSimpleName() + ":");
+            for (Finding f : findings) {
+                System.out.println(String.format(
+                    Locale.US,
+                    "  %,10.1f ns/byte %,10d bytes %,10.3f ms",
+                    f.getNsPerByte(),
+                    f.cu.length(),
+                    f.ns / 1E6
+                ));
+            }
+
+            if (saveTo != null) {
+                String name = checkClass.getSimpleName() + "-" + System.currentTimeMillis();
+                LatencyFuzzer.save(findings.get(0), saveTo, name, 3);
+                System.out.println("  Saved as \"" + name + "\"");
+            }
+        }
+    }
+
+    private void
+    check(Class<?> checkClass, String cu) {
+        String[] attributeNamesAndValues = checkClass == Alignment.class ? AlignmentCheckTest.all() : new String[0];
+
+        csTest(checkClass, cu).addAttributes(attributeNamesAndValues).getMessages();
+    }
+}
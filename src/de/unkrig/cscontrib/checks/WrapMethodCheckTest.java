@@ -70,6 +70,51 @@ class WrapMethodCheckTest extends CheckStyleTest {
         )).assertMessages("3x6: 'method' must appear in column 5, not 6");
     }
 
+    /**
+     * TAB-indented variants of {@link #testSimple()}, {@link #testAlignment()} and {@link
+     * #testAllowMultipleArgsPerLine()}; all columns are TAB-expanded (TAB width 8).
+     */
+    @Test public void
+    testTabIndented() {
+
+        csTest(WrapMethodCheck.class, (
+            ""
+            + "class Foo {\n"
+            + "\tint\n"
+            + "\tmethod() { System.out.println(\"HELLO\");\n}\n"
+            + "}"
+        )).assertNoMessages();
+
+        // One TAB is as deep as eight spaces.
+        csTest(WrapMethodCheck.class, (
+            ""
+            + "class Foo {\n"
+            + "\tint\n"
+            + "        method() { System.out.println(\"HELLO\");\n}\n"
+            + "}"
+        )).assertNoMessages();
+
+        csTest(WrapMethodCheck.class, (
+            ""
+            + "class Foo {\n"
+            + "\tint\n"
+            + "\t method() { System.out.println(\"HELLO\"); }\n" // <= Indentation is one SPACE too deep.
+            + "}"
+        )).assertMessages("3x10: 'method' must appear in column 9, not 10");
+
+        csTest(WrapMethodCheck.class, (
+            ""
+            + "class Foo {\n"
+            + "\tint\n"
+            + "\tmethod() {\n"
+            + "\t\tSystem.out.printf(\n"
+            + "\t\t\t\"%s%n\", \"HELLO\"\n"
+            + "\t\t);\n"
+            + "\t}\n"
+            + "}"
+        )).assertMessages("5x33: Must wrap line before '\"HELLO\"'");
+    }
+
     /**
      * Test for {@link WrapMethodCheck#setAllowMultipleArgsPerLine(boolean)}.
      */
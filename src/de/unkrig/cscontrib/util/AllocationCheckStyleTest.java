@@ -0,0 +1,163 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Assume;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Adds assertions on the number of bytes that checks allocate per processed file to the {@link CheckStyleTest}.
+ * The budgets are loaded from the "{@code allocation-budgets.properties}" resource next to the concrete test class;
+ * each entry maps a budget name to a number of bytes.
+ * <p>
+ *   The measurements depend on the JVM, so concrete tests should be {@link PerformanceTests}.
+ * </p>
+ * <p>
+ *   The measured number is the difference between the allocations of a checker with the check in question and
+ *   those of a checker with a {@link ParseOnlyCheck}; thus it excludes the allocations of parsing.
+ * </p>
+ */
+public abstract
+class AllocationCheckStyleTest extends CheckStyleTest {
+
+    /**
+     * Enough runs to have the JIT compile the check code, so that escape analysis has taken effect.
+     */
+    private static final int WARMUP_RUNS = 30;
+    private static final int RUNS        = 5;
+
+    @Nullable private Properties budgets;
+
+    /**
+     * Verifies that the configured check allocates no more bytes per file than the budget with the given name, when
+     * it processes the <var>cus</var>. Skips the test iff the JVM does not support per-thread allocation counters.
+     * Iff there is no budget with that name, the test fails with the measured number, so that it can be entered.
+     *
+     * @return The measured number of bytes per file
+     */
+    protected long
+    assertAllocationBudget(String budgetName, Configuration checkConfiguration, String... cus) {
+
+        Assume.assumeTrue("Per-thread allocation counters are not supported", Allocations.SUPPORTED);
+
+        long baseline = this.allocatedBytesPerFile(checkConfig(ParseOnlyCheck.class), cus);
+        long actual   = Math.max(0, this.allocatedBytesPerFile(checkConfiguration, cus) - baseline);
+
+        String budget = this.getBudgets().getProperty(budgetName);
+        if (budget == null) {
+            Assert.fail(String.format(
+                Locale.US,
+                "No allocation budget \"%s\"; it allocates %,d bytes per file, so enter \"%s = %d\"",
+                budgetName,
+                actual,
+                budgetName,
+                actual + actual / 4
+            ));
+        }
+
+        long limit = Long.parseLong(budget.trim());
+        if (actual > limit) {
+            Assert.fail(String.format(
+                Locale.US,
+                "\"%s\" allocates %,d bytes per file, which exceeds its budget of %,d bytes",
+                budgetName,
+                actual,
+                limit
+            ));
+        }
+
+        return actual;
+    }
+
+    /**
+     * @return The least number of bytes per file that a checker with the configured check allocated, over several
+     *         runs over the <var>cus</var>
+     */
+    protected long
+    allocatedBytesPerFile(Configuration checkConfiguration, final String... cus) {
+
+        final InMemoryChecker    checker  = this.createTwChecker(checkConfiguration);
+        final AuditEventRecorder recorder = new AuditEventRecorder();
+
+        checker.addListener(recorder);
+        try {
+
+            Runnable run = new Runnable() {
+
+                @Override public void
+                run() {
+                    try {
+                        for (String cu : cus) checker.process(cu);
+                    } catch (CheckstyleException ce) {
+                        throw new AssertionError(ce);
+                    }
+                    recorder.clear();
+                }
+            };
+
+            for (int i = 0; i < AllocationCheckStyleTest.WARMUP_RUNS; i++) run.run();
+
+            long result = Long.MAX_VALUE;
+            for (int i = 0; i < AllocationCheckStyleTest.RUNS; i++) {
+                result = Math.min(result, Allocations.measure(run));
+            }
+
+            return result / cus.length;
+        } finally {
+            checker.removeListener(recorder);
+            checker.destroy();
+        }
+    }
+
+    private Properties
+    getBudgets() {
+
+        Properties budgets = this.budgets;
+        if (budgets == null) {
+            budgets = new Properties();
+            try (InputStream is = this.getClass().getResourceAsStream("allocation-budgets.properties")) {
+                if (is == null) Assert.fail("Resource \"allocation-budgets.properties\" missing");
+                budgets.load(is);
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe);
+            }
+            this.budgets = budgets;
+        }
+
+        return budgets;
+    }
+}
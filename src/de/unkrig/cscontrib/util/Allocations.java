@@ -0,0 +1,84 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the number of bytes that the current thread allocates on the heap.
+ */
+public final
+class Allocations {
+
+    private Allocations() {}
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Whether the JVM supports per-thread allocation counters; if not, {@link #currentThreadAllocatedBytes()} always
+     * returns -1.
+     */
+    public static final boolean SUPPORTED = (
+        Allocations.THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) Allocations.THREAD_MX_BEAN).isThreadAllocatedMemorySupported()
+    );
+
+    static {
+        if (Allocations.SUPPORTED) {
+            ((com.sun.management.ThreadMXBean) Allocations.THREAD_MX_BEAN).setThreadAllocatedMemoryEnabled(true);
+        }
+    }
+
+    /**
+     * @return The total number of bytes that the current thread has allocated so far, or -1 iff the JVM does not
+     *         support per-thread allocation counters
+     */
+    public static long
+    currentThreadAllocatedBytes() {
+
+        if (!Allocations.SUPPORTED) return -1;
+
+        return ((com.sun.management.ThreadMXBean) Allocations.THREAD_MX_BEAN).getThreadAllocatedBytes(
+            Thread.currentThread().getId()
+        );
+    }
+
+    /**
+     * @return The number of bytes that the current thread allocated while executing the <var>operation</var>, or -1
+     *         iff the JVM does not support per-thread allocation counters
+     */
+    public static long
+    measure(Runnable operation) {
+
+        final long before = Allocations.currentThreadAllocatedBytes();
+        operation.run();
+        final long after = Allocations.currentThreadAllocatedBytes();
+
+        return before == -1 ? -1 : after - before;
+    }
+}
@@ -0,0 +1,344 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Records audit events compactly: Line, column, source (typically the check class name), message key and file name of
+ * each event are stored in primitive arrays (the strings are interned into small tables), together with the
+ * reference to the event's {@link LocalizedMessage}. Nothing is formatted until a message text is actually requested,
+ * e.g. when an assertion fails or a report is written. Events with already formatted messages, e.g. from a {@link
+ * ResultCache}, can be {@link #add(int, int, String, String, String, String) added} as well.
+ * <p>
+ *   Recording an event allocates no memory, except when the arrays need to grow, and when the file name changes.
+ * </p>
+ */
+public
+class AuditEventRecorder implements AuditListener {
+
+    private int   size;
+    private int[] lines     = new int[16];
+    private int[] columns   = new int[16];
+    private int[] sourceIds = new int[16];
+    private int[] keyIds    = new int[16];
+    private int[] fileIds   = new int[16];
+
+    // Each element is a LocalizedMessage, a message String, or null.
+    private Object[] messages = new Object[16];
+
+    @Nullable private Map<Integer, Throwable> exceptions;
+
+    private final StringTable sources = new StringTable();
+    private final StringTable keys    = new StringTable();
+
+    private final List<String>         fileNames   = new ArrayList<String>();
+    private final Map<String, Integer> fileIndexes = new HashMap<String, Integer>();
+    @Nullable private String           lastFileName;
+    private int                        lastFileId  = -1;
+
+    @Override public void auditStarted(AuditEvent event)  {}
+    @Override public void auditFinished(AuditEvent event) {}
+    @Override public void fileStarted(AuditEvent event)   {}
+    @Override public void fileFinished(AuditEvent event)  {}
+
+    @Override public void
+    addError(AuditEvent event) { this.record(event); }
+
+    @Override public void
+    addException(AuditEvent event, Throwable throwable) {
+
+        Map<Integer, Throwable> exceptions = this.exceptions;
+        if (exceptions == null) this.exceptions = (exceptions = new HashMap<Integer, Throwable>());
+
+        exceptions.put(this.size, throwable);
+
+        this.record(event);
+    }
+
+    /**
+     * @return The number of recorded events
+     */
+    public int
+    size() { return this.size; }
+
+    public int
+    getLine(int index) { return this.lines[this.checkIndex(index)]; }
+
+    public int
+    getColumn(int index) { return this.columns[this.checkIndex(index)]; }
+
+    /**
+     * @return The name of the module that issued the event, typically the fully qualified name of a check class
+     */
+    @Nullable public String
+    getSourceName(int index) { return this.sources.get(this.sourceIds[this.checkIndex(index)]); }
+
+    /**
+     * @return The (not yet localized) message key of the event
+     */
+    @Nullable public String
+    getKey(int index) { return this.keys.get(this.keyIds[this.checkIndex(index)]); }
+
+    @Nullable public String
+    getFileName(int index) {
+        int fileId = this.fileIds[this.checkIndex(index)];
+        return fileId == -1 ? null : this.fileNames.get(fileId);
+    }
+
+    /**
+     * @return The exception that the event reports, or {@code null}
+     */
+    @Nullable public Throwable
+    getException(int index) {
+        Map<Integer, Throwable> exceptions = this.exceptions;
+        return exceptions == null ? null : exceptions.get(this.checkIndex(index));
+    }
+
+    /**
+     * Localizes and formats the message of the event, with a {@link MessageTemplates cached template}.
+     */
+    public String
+    getMessage(int index) {
+        Object message = this.messages[this.checkIndex(index)];
+        return (
+            message instanceof LocalizedMessage ? MessageTemplates.format((LocalizedMessage) message)
+            : message != null ? (String) message
+            : ""
+        );
+    }
+
+    /**
+     * @return "<var>line</var>x<var>column</var>: <var>message</var>", or, for exceptions,
+     *         "<var>line</var>x<var>column</var>: <var>exception</var>: <var>message</var>"
+     */
+    public String
+    format(int index) {
+
+        Throwable exception = this.getException(index);
+
+        return (
+            this.getLine(index)
+            + "x"
+            + this.getColumn(index)
+            + ": "
+            + (exception == null ? "" : exception + ": ")
+            + this.getMessage(index)
+        );
+    }
+
+    /**
+     * @return Whether the {@link #format(int) formatted} event equals the <var>s</var>; determined without
+     *         concatenating strings
+     */
+    public boolean
+    matches(int index, String s) {
+
+        int line   = this.getLine(index);
+        int column = this.getColumn(index);
+
+        int x = s.indexOf('x');
+        if (x == -1 || !AuditEventRecorder.isDecimal(s, 0, x, line)) return false;
+
+        int colon = s.indexOf(": ", x);
+        if (colon == -1 || !AuditEventRecorder.isDecimal(s, x + 1, colon, column)) return false;
+
+        int offset = colon + 2;
+
+        Throwable exception = this.getException(index);
+        if (exception != null) {
+            String es = exception.toString();
+            if (!s.startsWith(es, offset) || !s.startsWith(": ", offset + es.length())) return false;
+            offset += es.length() + 2;
+        }
+
+        String message = this.getMessage(index);
+
+        return s.length() - offset == message.length() && s.startsWith(message, offset);
+    }
+
+    /**
+     * Forgets all recorded events.
+     */
+    public void
+    clear() {
+        Arrays.fill(this.messages, 0, this.size, null);
+        this.size       = 0;
+        this.exceptions = null;
+    }
+
+    /**
+     * Records an event with an already formatted <var>message</var>.
+     */
+    public void
+    add(
+        int              line,
+        int              column,
+        @Nullable String sourceName,
+        @Nullable String key,
+        @Nullable String fileName,
+        String           message
+    ) { this.record(line, column, sourceName, key, fileName, message); }
+
+    private void
+    record(AuditEvent event) {
+
+        LocalizedMessage lm = event.getLocalizedMessage();
+
+        this.record(
+            event.getLine(),
+            event.getColumn(),
+            event.getSourceName(),
+            lm == null ? null : lm.getKey(),
+            event.getFileName(),
+            lm
+        );
+    }
+
+    private void
+    record(
+        int              line,
+        int              column,
+        @Nullable String sourceName,
+        @Nullable String key,
+        @Nullable String fileName,
+        @Nullable Object message
+    ) {
+
+        if (this.size == this.lines.length) this.grow();
+
+        final int i = this.size;
+
+        this.lines[i]     = line;
+        this.columns[i]   = column;
+        this.sourceIds[i] = this.sources.indexOf(sourceName);
+        this.keyIds[i]    = this.keys.indexOf(key);
+        this.fileIds[i]   = this.fileId(fileName);
+        this.messages[i]  = message;
+
+        this.size = i + 1;
+    }
+
+    private int
+    fileId(@Nullable String fileName) {
+
+        if (fileName == null) return -1;
+
+        // Typically, many events in a row pertain to the same file.
+        if (fileName == this.lastFileName) return this.lastFileId;
+
+        Integer result = this.fileIndexes.get(fileName);
+        if (result == null) {
+            result = this.fileNames.size();
+            this.fileNames.add(fileName);
+            this.fileIndexes.put(fileName, result);
+        }
+
+        this.lastFileName = fileName;
+        return (this.lastFileId = result);
+    }
+
+    private void
+    grow() {
+        int newLength = 2 * this.lines.length;
+
+        this.lines     = Arrays.copyOf(this.lines, newLength);
+        this.columns   = Arrays.copyOf(this.columns, newLength);
+        this.sourceIds = Arrays.copyOf(this.sourceIds, newLength);
+        this.keyIds    = Arrays.copyOf(this.keyIds, newLength);
+        this.fileIds   = Arrays.copyOf(this.fileIds, newLength);
+        this.messages  = Arrays.copyOf(this.messages, newLength);
+    }
+
+    private int
+    checkIndex(int index) {
+        if (index < 0 || index >= this.size) throw new IndexOutOfBoundsException(index + " / " + this.size);
+        return index;
+    }
+
+    /**
+     * @return Whether the characters from <var>from</var> to <var>to</var> are the decimal representation of the
+     *         non-negative <var>value</var>
+     */
+    private static boolean
+    isDecimal(String s, int from, int to, int value) {
+
+        if (from == to) return false;
+
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+            v = 10 * v + (c - '0');
+            if (v > Integer.MAX_VALUE) return false;
+        }
+
+        return v == value;
+    }
+
+    /**
+     * Maps a small number of distinct strings to indexes. The strings in question (check class names and message
+     * keys) are mostly identical objects, so a linear search with an identity check is faster than hashing.
+     */
+    private static
+    class StringTable {
+
+        private String[] strings = new String[8];
+        private int      size;
+
+        int
+        indexOf(@Nullable String s) {
+
+            if (s == null) return -1;
+
+            for (int i = 0; i < this.size; i++) {
+                if (this.strings[i] == s) return i;
+            }
+            for (int i = 0; i < this.size; i++) {
+                if (this.strings[i].equals(s)) return i;
+            }
+
+            if (this.size == this.strings.length) this.strings = Arrays.copyOf(this.strings, 2 * this.size);
+            this.strings[this.size] = s;
+
+            return this.size++;
+        }
+
+        @Nullable String
+        get(int index) { return index == -1 ? null : this.strings[index]; }
+    }
+}
@@ -0,0 +1,557 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Fixes the violations that the {@code Alignment} and {@code WrapMethodCheck} checks report, without an IDE: All
+ * fixes for a file are applied in one pass over the audit events, then the file is re-checked, and so forth, until
+ * no more fixes apply. Many files are fixed in parallel, each with one of several checkers that are built from the
+ * same configuration, and the results are {@link Output streamed} in file order.
+ * <p>
+ *   The fixes are derived from the (english) message texts:
+ * </p>
+ * <dl>
+ *   <dt>"'X' should be aligned with 'Y' in line N"</dt>
+ *   <dd>
+ *     Moves X to the column of Y, by inserting or removing space before X. If that would leave no space before X,
+ *     then Y is moved to the column of X instead, and the next pass aligns the rest of the group.
+ *   </dd>
+ *   <dt>"'X' must appear in column N, not M"</dt>
+ *   <dd>Moves X to column N.</dd>
+ *   <dt>"Must wrap line before 'X'"</dt>
+ *   <dd>Breaks the line before X, and indents X like the first token of the line.</dd>
+ *   <dt>"'X' must appear on same line as 'Y'"</dt>
+ *   <dd>Joins the line of X to the preceding line.</dd>
+ * </dl>
+ * <p>
+ *   Within one pass, each line is changed at most once, and only with columns that were computed from unchanged
+ *   lines; all other fixes are deferred to the next pass. The columns are TAB-expanded through a {@link
+ *   ColumnIndex}; only spaces, not TABs, are inserted or removed.
+ * </p>
+ */
+public
+class AutoFixer {
+
+    /**
+     * The number of passes after which {@link #fix(InMemoryChecker, String, String, int)} gives up by default.
+     */
+    public static final int DEFAULT_MAX_PASSES = 5;
+
+    private static final Pattern ALIGN  = Pattern.compile("'(.+)' should be aligned with '(.+)' in line (\\d+)");
+    private static final Pattern COLUMN = Pattern.compile("'(.+)' must appear in column (\\d+), not (\\d+)");
+    private static final Pattern WRAP   = Pattern.compile("Must wrap line before '(.+)'");
+    private static final Pattern UNWRAP = Pattern.compile("'(.+)' must appear on same line as '(.+)'");
+
+    private static final String OPERATOR_CHARS = "=!<>+-*/%&|^:?";
+
+    /**
+     * The outcome of fixing one compilation unit.
+     */
+    public static
+    class Result {
+
+        /**
+         * The fixed code; identical with the original code iff no fix applied.
+         */
+        public final String code;
+
+        /**
+         * The number of passes, i.e. of checks that were executed on the (partly fixed) code.
+         */
+        public final int passes;
+
+        /**
+         * The audit events of the last check, i.e. the violations that could not be fixed.
+         */
+        public final AuditEventRecorder remaining;
+
+        Result(String code, int passes, AuditEventRecorder remaining) {
+            this.code      = code;
+            this.passes    = passes;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Receives the results of {@link AutoFixer#process(List, Output)}.
+     */
+    public
+    interface Output {
+
+        /**
+         * Is invoked once for each file, in file order, and on the thread that invoked {@link
+         * AutoFixer#process(List, Output)}.
+         */
+        void fixed(File file, Result result) throws IOException;
+    }
+
+    private final ExecutorService                executor;
+    private final BlockingQueue<InMemoryChecker> checkers;
+    private final List<InMemoryChecker>          allCheckers = new ArrayList<InMemoryChecker>();
+    private final String                         charsetName;
+    private final int                            maxPasses;
+    private final int                            window;
+
+    /**
+     * Equivalent with {@link #AutoFixer(Configuration, int, String, int, ThreadFactory) AutoFixer}{@code
+     * (checkerConfiguration, parallelism, "UTF-8", DEFAULT_MAX_PASSES, Executors.defaultThreadFactory())}.
+     */
+    public
+    AutoFixer(Configuration checkerConfiguration, int parallelism) {
+        this(
+            checkerConfiguration,
+            parallelism,
+            "UTF-8",
+            AutoFixer.DEFAULT_MAX_PASSES,
+            Executors.defaultThreadFactory()
+        );
+    }
+
+    /**
+     * @param checkerConfiguration The configuration of the "root" module
+     * @param parallelism          The number of checkers and of worker threads
+     * @param charsetName          The encoding of the files
+     * @param maxPasses            See {@link #fix(InMemoryChecker, String, String, int)}
+     */
+    public
+    AutoFixer(
+        Configuration checkerConfiguration,
+        int           parallelism,
+        String        charsetName,
+        int           maxPasses,
+        ThreadFactory threadFactory
+    ) {
+        this.charsetName = charsetName;
+        this.maxPasses   = maxPasses;
+        this.checkers    = new ArrayBlockingQueue<InMemoryChecker>(parallelism);
+
+        // Limit the number of fixed files that wait for the output, so that memory consumption does not depend on
+        // the number of files.
+        this.window = 4 * parallelism;
+
+        for (int i = 0; i < parallelism; i++) {
+            InMemoryChecker checker = CheckStyleTest.createChecker(checkerConfiguration);
+            this.allCheckers.add(checker);
+            this.checkers.add(checker);
+        }
+
+        this.executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+    }
+
+    /**
+     * @return An {@link Output} that writes the fixed code back to the file, iff any fix applied
+     */
+    public static Output
+    inPlace(final String charsetName) {
+
+        return new Output() {
+
+            @Override public void
+            fixed(File file, Result result) throws IOException {
+                String original = new String(Files.readAllBytes(file.toPath()), charsetName);
+                if (!result.code.equals(original)) Files.write(file.toPath(), result.code.getBytes(charsetName));
+            }
+        };
+    }
+
+    /**
+     * Fixes the <var>files</var> in parallel, and passes the results to the <var>output</var>, in file order.
+     * The files themselves are not modified (unless the <var>output</var> does so).
+     */
+    public void
+    process(List<File> files, Output output) throws CheckstyleException, IOException {
+
+        final Queue<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+        try {
+            Iterator<File> it = files.iterator();
+            for (int i = 0; i < files.size(); i++) {
+
+                while (it.hasNext() && pending.size() < this.window) {
+                    final File file = it.next();
+                    pending.add(this.executor.submit(new Callable<Result>() {
+
+                        @Override public Result
+                        call() throws Exception { return AutoFixer.this.fix(file); }
+                    }));
+                }
+
+                output.fixed(files.get(i), AutoFixer.get(pending.remove()));
+            }
+        } finally {
+            for (Future<?> f : pending) f.cancel(true);
+        }
+    }
+
+    /**
+     * Shuts down the worker threads and destroys the checkers.
+     */
+    public void
+    destroy() {
+        this.executor.shutdownNow();
+        for (InMemoryChecker checker : this.allCheckers) checker.destroy();
+    }
+
+    private Result
+    fix(File file) throws Exception {
+
+        String code = new String(Files.readAllBytes(file.toPath()), this.charsetName);
+
+        InMemoryChecker checker = this.checkers.take();
+        try {
+            return AutoFixer.fix(checker, file.getPath(), code, this.maxPasses);
+        } finally {
+            this.checkers.add(checker);
+        }
+    }
+
+    private static Result
+    get(Future<Result> future) throws CheckstyleException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof CheckstyleException) throw (CheckstyleException) cause;
+            throw new CheckstyleException(String.valueOf(cause), cause);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new CheckstyleException("Interrupted", ie);
+        }
+    }
+
+    /**
+     * Checks the <var>code</var>, {@link #fix(String, AuditEventRecorder, int) fixes} the reported violations, and
+     * repeats that until there are no more violations, no more fixes apply, or <var>maxPasses</var> is reached. The
+     * columns of the events are mapped with the {@link InMemoryChecker#getTabWidth() TAB width of the checker}.
+     */
+    public static Result
+    fix(InMemoryChecker checker, String fileName, String code, int maxPasses) throws CheckstyleException {
+
+        for (int pass = 1;; pass++) {
+
+            AuditEventRecorder events = new AuditEventRecorder();
+            checker.addListener(events);
+            try {
+                checker.process(fileName, code);
+            } finally {
+                checker.removeListener(events);
+            }
+
+            if (events.size() == 0 || pass == maxPasses) return new Result(code, pass, events);
+
+            String fixed = AutoFixer.fix(code, events, checker.getTabWidth());
+            if (fixed.equals(code)) return new Result(code, pass, events);
+
+            code = fixed;
+        }
+    }
+
+    /**
+     * Equivalent with {@link #fix(String, AuditEventRecorder, int) fix}{@code (code, events,
+     * ColumnIndex.DEFAULT_TAB_WIDTH)}.
+     */
+    public static String
+    fix(String code, AuditEventRecorder events) {
+        return AutoFixer.fix(code, events, ColumnIndex.DEFAULT_TAB_WIDTH);
+    }
+
+    /**
+     * Applies, in one pass, the fixes for the <var>events</var> that were reported for the <var>code</var>.
+     *
+     * @param tabWidth The TAB width that the checker was configured with; the columns of the events are
+     *                 TAB-expanded
+     * @return         The fixed code, or the <var>code</var> itself iff no fix applied
+     */
+    public static String
+    fix(String code, AuditEventRecorder events, int tabWidth) {
+
+        String lineSeparator = code.contains("\r\n") ? "\r\n" : "\n";
+
+        List<String> lines = new ArrayList<String>(InMemoryChecker.lines(code));
+
+        // The columns of the unchanged lines; changed lines are never looked at again in this pass.
+        ColumnIndex columns = new ColumnIndex(lines, tabWidth);
+
+        // Element #0 is unused, so that the indexes are the line numbers.
+        lines.add(0, "");
+
+        Set<Integer> changed = new HashSet<Integer>();
+
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getException(i) != null) continue;
+            AutoFixer.fix(lines, columns, changed, events.getLine(i), events.getColumn(i), events.getMessage(i));
+        }
+
+        if (changed.isEmpty()) return code;
+
+        StringBuilder sb    = new StringBuilder(code.length() + 64);
+        boolean       first = true;
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line == null) continue;
+            if (!first) sb.append(lineSeparator);
+            sb.append(line.replace("\n", lineSeparator));
+            first = false;
+        }
+        if (code.endsWith("\n")) sb.append(lineSeparator);
+
+        return sb.toString();
+    }
+
+    /**
+     * Applies the fix for one violation, unless it affects a line that has already been changed.
+     */
+    private static void
+    fix(List<String> lines, ColumnIndex columns, Set<Integer> changed, int lineNumber, int column, String message) {
+
+        if (lineNumber < 1 || lineNumber >= lines.size() || column < 1 || changed.contains(lineNumber)) return;
+
+        String line  = lines.get(lineNumber);
+        int    index = columns.index(lineNumber, column - 1);
+        if (line == null || index >= line.length()) return;
+
+        Matcher m;
+        if ((m = AutoFixer.ALIGN.matcher(message)).find()) {
+            String x           = m.group(1), y = m.group(2);
+            int    yLineNumber = Integer.parseInt(m.group(3));
+            if (!line.startsWith(x, index) || yLineNumber >= lines.size() || changed.contains(yLineNumber)) return;
+
+            String yLine  = lines.get(yLineNumber);
+            int    yIndex = AutoFixer.indexOf(yLine, y, AutoFixer.ordinal(line, x, index));
+            if (yIndex == -1) return;
+
+            int    delta = columns.expandedColumn(yLineNumber, yIndex) - (column - 1);
+            String moved = AutoFixer.moveBy(line, index, delta);
+            if (moved != null) {
+                lines.set(lineNumber, moved);
+                changed.add(lineNumber);
+            } else {
+
+                // X cannot move left, so move Y right.
+                lines.set(yLineNumber, AutoFixer.moveBy(yLine, yIndex, -delta));
+                changed.add(yLineNumber);
+            }
+        } else
+        if ((m = AutoFixer.COLUMN.matcher(message)).find()) {
+            if (!line.startsWith(m.group(1), index)) return;
+
+            String moved = AutoFixer.moveBy(line, index, Integer.parseInt(m.group(2)) - column);
+            if (moved == null) return;
+            lines.set(lineNumber, moved);
+            changed.add(lineNumber);
+        } else
+        if ((m = AutoFixer.WRAP.matcher(message)).find()) {
+            if (!line.startsWith(m.group(1), index)) return;
+
+            int end = index;
+            while (end > 0 && AutoFixer.isSpaceOrTab(line.charAt(end - 1))) end--;
+            if (end == 0) return;
+
+            lines.set(lineNumber, line.substring(0, end) + '\n' + AutoFixer.indentation(line) + line.substring(index));
+            changed.add(lineNumber);
+        } else
+        if ((m = AutoFixer.UNWRAP.matcher(message)).find()) {
+            if (!line.startsWith(m.group(1), index) || !line.substring(0, index).trim().isEmpty()) return;
+
+            // Find the preceding non-empty line.
+            int previous = lineNumber - 1;
+            while (previous > 0 && lines.get(previous) != null && lines.get(previous).trim().isEmpty()) previous--;
+            if (previous == 0 || lines.get(previous) == null || changed.contains(previous)) return;
+
+            // Join in front of a trailing "//" comment of the previous line, so that the token is not commented out.
+            String previousLine = lines.get(previous);
+            String rest         = line.substring(index);
+            int    comment      = AutoFixer.commentStart(previousLine);
+            String joined;
+            if (comment == -1) {
+                joined = AutoFixer.trimTrailing(previousLine) + ' ' + rest;
+            } else
+            if (
+                previousLine.startsWith("//", comment)
+                && !previousLine.substring(0, comment).trim().isEmpty()
+                && AutoFixer.commentStart(rest) == -1
+            ) {
+                joined = (
+                    AutoFixer.trimTrailing(previousLine.substring(0, comment))
+                    + ' '
+                    + AutoFixer.trimTrailing(rest)
+                    + ' '
+                    + previousLine.substring(comment)
+                );
+            } else
+            {
+
+                // A comment-only line, a block comment, or a comment on both lines; leave that to a human.
+                return;
+            }
+            lines.set(previous, joined);
+            for (int i = previous + 1; i <= lineNumber; i++) {
+                lines.set(i, null);
+                changed.add(i);
+            }
+            changed.add(previous);
+        }
+    }
+
+    /**
+     * Moves the token at <var>index</var> by <var>delta</var> columns, by inserting spaces before it, or by removing
+     * spaces before it. (TABs before the spaces end in the same column before and after.)
+     *
+     * @return {@code null} iff there are not enough spaces to remove, or removing them would leave no whitespace
+     *         before the token
+     */
+    @Nullable private static String
+    moveBy(String line, int index, int delta) {
+
+        if (delta == 0) return line;
+
+        if (delta > 0) return line.substring(0, index) + AutoFixer.spaces(delta) + line.substring(index);
+
+        int start = index + delta;
+        if (start < 0 || (start > 0 && !AutoFixer.isSpaceOrTab(line.charAt(start - 1)))) return null;
+        for (int i = start; i < index; i++) {
+            if (line.charAt(i) != ' ') return null;
+        }
+
+        return line.substring(0, start) + line.substring(index);
+    }
+
+    /**
+     * @return How many occurrences of the <var>token</var> precede the <var>index</var> in the <var>line</var>
+     */
+    private static int
+    ordinal(String line, String token, int index) {
+        for (int result = 0;; result++) {
+            int i = AutoFixer.indexOf(line, token, result);
+            if (i == -1 || i >= index) return result;
+        }
+    }
+
+    /**
+     * @return The index of the <var>n</var>th (0-based) occurrence of the <var>token</var> in the <var>line</var>, or
+     *         -1; identifiers must not be part of longer identifiers, operators not part of longer operators
+     */
+    private static int
+    indexOf(String line, String token, int n) {
+
+        boolean identifier = Character.isJavaIdentifierPart(token.charAt(0));
+        boolean operator   = AutoFixer.isOperatorChar(token.charAt(0));
+
+        for (int i = line.indexOf(token); i != -1; i = line.indexOf(token, i + 1)) {
+
+            char before = i == 0 ? ' ' : line.charAt(i - 1);
+            char after  = i + token.length() == line.length() ? ' ' : line.charAt(i + token.length());
+
+            if (identifier && (AutoFixer.isIdentifierPart(before) || AutoFixer.isIdentifierPart(after))) continue;
+            if (operator && (AutoFixer.isOperatorChar(before) || AutoFixer.isOperatorChar(after))) continue;
+
+            if (n-- == 0) return i;
+        }
+
+        return -1;
+    }
+
+    private static boolean isIdentifierPart(char c) { return Character.isJavaIdentifierPart(c); }
+    private static boolean isOperatorChar(char c)   { return AutoFixer.OPERATOR_CHARS.indexOf(c) != -1; }
+
+    private static boolean isSpaceOrTab(char c) { return c == ' ' || c == '\t'; }
+
+    private static String
+    indentation(String line) {
+        int i = 0;
+        while (i < line.length() && AutoFixer.isSpaceOrTab(line.charAt(i))) i++;
+        return line.substring(0, i);
+    }
+
+    /**
+     * @return The index of the first "{@code //}" or "{@code /*}" of the <var>line</var> that is not within a string
+     *         or character literal, or -1
+     */
+    private static int
+    commentStart(String line) {
+
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else
+            if (c == '"' || c == '\'') {
+                quote = c;
+            } else
+            if (c == '/' && i + 1 < line.length() && (line.charAt(i + 1) == '/' || line.charAt(i + 1) == '*')) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static String
+    trimTrailing(String s) {
+        int end = s.length();
+        while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) end--;
+        return s.substring(0, end);
+    }
+
+    private static String
+    spaces(int n) {
+        StringBuilder sb = new StringBuilder(n);
+        while (n-- > 0) sb.append(' ');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,70 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * A minimalistic micro-benchmark runner: Executes an operation a number of times to warm up the JVM, then measures
+ * the average execution time over a number of further executions.
+ * <p>
+ *   The benchmarks of cs-contrib (e.g. {@code de.unkrig.cscontrib.checks.AlignmentBenchmark}) are not part of the
+ *   test suite. Run each of them as a JAVA application, with the same class path as the tests; the optional command
+ *   line arguments are described in the benchmark's documentation.
+ * </p>
+ */
+public final
+class Benchmark {
+
+    private Benchmark() {}
+
+    /**
+     * The stream to which {@link #measure(String, int, int, Runnable)} reports its results.
+     */
+    private static final PrintStream OUT = System.out;
+
+    /**
+     * Executes the <var>operation</var> <var>warmupIterations</var> times, then <var>iterations</var> times while
+     * measuring the elapsed time, and reports the result.
+     *
+     * @return The average number of nanoseconds that one execution of the <var>operation</var> took
+     */
+    public static double
+    measure(String name, int warmupIterations, int iterations, Runnable operation) {
+
+        for (int i = 0; i < warmupIterations; i++) operation.run();
+
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) operation.run();
+        final double nsPerOp = (double) (System.nanoTime() - start) / iterations;
+
+        Benchmark.OUT.println(String.format(Locale.US, "%-50s %,14.0f ns/op", name, nsPerOp));
+
+        return nsPerOp;
+    }
+}
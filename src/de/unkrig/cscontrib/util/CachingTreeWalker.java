@@ -0,0 +1,374 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.puppycrawl.tools.checkstyle.DefaultContext;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.TreeWalkerAuditEvent;
+import com.puppycrawl.tools.checkstyle.TreeWalkerFilter;
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.AbstractFileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.AutomaticBean;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtil;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A drop-in replacement for the {@link TreeWalker} that takes the parsed compilation units from a {@link ParseCache}
+ * instead of parsing each file anew. This pays off when the same sources are checked with many different
+ * configurations, e.g. in rule-matrix tests.
+ * <p>
+ *   Checks are configured, validated, registered and notified like by the {@link TreeWalker}.
+ * </p>
+ * <p>
+ *   Each thread has its own {@link #getParseCache() parse cache}, because the cached {@link DetailAST}s are not safe
+ *   for concurrent use (e.g. {@code DetailAstImpl.getBranchTokenTypes()} publishes its bit set before filling it).
+ * </p>
+ */
+public
+class CachingTreeWalker extends AbstractFileSetCheck {
+
+    private static final ThreadLocal<ParseCache> PARSE_CACHES = new ThreadLocal<ParseCache>() {
+        @Override protected ParseCache initialValue() { return new ParseCache(64); }
+    };
+
+    @Nullable private ModuleFactory  moduleFactory;
+    @Nullable private ClassLoader    classLoader;
+    @Nullable private DefaultContext childContext;
+    @Nullable private CheckProfiler  profiler;
+
+    private final Set<AbstractCheck>     ordinaryChecks = new LinkedHashSet<AbstractCheck>();
+    private final Set<AbstractCheck>     commentChecks  = new LinkedHashSet<AbstractCheck>();
+    private final List<TreeWalkerFilter> filters        = new ArrayList<TreeWalkerFilter>();
+
+    private final Map<Integer, List<AbstractCheck>>
+    tokenToOrdinaryChecks = new HashMap<Integer, List<AbstractCheck>>();
+    private final Map<Integer, List<AbstractCheck>>
+    tokenToCommentChecks = new HashMap<Integer, List<AbstractCheck>>();
+
+    public
+    CachingTreeWalker() { this.setFileExtensions("java"); }
+
+    /**
+     * Set by the {@link com.puppycrawl.tools.checkstyle.Checker} through contextualization.
+     */
+    public void
+    setModuleFactory(ModuleFactory moduleFactory) { this.moduleFactory = moduleFactory; }
+
+    /**
+     * Set by the {@link com.puppycrawl.tools.checkstyle.Checker} through contextualization.
+     */
+    public void
+    setClassLoader(ClassLoader classLoader) { this.classLoader = classLoader; }
+
+    /**
+     * @return The cache that all {@link CachingTreeWalker}s share that run in the current thread
+     */
+    public static ParseCache
+    getParseCache() { return CachingTreeWalker.PARSE_CACHES.get(); }
+
+    /**
+     * Iff non-{@code null}, then each invocation of a check method is reported to the <var>profiler</var>.
+     */
+    public void
+    setProfiler(@Nullable CheckProfiler profiler) { this.profiler = profiler; }
+
+    @Override public void
+    finishLocalSetup() {
+
+        final DefaultContext checkContext = new DefaultContext();
+        checkContext.add("classLoader", this.classLoader);
+        checkContext.add("severity", this.getSeverity());
+        checkContext.add("tabWidth", String.valueOf(this.getTabWidth()));
+
+        this.childContext = checkContext;
+    }
+
+    @Override public void
+    setupChild(Configuration childConf) throws CheckstyleException {
+
+        final String        name          = childConf.getName();
+        final ModuleFactory moduleFactory = this.moduleFactory;
+        assert moduleFactory != null;
+
+        final Object module;
+        try {
+            module = moduleFactory.createModule(name);
+            if (module instanceof AutomaticBean) {
+                final AutomaticBean bean = (AutomaticBean) module;
+                bean.contextualize(this.childContext);
+                bean.configure(childConf);
+            }
+        } catch (final CheckstyleException ce) {
+            throw new CheckstyleException("cannot initialize module " + name + " - " + ce.getMessage(), ce);
+        }
+
+        if (module instanceof AbstractCheck) {
+            final AbstractCheck check = (AbstractCheck) module;
+            check.init();
+            this.registerCheck(check);
+        } else
+        if (module instanceof TreeWalkerFilter) {
+            this.filters.add((TreeWalkerFilter) module);
+        } else
+        {
+            throw new CheckstyleException(
+                CachingTreeWalker.class.getSimpleName() + " is not allowed as a parent of " + name
+            );
+        }
+    }
+
+    @Override protected void
+    processFiltered(File file, FileText fileText) throws CheckstyleException {
+
+        if (this.ordinaryChecks.isEmpty() && this.commentChecks.isEmpty()) return;
+
+        final ParseCache.ParsedUnit parsedUnit = CachingTreeWalker.getParseCache().get(fileText);
+        final FileContents          contents   = parsedUnit.fileContents;
+
+        final SortedSet<LocalizedMessage> messages = new TreeSet<LocalizedMessage>();
+
+        if (!this.ordinaryChecks.isEmpty()) {
+            CachingTreeWalker.walk(
+                parsedUnit.rootAst,
+                contents,
+                this.ordinaryChecks,
+                this.tokenToOrdinaryChecks,
+                messages,
+                this.profiler
+            );
+        }
+
+        if (!this.commentChecks.isEmpty()) {
+            CachingTreeWalker.walk(
+                parsedUnit.getRootAstWithComments(),
+                contents,
+                this.commentChecks,
+                this.tokenToCommentChecks,
+                messages,
+                this.profiler
+            );
+        }
+
+        if (!this.filters.isEmpty()) {
+            final String fileName = file.getAbsolutePath();
+            for (Iterator<LocalizedMessage> it = messages.iterator(); it.hasNext();) {
+                final TreeWalkerAuditEvent event = new TreeWalkerAuditEvent(
+                    contents,
+                    fileName,
+                    it.next(),
+                    parsedUnit.rootAst
+                );
+                for (TreeWalkerFilter filter : this.filters) {
+                    if (!filter.accept(event)) {
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+        }
+
+        this.addMessages(messages);
+    }
+
+    @Override public void
+    destroy() {
+        for (AbstractCheck check : this.ordinaryChecks) check.destroy();
+        for (AbstractCheck check : this.commentChecks) check.destroy();
+        super.destroy();
+    }
+
+    private void
+    registerCheck(AbstractCheck check) throws CheckstyleException {
+
+        CachingTreeWalker.validateDefaultTokens(check);
+
+        final Set<String> checkTokens = check.getTokenNames();
+
+        final int[] tokens;
+        if (checkTokens.isEmpty()) {
+            tokens = check.getDefaultTokens();
+        } else {
+            tokens = check.getRequiredTokens();
+
+            final int[] acceptableTokens = check.getAcceptableTokens();
+            Arrays.sort(acceptableTokens);
+            for (String token : checkTokens) {
+                final int tokenId = TokenUtil.getTokenId(token);
+                if (Arrays.binarySearch(acceptableTokens, tokenId) < 0) {
+                    throw new CheckstyleException(
+                        "Token \"" + token + "\" was not found in Acceptable tokens list in check "
+                        + check.getClass().getName()
+                    );
+                }
+                this.registerCheck(tokenId, check);
+            }
+        }
+
+        for (int tokenId : tokens) this.registerCheck(tokenId, check);
+
+        (check.isCommentNodesRequired() ? this.commentChecks : this.ordinaryChecks).add(check);
+    }
+
+    /**
+     * @throws CheckstyleException One of the required tokens of the <var>check</var> is not among its default tokens
+     */
+    private static void
+    validateDefaultTokens(AbstractCheck check) throws CheckstyleException {
+
+        final int[] defaultTokens = check.getDefaultTokens();
+        Arrays.sort(defaultTokens);
+        for (int token : check.getRequiredTokens()) {
+            if (Arrays.binarySearch(defaultTokens, token) < 0) {
+                throw new CheckstyleException(
+                    "Token \"" + token + "\" from required tokens was not found in default tokens list in check "
+                    + check.getClass().getName()
+                );
+            }
+        }
+    }
+
+    private void
+    registerCheck(int tokenId, AbstractCheck check) throws CheckstyleException {
+
+        final Map<Integer, List<AbstractCheck>> tokenToChecks;
+        if (check.isCommentNodesRequired()) {
+            tokenToChecks = this.tokenToCommentChecks;
+        } else
+        if (TokenUtil.isCommentType(tokenId)) {
+            throw new CheckstyleException(
+                "Check '" + check.getClass().getName() + "' waits for comment type token ('"
+                + TokenUtil.getTokenName(tokenId) + "') and should override 'isCommentNodesRequired()' method to "
+                + "return 'true'"
+            );
+        } else
+        {
+            tokenToChecks = this.tokenToOrdinaryChecks;
+        }
+
+        List<AbstractCheck> checks = tokenToChecks.get(tokenId);
+        if (checks == null) tokenToChecks.put(tokenId, (checks = new ArrayList<AbstractCheck>()));
+        if (!checks.contains(check)) checks.add(check);
+    }
+
+    /**
+     * Notifies the <var>checks</var> about the beginning of the tree, each node of the tree, and the end of the
+     * tree, exactly like the {@link TreeWalker} does.
+     *
+     * @param profiler Iff non-{@code null}, is notified before and after each invocation of a check method
+     */
+    private static void
+    walk(
+        DetailAST                         rootAst,
+        FileContents                      contents,
+        Set<AbstractCheck>                checks,
+        Map<Integer, List<AbstractCheck>> tokenToChecks,
+        SortedSet<LocalizedMessage>       messages,
+        @Nullable CheckProfiler           profiler
+    ) {
+
+        for (AbstractCheck check : checks) {
+            check.setFileContents(contents);
+            check.clearMessages();
+            if (profiler == null) {
+                check.beginTree(rootAst);
+            } else {
+                profiler.enter();
+                check.beginTree(rootAst);
+                profiler.exit(check, -1);
+            }
+        }
+
+        DetailAST curNode = rootAst;
+        while (curNode != null) {
+
+            List<AbstractCheck> visitors = tokenToChecks.get(curNode.getType());
+            if (visitors != null) {
+                for (AbstractCheck check : visitors) {
+                    if (profiler == null) {
+                        check.visitToken(curNode);
+                    } else {
+                        profiler.enter();
+                        check.visitToken(curNode);
+                        profiler.exit(check, curNode.getType());
+                    }
+                }
+            }
+
+            DetailAST toVisit = curNode.getFirstChild();
+            while (curNode != null && toVisit == null) {
+
+                List<AbstractCheck> leavers = tokenToChecks.get(curNode.getType());
+                if (leavers != null) {
+                    for (AbstractCheck check : leavers) {
+                        if (profiler == null) {
+                            check.leaveToken(curNode);
+                        } else {
+                            profiler.enter();
+                            check.leaveToken(curNode);
+                            profiler.exit(check, -1);
+                        }
+                    }
+                }
+
+                toVisit = curNode.getNextSibling();
+                if (toVisit == null) curNode = curNode.getParent();
+            }
+            curNode = toVisit;
+        }
+
+        for (AbstractCheck check : checks) {
+            if (profiler == null) {
+                check.finishTree(rootAst);
+            } else {
+                profiler.enter();
+                check.finishTree(rootAst);
+                profiler.exit(check, -1);
+            }
+            messages.addAll(check.getMessages());
+        }
+    }
+}
@@ -0,0 +1,474 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
+import com.puppycrawl.tools.checkstyle.PropertiesExpander;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Keeps configured checkers warm and checks files on request, so that e.g. a pre-commit hook pays neither for JVM
+ * startup nor for {@link com.puppycrawl.tools.checkstyle.Checker#configure(Configuration)} on each invocation.
+ * <p>
+ *   The protocol is line-based (UTF-8), and the same on a local socket and on STDIN/STDOUT: The client sends the
+ *   paths of the files to check, one per line, and then an empty line. The daemon checks the files (in parallel), and
+ *   answers with one "<var>path</var>{@code :}<var>line</var>{@code x}<var>column</var>{@code :} <var>message</var>"
+ *   line per audit event, in file order, and then an empty line. A file that cannot be read yields one such line,
+ *   and the other files are checked nevertheless. If the check fails otherwise, the answer is one "{@code ERROR:}
+ *   <var>text</var>" line, and then an empty line. The line "{@value #SHUTDOWN}" stops the daemon. Relative paths
+ *   are resolved against the daemon's working directory, so clients should send absolute paths.
+ * </p>
+ * <p>
+ *   Trust model: A request makes the daemon read arbitrary files (with the rights of the daemon's user) and report
+ *   parts of their content in the audit messages, and "{@value #SHUTDOWN}" stops the daemon. On STDIN, the client is
+ *   whoever started the daemon. On the socket, however, <em>any</em> local user can connect; therefore each
+ *   connection must first send a secret token, which {@link #listen(int, File)} writes to a <em>token file</em> that
+ *   only the daemon's user can read. Connections that fail to authenticate get one "{@code ERROR:} <var>text</var>"
+ *   line and are closed, without any file being read. Do not expose the port beyond the loopback interface.
+ * </p>
+ */
+public
+class CheckDaemon {
+
+    /**
+     * The request line that stops the daemon.
+     */
+    public static final String SHUTDOWN = "SHUTDOWN";
+
+    /**
+     * The maximum number of connections that are served concurrently.
+     */
+    public static final int MAX_CONNECTIONS = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ParallelChecker     checker;
+    @Nullable private ServerSocket    serverSocket;
+    @Nullable private Thread          acceptor;
+    @Nullable private ExecutorService connections;
+    @Nullable private File            tokenFile;
+
+    /**
+     * @param checkerConfiguration The configuration of the "root" module
+     * @param parallelism          The number of checkers that are kept warm
+     */
+    public
+    CheckDaemon(Configuration checkerConfiguration, int parallelism) {
+        this.checker = new ParallelChecker(checkerConfiguration, parallelism);
+    }
+
+    /**
+     * Usage:
+     * <dl>
+     *   <dt>{@code CheckDaemon} <var>config-file</var></dt>
+     *   <dd>Serves the requests on STDIN, and answers them on STDOUT.</dd>
+     *   <dt>{@code CheckDaemon} <var>config-file</var> <var>port</var> <var>token-file</var></dt>
+     *   <dd>
+     *     Serves the requests on the given port of the loopback interface, until a client sends "{@value
+     *     #SHUTDOWN}". Clients authenticate with the secret from the <var>token-file</var>, see {@link
+     *     #listen(int, File)}.
+     *   </dd>
+     * </dl>
+     */
+    public static void
+    main(String[] args) throws Exception {
+
+        if (args.length != 1 && args.length != 3) {
+            System.err.println("Usage: CheckDaemon <config-file> [ <port> <token-file> ]");
+            System.exit(1);
+        }
+
+        Configuration checkerConfiguration = ConfigurationLoader.loadConfiguration(
+            args[0],
+            new PropertiesExpander(System.getProperties())
+        );
+
+        CheckDaemon daemon = new CheckDaemon(checkerConfiguration, Runtime.getRuntime().availableProcessors());
+        try {
+            if (args.length == 1) {
+                daemon.serve(System.in, System.out);
+            } else {
+                System.err.println("Listening on port " + daemon.listen(Integer.parseInt(args[1]), new File(args[2])));
+                daemon.awaitShutdown();
+            }
+        } finally {
+            daemon.destroy();
+        }
+    }
+
+    /**
+     * Starts accepting connections on the given <var>port</var> of the loopback interface, on a background thread;
+     * up to {@value #MAX_CONNECTIONS} connections are served concurrently, each on its own thread, and as many more
+     * wait. Further connections get one "{@code ERROR:} <var>text</var>" line and are closed.
+     * <p>
+     *   Generates a random secret and writes it to the <var>tokenFile</var>, which is (re-)created readable and
+     *   writable only by the current user (through POSIX permissions or an ACL), and deleted when the daemon stops
+     *   listening. Each connection must send the secret as its first line, see {@link #check(int, File, List)}.
+     * </p>
+     * <p>
+     *   Exceptions on a connection (e.g. the client going away) are reported to the uncaught exception handler of
+     *   the connection's thread.
+     * </p>
+     *
+     * @param port 0 to pick a free port
+     * @return     The port that the daemon listens on
+     */
+    public int
+    listen(int port, File tokenFile) throws IOException {
+
+        final byte[] token = CheckDaemon.createTokenFile(tokenFile);
+        this.tokenFile = tokenFile;
+
+        final ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.serverSocket = serverSocket;
+
+        // Serve at most MAX_CONNECTIONS connections concurrently, and queue at most as many more.
+        final ThreadPoolExecutor connections = new ThreadPoolExecutor(
+            CheckDaemon.MAX_CONNECTIONS,
+            CheckDaemon.MAX_CONNECTIONS,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(CheckDaemon.MAX_CONNECTIONS),
+            new ThreadFactory() {
+
+                @Override public Thread
+                newThread(Runnable r) {
+                    Thread result = new Thread(r, "cs-contrib-daemon-connection");
+                    result.setDaemon(true);
+                    return result;
+                }
+            }
+        );
+        connections.allowCoreThreadTimeOut(true);
+        this.connections = connections;
+
+        Thread acceptor = new Thread(new Runnable() {
+
+            @Override public void
+            run() {
+                for (;;) {
+                    final Socket socket;
+                    try {
+                        socket = serverSocket.accept();
+                    } catch (IOException ioe) {
+
+                        // The server socket was closed.
+                        return;
+                    }
+
+                    try {
+                        connections.execute(new Runnable() {
+
+                            @Override public void
+                            run() {
+                                try {
+                                    try {
+                                        CheckDaemon.this.serve(
+                                            socket.getInputStream(),
+                                            socket.getOutputStream(),
+                                            token
+                                        );
+                                    } finally {
+                                        socket.close();
+                                    }
+                                } catch (IOException ioe) {
+                                    Thread thread = Thread.currentThread();
+                                    thread.getUncaughtExceptionHandler().uncaughtException(thread, ioe);
+                                }
+                            }
+                        });
+                    } catch (RejectedExecutionException ree) {
+
+                        // Too many pending connections, or the daemon is shutting down.
+                        try {
+                            try {
+                                socket.getOutputStream().write("ERROR: Too many connections\n\n".getBytes("UTF-8"));
+                            } finally {
+                                socket.close();
+                            }
+                        } catch (IOException ioe) {
+                            ;
+                        }
+                    }
+                }
+            }
+        }, "cs-contrib-daemon-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        this.acceptor = acceptor;
+
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Waits until a client sends "{@value #SHUTDOWN}", or {@link #destroy()} is called.
+     */
+    public void
+    awaitShutdown() throws InterruptedException {
+        Thread acceptor = this.acceptor;
+        if (acceptor != null) acceptor.join();
+    }
+
+    /**
+     * Serves requests from the <var>in</var> and writes the answers to the <var>out</var>, until end-of-input or
+     * "{@value #SHUTDOWN}". Pending file paths at end-of-input are checked, so that e.g. "{@code git diff --name-only
+     * | java ... CheckDaemon config.xml}" works.
+     */
+    public void
+    serve(InputStream in, OutputStream out) throws IOException {
+        this.serve(in, out, null);
+    }
+
+    /**
+     * @param token {@code null} iff the client need not authenticate
+     */
+    private void
+    serve(InputStream in, OutputStream out, @Nullable byte[] token) throws IOException {
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        Writer         w  = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+
+        if (token != null) {
+            String line = br.readLine();
+            if (line == null || !MessageDigest.isEqual(token, line.getBytes(CheckDaemon.UTF_8))) {
+                w.write("ERROR: Authentication failed\n\n");
+                w.flush();
+                return;
+            }
+        }
+
+        List<File> files = new ArrayList<File>();
+        for (String line = br.readLine();; line = br.readLine()) {
+
+            if (line == null) {
+                if (!files.isEmpty()) this.check(files, w);
+                break;
+            }
+
+            if (line.equals(CheckDaemon.SHUTDOWN)) {
+                this.stopListening();
+                break;
+            }
+
+            if (!line.isEmpty()) {
+                files.add(new File(line));
+                continue;
+            }
+
+            this.check(files, w);
+            files.clear();
+        }
+    }
+
+    /**
+     * Stops listening, shuts down the worker threads and destroys the checkers.
+     */
+    public void
+    destroy() {
+        this.stopListening();
+        this.checker.destroy();
+    }
+
+    /**
+     * Connects to a daemon on the given <var>port</var> of the loopback interface, authenticates with the secret
+     * from the <var>tokenFile</var>, and has the daemon check the <var>files</var>. Relative <var>files</var> are
+     * resolved against the current working directory, not against the daemon's.
+     *
+     * @return The lines of the answer, without the terminating empty line
+     */
+    public static List<String>
+    check(int port, File tokenFile, List<File> files) throws IOException {
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+            w.write(CheckDaemon.readToken(tokenFile) + '\n');
+            for (File file : files) w.write(file.getAbsolutePath() + '\n');
+            w.write('\n');
+            w.flush();
+
+            BufferedReader br = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+            List<String> result = new ArrayList<String>();
+            for (String line = br.readLine(); line != null && !line.isEmpty(); line = br.readLine()) result.add(line);
+
+            return result;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Authenticates with the secret from the <var>tokenFile</var>, and sends "{@value #SHUTDOWN}" to the daemon on
+     * the given <var>port</var> of the loopback interface.
+     */
+    public static void
+    shutdown(int port, File tokenFile) throws IOException {
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        try {
+            OutputStream os = socket.getOutputStream();
+            os.write((CheckDaemon.readToken(tokenFile) + '\n' + CheckDaemon.SHUTDOWN + '\n').getBytes("UTF-8"));
+            os.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void
+    check(List<File> files, Writer w) throws IOException {
+
+        MessageCollector events = new MessageCollector();
+        try {
+            this.checker.process(files, events);
+        } catch (CheckstyleException ce) {
+            w.write("ERROR: " + String.valueOf(ce.getMessage()).replace('\n', ' ') + "\n\n");
+            w.flush();
+            return;
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            w.write((events.getFileName(i) + ':' + events.format(i)).replace('\n', ' ') + '\n');
+        }
+        w.write('\n');
+        w.flush();
+    }
+
+    private void
+    stopListening() {
+
+        File tokenFile = this.tokenFile;
+        if (tokenFile != null) tokenFile.delete();
+
+        // Let the connections in progress finish, but accept no more.
+        ExecutorService connections = this.connections;
+        if (connections != null) connections.shutdown();
+
+        ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket == null) return;
+
+        try {
+            serverSocket.close();
+        } catch (IOException ioe) {
+            ;
+        }
+    }
+
+    /**
+     * (Re-)creates the <var>tokenFile</var>, readable and writable only by the current user, and writes a random
+     * secret to it.
+     *
+     * @throws IOException The file system supports neither POSIX permissions nor ACLs
+     *
+     * @return The secret, as it is sent by the clients
+     */
+    private static byte[]
+    createTokenFile(File tokenFile) throws IOException {
+
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : random) sb.append(String.format("%02x", b & 0xff));
+        byte[] token = sb.toString().getBytes(CheckDaemon.UTF_8);
+
+        Path        path  = tokenFile.toPath();
+        FileSystem  fs    = path.getFileSystem();
+        Set<String> views = fs.supportedFileAttributeViews();
+
+        // Create the file with restricted permissions right away, so that no other user can open it before the
+        // secret is written.
+        Files.deleteIfExists(path);
+        if (views.contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(EnumSet.of(
+                PosixFilePermission.OWNER_READ,
+                PosixFilePermission.OWNER_WRITE
+            )));
+        } else if (views.contains("acl")) {
+            final List<AclEntry> acl = Collections.singletonList(
+                AclEntry.newBuilder()
+                .setType(AclEntryType.ALLOW)
+                .setPrincipal(fs.getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name")))
+                .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+                .build()
+            );
+            Files.createFile(path, new FileAttribute<List<AclEntry>>() {
+                @Override public String         name()  { return "acl:acl"; }
+                @Override public List<AclEntry> value() { return acl;       }
+            });
+        } else {
+            throw new IOException("Cannot restrict the permissions of \"" + tokenFile + "\"");
+        }
+        Files.write(path, token);
+
+        return token;
+    }
+
+    private static String
+    readToken(File tokenFile) throws IOException {
+        return new String(Files.readAllBytes(tokenFile.toPath()), CheckDaemon.UTF_8).trim();
+    }
+}
@@ -0,0 +1,349 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.utils.TokenUtil;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Records wall and CPU time per file and per check module and file, and counts the tokens that each check visits.
+ * The per-file numbers come from the {@link AuditListener} events; the per-check numbers from the {@link
+ * CachingTreeWalker}, which reports each call of a check method to its {@link
+ * CachingTreeWalker#setProfiler(CheckProfiler) profiler}.
+ * <p>
+ *   Measuring CPU time per call is not free, so profiled runs are significantly slower than normal runs; compare
+ *   the numbers with each other, not with unprofiled runs.
+ * </p>
+ */
+public
+class CheckProfiler implements AuditListener {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean      CPU_TIME       = CheckProfiler.THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+
+    /**
+     * The length of the per-check token visit arrays. Token types are not contiguous (e.g. {@code LAMBDA} is 181 in
+     * checkstyle 8.21, although there are only 169 token types), so this is the largest token type plus one.
+     */
+    private static final int TOKEN_TYPE_LIMIT = CheckProfiler.tokenTypeLimit();
+
+    /**
+     * The times of one check on one file, or of one check on all files.
+     */
+    public static
+    class CheckTiming {
+
+        /**
+         * The fully qualified name of the check class.
+         */
+        public final String checkName;
+
+        long wallNs, cpuNs;
+        int  files;
+
+        CheckTiming(String checkName) { this.checkName = checkName; }
+
+        public long getWallNs() { return this.wallNs; }
+        public long getCpuNs()  { return this.cpuNs;  }
+
+        /**
+         * @return The number of files that the timing pertains to
+         */
+        public int getFiles() { return this.files; }
+    }
+
+    /**
+     * The times of all checks on one file, including parsing.
+     */
+    public static
+    class FileTiming {
+
+        public final String fileName;
+        public final long   wallNs, cpuNs;
+
+        private final Map<String, CheckTiming> checks;
+
+        FileTiming(String fileName, long wallNs, long cpuNs, Map<String, CheckTiming> checks) {
+            this.fileName = fileName;
+            this.wallNs   = wallNs;
+            this.cpuNs    = cpuNs;
+            this.checks   = checks;
+        }
+
+        /**
+         * @return The time that the check with the given (fully qualified) class name consumed on the file, or
+         *         {@code null} iff the check did not execute on the file
+         */
+        @Nullable public CheckTiming
+        getCheckTiming(String checkName) { return this.checks.get(checkName); }
+    }
+
+    private final List<FileTiming>              files          = new ArrayList<FileTiming>();
+    private final Map<String, CheckTiming>      checkTotals    = new LinkedHashMap<String, CheckTiming>();
+    private final Map<String, int[]>            tokenVisits    = new LinkedHashMap<String, int[]>();
+    private final LatencyHistogram              fileLatencies  = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> checkLatencies = new LinkedHashMap<String, LatencyHistogram>();
+
+    // The state of the file currently being processed.
+    @Nullable private String         currentFileName;
+    private long                     fileStartWallNs, fileStartCpuNs;
+    private Map<String, CheckTiming> currentChecks = new LinkedHashMap<String, CheckTiming>();
+    private long                     enterWallNs, enterCpuNs;
+
+    @Override public void auditStarted(AuditEvent event)                      {}
+    @Override public void auditFinished(AuditEvent event)                     {}
+    @Override public void addError(AuditEvent event)                          {}
+    @Override public void addException(AuditEvent event, Throwable throwable) {}
+
+    @Override public void
+    fileStarted(AuditEvent event) {
+        this.currentFileName = event.getFileName();
+        this.currentChecks   = new LinkedHashMap<String, CheckTiming>();
+        this.fileStartCpuNs  = CheckProfiler.cpuTime();
+        this.fileStartWallNs = System.nanoTime();
+    }
+
+    @Override public void
+    fileFinished(AuditEvent event) {
+
+        final long wallNs = System.nanoTime() - this.fileStartWallNs;
+        final long cpuNs  = CheckProfiler.cpuTime() - this.fileStartCpuNs;
+
+        String fileName = this.currentFileName;
+        if (fileName == null) fileName = String.valueOf(event.getFileName());
+
+        this.files.add(new FileTiming(fileName, wallNs, cpuNs, this.currentChecks));
+        this.fileLatencies.record(wallNs);
+
+        for (CheckTiming ct : this.currentChecks.values()) {
+
+            CheckTiming total = this.checkTotals.get(ct.checkName);
+            if (total == null) this.checkTotals.put(ct.checkName, (total = new CheckTiming(ct.checkName)));
+            total.wallNs += ct.wallNs;
+            total.cpuNs  += ct.cpuNs;
+            total.files++;
+
+            LatencyHistogram h = this.checkLatencies.get(ct.checkName);
+            if (h == null) this.checkLatencies.put(ct.checkName, (h = new LatencyHistogram()));
+            h.record(ct.wallNs);
+        }
+
+        this.currentFileName = null;
+    }
+
+    /**
+     * To be called immediately before a check method is invoked.
+     */
+    public void
+    enter() {
+        this.enterCpuNs  = CheckProfiler.cpuTime();
+        this.enterWallNs = System.nanoTime();
+    }
+
+    /**
+     * To be called immediately after a check method returned.
+     *
+     * @param visitedTokenType The type of the token iff the method was {@link AbstractCheck#visitToken}, otherwise
+     *                         -1
+     */
+    public void
+    exit(AbstractCheck check, int visitedTokenType) {
+
+        final long wallNs = System.nanoTime() - this.enterWallNs;
+        final long cpuNs  = CheckProfiler.cpuTime() - this.enterCpuNs;
+
+        final String checkName = check.getClass().getName();
+
+        CheckTiming ct = this.currentChecks.get(checkName);
+        if (ct == null) {
+            this.currentChecks.put(checkName, (ct = new CheckTiming(checkName)));
+            ct.files = 1;
+        }
+        ct.wallNs += wallNs;
+        ct.cpuNs  += cpuNs;
+
+        if (visitedTokenType != -1) {
+            int[] visits = this.tokenVisits.get(checkName);
+            if (visits == null) {
+                this.tokenVisits.put(checkName, (visits = new int[CheckProfiler.TOKEN_TYPE_LIMIT]));
+            }
+            visits[visitedTokenType]++;
+        }
+    }
+
+    /**
+     * @return The timings of all processed files, in processing order
+     */
+    public List<FileTiming>
+    getFileTimings() { return Collections.unmodifiableList(this.files); }
+
+    /**
+     * @return The total timings of all checks, in order of first execution
+     */
+    public List<CheckTiming>
+    getCheckTimings() { return new ArrayList<CheckTiming>(this.checkTotals.values()); }
+
+    /**
+     * @return The total timing of the check with the given (fully qualified) class name, or {@code null} iff the
+     *         check never executed
+     */
+    @Nullable public CheckTiming
+    getCheckTiming(String checkName) { return this.checkTotals.get(checkName); }
+
+    /**
+     * @return The <var>n</var> files that took the longest wall time, longest first
+     */
+    public List<FileTiming>
+    getSlowestFiles(int n) {
+
+        List<FileTiming> result = new ArrayList<FileTiming>(this.files);
+        Collections.sort(result, new Comparator<FileTiming>() {
+
+            @Override public int
+            compare(FileTiming ft1, FileTiming ft2) { return Long.compare(ft2.wallNs, ft1.wallNs); }
+        });
+
+        return result.subList(0, Math.min(n, result.size()));
+    }
+
+    /**
+     * @return The <var>n</var> checks that took the longest total wall time, longest first
+     */
+    public List<CheckTiming>
+    getSlowestChecks(int n) {
+
+        List<CheckTiming> result = this.getCheckTimings();
+        Collections.sort(result, new Comparator<CheckTiming>() {
+
+            @Override public int
+            compare(CheckTiming ct1, CheckTiming ct2) { return Long.compare(ct2.wallNs, ct1.wallNs); }
+        });
+
+        return result.subList(0, Math.min(n, result.size()));
+    }
+
+    /**
+     * @return How often the check with the given (fully qualified) class name visited tokens of the given type
+     */
+    public int
+    getTokenVisits(String checkName, int tokenType) {
+        int[] visits = this.tokenVisits.get(checkName);
+        return visits == null || tokenType < 0 || tokenType >= visits.length ? 0 : visits[tokenType];
+    }
+
+    /**
+     * @return The distribution of the per-file wall times
+     */
+    public LatencyHistogram
+    getFileLatencies() { return this.fileLatencies; }
+
+    /**
+     * @return The distribution of the per-file wall times of the check with the given (fully qualified) class name
+     */
+    public LatencyHistogram
+    getCheckLatencies(String checkName) {
+        LatencyHistogram result = this.checkLatencies.get(checkName);
+        return result == null ? new LatencyHistogram() : result;
+    }
+
+    /**
+     * Prints the <var>n</var> slowest files and checks, the latency histograms and the token visit counts.
+     */
+    public void
+    report(PrintStream out, int n) {
+
+        out.println(String.format(Locale.US, "Slowest %d of %d files (wall/CPU ms):", n, this.files.size()));
+        for (FileTiming ft : this.getSlowestFiles(n)) {
+            out.println(String.format(
+                Locale.US,
+                "  %,10.3f %,10.3f  %s",
+                ft.wallNs / 1E6,
+                ft.cpuNs / 1E6,
+                ft.fileName
+            ));
+        }
+
+        out.println(String.format(Locale.US, "Slowest %d of %d checks (wall/CPU ms):", n, this.checkTotals.size()));
+        for (CheckTiming ct : this.getSlowestChecks(n)) {
+            out.println(String.format(
+                Locale.US,
+                "  %,10.3f %,10.3f  %s",
+                ct.wallNs / 1E6,
+                ct.cpuNs / 1E6,
+                ct.checkName
+            ));
+        }
+
+        out.println("Per-file latencies:");
+        out.print(this.fileLatencies);
+
+        for (Entry<String, LatencyHistogram> e : this.checkLatencies.entrySet()) {
+            out.println("Per-file latencies of " + e.getKey() + ":");
+            out.print(e.getValue());
+        }
+
+        for (Entry<String, int[]> e : this.tokenVisits.entrySet()) {
+            out.println("Token visits of " + e.getKey() + ":");
+            int[] visits = e.getValue();
+            for (int tokenType = 0; tokenType < visits.length; tokenType++) {
+                if (visits[tokenType] == 0) continue;
+                out.println(String.format(
+                    Locale.US,
+                    "  %-30s %,10d",
+                    TokenUtil.getTokenName(tokenType),
+                    visits[tokenType]
+                ));
+            }
+        }
+    }
+
+    private static int
+    tokenTypeLimit() {
+        int result = 0;
+        for (int tokenType : TokenUtil.getAllTokenIds()) result = Math.max(result, tokenType + 1);
+        return result;
+    }
+
+    private static long
+    cpuTime() { return CheckProfiler.CPU_TIME ? CheckProfiler.THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0; }
+}
@@ -33,24 +33,34 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.junit.Assert;
 
 import com.puppycrawl.tools.checkstyle.Checker;
 import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
 import com.puppycrawl.tools.checkstyle.TreeWalker;
-import com.puppycrawl.tools.checkstyle.api.AuditEvent;
-import com.puppycrawl.tools.checkstyle.api.AuditListener;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileSetCheck;
+
+import de.unkrig.commons.nullanalysis.Nullable;
 
 public abstract
 class CheckStyleTest {
 
-    protected final List<String> errorMessages = new ArrayList<String>();
+    /**
+     * Checkers are expensive to create and configure, so they are shared between all tests.
+     */
+    protected static final CheckerPool CHECKER_POOL = new CheckerPool();
+
+    private boolean               checkerPooling = true;
+    private boolean               parseCaching;
+    @Nullable private ResultCache resultCache;
 
     public
     interface CsTest {
@@ -68,6 +78,45 @@ class CheckStyleTest {
          * equal the given <var>expectedMessages</var>..
          */
         void assertMessages(String... expectedMessages);
+
+        /**
+         * Executes the checks and returns the messages of the audit events they issue.
+         */
+        List<String> getMessages();
+
+        /**
+         * Checks the compilation unit, then replaces lines <var>fromLine</var> (inclusive) through <var>toLine</var>
+         * (exclusive) with the <var>replacement</var>, and verifies that an {@link IncrementalChecker incremental}
+         * re-check yields the same messages as a complete re-check.
+         */
+        void assertIncrementalEdit(int fromLine, int toLine, String replacement);
+
+        /**
+         * {@link AutoFixer Fixes} the compilation unit, verifies that the result equals the <var>expectedCode</var>,
+         * and that checking the fixed code issues no audit events.
+         */
+        void assertFixed(String expectedCode);
+    }
+
+    /**
+     * Executes several checks under one {@link TreeWalker}, i.e. with only one parse of the compilation unit, but
+     * still reports the messages of each check separately.
+     */
+    public
+    interface MultiCsTest {
+
+        MultiCsTest addCheck(Class<?> checkClass, String... attributeNamesAndValues);
+
+        /**
+         * Verifies that executing the checks issues a sequence of audit events from the given check, and that these
+         * events' messages equal the given <var>expectedMessages</var>.
+         */
+        void assertMessages(Class<?> checkClass, String... expectedMessages);
+
+        /**
+         * Executes the checks and returns the messages of the audit events they issue, grouped by check class name.
+         */
+        Map<String, List<String>> getMessages();
     }
 
     protected CsTest
@@ -91,29 +140,210 @@ class CheckStyleTest {
             
             @Override public void
             assertNoMessages() {
-                CheckStyleTest.this.assertNoMessages(createTwChecker(dc), cu);
+                this.assertMessages();
             } 
             
             @Override public void
             assertMessages(String... expectedMessages) {
-                CheckStyleTest.this.assertMessages(createTwChecker(dc), cu, expectedMessages);
+                CheckStyleTest.this.process(createTwCheckerConfig(dc), cu).assertMessages(expectedMessages);
+            }
+
+            @Override public List<String>
+            getMessages() {
+                return CheckStyleTest.this.process(createTwCheckerConfig(dc), cu).getMessages();
+            }
+
+            @Override public void
+            assertIncrementalEdit(int fromLine, int toLine, String replacement) {
+
+                InMemoryChecker checker = CheckStyleTest.createChecker(createTwCheckerConfig(dc));
+                try {
+                    IncrementalChecker ic = new IncrementalChecker(checker);
+                    ic.check(cu);
+
+                    List<String> incremental = ic.edit(fromLine, toLine, replacement);
+                    List<String> complete    = CheckStyleTest.process(checker, ic.getCode()).getMessages();
+
+                    Assert.assertEquals("Incremental vs. complete re-check", complete, incremental);
+                } finally {
+                    checker.destroy();
+                }
+            }
+
+            @Override public void
+            assertFixed(String expectedCode) {
+
+                InMemoryChecker checker = CheckStyleTest.createChecker(createTwCheckerConfig(dc));
+                try {
+                    AutoFixer.Result result = AutoFixer.fix(
+                        checker,
+                        InMemoryChecker.DEFAULT_FILE_NAME,
+                        cu,
+                        AutoFixer.DEFAULT_MAX_PASSES
+                    );
+
+                    Assert.assertEquals("Fixed code", expectedCode, result.code);
+                    CheckStyleTest.process(checker, result.code).assertMessages();
+                } catch (CheckstyleException ce) {
+                    throw new AssertionError(ce);
+                } finally {
+                    checker.destroy();
+                }
+            }
+        };
+    }
+
+    protected MultiCsTest
+    multiCsTest(final String cu) {
+
+        final List<Configuration> checkConfigurations = new ArrayList<Configuration>();
+
+        return new MultiCsTest() {
+
+            @Override public MultiCsTest
+            addCheck(Class<?> checkClass, String... attributeNamesAndValues) {
+                checkConfigurations.add(checkConfig(checkClass, attributeNamesAndValues));
+                return this;
+            }
+
+            @Override public void
+            assertMessages(Class<?> checkClass, String... expectedMessages) {
+                List<String> actualMessages = this.getMessages().get(checkClass.getName());
+                Assert.assertEquals(
+                    checkClass.getSimpleName(),
+                    Arrays.asList(expectedMessages),
+                    actualMessages == null ? Collections.<String>emptyList() : actualMessages
+                );
+            }
+
+            @Override public Map<String, List<String>>
+            getMessages() {
+                return CheckStyleTest.this.process(
+                    createTwCheckerConfig(checkConfigurations.toArray(new Configuration[checkConfigurations.size()])),
+                    cu
+                ).getMessagesBySource();
             }
         };
     }
+
+    /**
+     * Whether {@link #csTest(Class, String)} reuses checkers from the {@link #CHECKER_POOL}; {@code true} by default.
+     */
+    protected void
+    setCheckerPooling(boolean value) { this.checkerPooling = value; }
+
+    /**
+     * Whether the checks execute under a {@link CachingTreeWalker} instead of a {@link TreeWalker}, so that the
+     * same code is parsed only once, no matter how many configurations it is checked with; {@code false} by default.
+     */
+    protected void
+    setParseCaching(boolean value) { this.parseCaching = value; }
     
-    private Checker
-    createTwChecker(Configuration configuration) {
+    /**
+     * @return The configuration of a check module of the given class, with the given attributes
+     */
+    protected static DefaultConfiguration
+    checkConfig(Class<?> checkClass, String... attributeNamesAndValues) {
 
-        final DefaultConfiguration result = new DefaultConfiguration(TreeWalker.class.getName());
-        result.addChild(configuration);
+        final DefaultConfiguration result = new DefaultConfiguration(checkClass.getName());
+        for (int i = 0; i < attributeNamesAndValues.length;) {
+            result.addAttribute(attributeNamesAndValues[i++], attributeNamesAndValues[i++]);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return A new checker with one {@link TreeWalker} that executes the given checks; the caller is responsible
+     *         for destroying it
+     */
+    protected InMemoryChecker
+    createTwChecker(Configuration... checkConfigurations) {
+        return CheckStyleTest.createChecker(this.createTwCheckerConfig(checkConfigurations));
+    }
+    
+    private Configuration
+    createTwCheckerConfig(Configuration... checkConfigurations) {
+
+        final DefaultConfiguration result = new DefaultConfiguration(
+            (this.parseCaching ? CachingTreeWalker.class : TreeWalker.class).getName()
+        );
+        for (Configuration checkConfiguration : checkConfigurations) result.addChild(checkConfiguration);
         
-        return this.createChecker(result);
+        return this.createCheckerConfig(result);
+    }
+
+    /**
+     * Iff non-{@code null}, then {@link #csTest(Class, String)} and {@link #multiCsTest(String)} take the messages
+     * from the <var>resultCache</var> if possible, and store them there otherwise; {@code null} by default.
+     */
+    protected void
+    setResultCache(@Nullable ResultCache resultCache) { this.resultCache = resultCache; }
+
+    /**
+     * Gets the messages for the <var>code</var> from the {@link #setResultCache(ResultCache) result cache}, or
+     * otherwise {@link #execute(Configuration, String) executes} the checker.
+     */
+    private MessageCollector
+    process(Configuration checkerConfiguration, String code) {
+
+        final ResultCache resultCache = this.resultCache;
+        if (resultCache == null) return this.execute(checkerConfiguration, code);
+
+        try {
+            MessageCollector result = resultCache.get(checkerConfiguration, InMemoryChecker.DEFAULT_FILE_NAME, code);
+            if (result == null) {
+                result = this.execute(checkerConfiguration, code);
+                resultCache.put(checkerConfiguration, InMemoryChecker.DEFAULT_FILE_NAME, code, result);
+            }
+            return result;
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+    }
+
+    /**
+     * Runs a checker with the given configuration on the <var>code</var> and records the audit events. The checker
+     * is taken from (and then returned to) the {@link #CHECKER_POOL}, unless pooling is disabled.
+     */
+    private MessageCollector
+    execute(Configuration checkerConfiguration, String code) {
+
+        if (!this.checkerPooling) {
+            InMemoryChecker checker = CheckStyleTest.createChecker(checkerConfiguration);
+            try {
+                return CheckStyleTest.process(checker, code);
+            } finally {
+                checker.destroy();
+            }
+        }
+
+        InMemoryChecker checker = CheckStyleTest.CHECKER_POOL.take(checkerConfiguration);
+        if (checker == null) checker = CheckStyleTest.createChecker(checkerConfiguration);
+
+        // Put the checker back into the pool *before* the assertions, so that failing tests don't leak it.
+        boolean processed = false;
+        try {
+            MessageCollector result = CheckStyleTest.process(checker, code);
+            processed = true;
+            return result;
+        } finally {
+            if (processed) {
+                CheckStyleTest.CHECKER_POOL.put(checkerConfiguration, checker);
+            } else {
+                checker.destroy();
+            }
+        }
     }
     
-    private Checker
-    createChecker(Configuration configuration) {
+    /**
+     * @return A new checker with english messages, configured from the <var>checkerConfiguration</var>; the caller
+     *         is responsible for destroying it
+     */
+    protected static InMemoryChecker
+    createChecker(Configuration checkerConfiguration) {
         
-        final Checker result = new Checker();
+        final InMemoryChecker result = new InMemoryChecker();
         
         // make sure the tests always run with english error messages
         // so the tests don't fail in supported locales like german
@@ -123,30 +353,13 @@ class CheckStyleTest {
         
         result.setModuleClassLoader(Thread.currentThread().getContextClassLoader());
         try {
-            result.configure(createCheckerConfig(configuration));
+            result.configure(checkerConfiguration);
         } catch (CheckstyleException e) {
             throw new AssertionError(e);
         }
-        result.addListener(new AuditListener() {
-
-            @Override public void auditStarted(AuditEvent event)  {} 
-            @Override public void auditFinished(AuditEvent event) {} 
-            @Override public void fileStarted(AuditEvent event)   {} 
-            @Override public void fileFinished(AuditEvent event)  {} 
-            
-            @Override public void
-            addError(AuditEvent event) { 
-                errorMessages.add(event.getLine() + "x" + event.getColumn() + ": " + event.getMessage());
-            } 
-            
-            @Override public void
-            addException(AuditEvent event, Throwable throwable) {
-                errorMessages.add(event.getLine() + "x" + event.getColumn() + ": " + throwable + ": " + event.getMessage());
-            }
-        });
         return result;
     }
-    
+
     protected DefaultConfiguration
     createCheckerConfig(Configuration configuration) {
         
@@ -163,47 +376,162 @@ class CheckStyleTest {
 
     protected void
     verify(Checker checker, File[] files, String... expectedMessages) {
-        
-        this.errorMessages.clear();
-        
+
+        // Destroy the checker even if the assertion fails, so that failing tests don't leak it.
+        MessageCollector messages;
+        try {
+            messages = CheckStyleTest.process(checker, files);
+        } finally {
+            checker.destroy();
+        }
+
+        messages.assertMessages(expectedMessages);
+    }
+
+    /**
+     * Runs the <var>checker</var> on the <var>files</var> and compares the audit events with the <var>goldenFile</var>
+     * as they are issued, without holding them in memory; see {@link GoldenFile}.
+     *
+     * @param baseDirectory The directory that the file names in the golden file are relative to
+     */
+    protected void
+    verifyGolden(Checker checker, File[] files, File goldenFile, @Nullable File baseDirectory) {
+
+        GoldenFile golden;
+        try {
+            golden = new GoldenFile(goldenFile, baseDirectory);
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+
+        checker.addListener(golden);
+        try {
+            checker.process(Arrays.asList(files));
+        } catch (CheckstyleException e) {
+            throw new AssertionError(e);
+        } finally {
+            checker.removeListener(golden);
+            checker.destroy();
+        }
+
+        golden.assertMatches();
+    }
+
+    /**
+     * Runs the <var>checker</var> on the <var>files</var> and records the audit events.
+     */
+    protected static MessageCollector
+    process(Checker checker, File... files) {
+
+        final MessageCollector result = new MessageCollector();
+
+        checker.addListener(result);
         try {
             /*final int errs =*/ checker.process(java.util.Arrays.asList(files));
         } catch (CheckstyleException e) {
             throw new AssertionError(e);
+        } finally {
+            checker.removeListener(result);
         }
 
-        final Iterator<String> actualIt = this.errorMessages.iterator();
+        return result;
+    }
 
-        for (int i = 0; i < expectedMessages.length; i++) {
-            
-            final String expectedMessage = expectedMessages[i];
-            
-            if (!actualIt.hasNext()) Assert.fail("Expected CheckStyle message \"" + expectedMessage + "\"");
-            final String actual = actualIt.next();
-            
-            Assert.assertEquals("CheckStyle message #" + i, expectedMessage, actual);
+    /**
+     * Processes the <var>code</var> in memory, without writing it to a file, and verifies the audit events.
+     */
+    protected void
+    verify(InMemoryChecker checker, String code, String... expectedMessages) {
+
+        MessageCollector messages;
+        try {
+            messages = CheckStyleTest.process(checker, code);
+        } finally {
+            checker.destroy();
+        }
+
+        messages.assertMessages(expectedMessages);
+    }
+
+    /**
+     * Processes the <var>code</var> in memory and records the audit events.
+     */
+    private static MessageCollector
+    process(InMemoryChecker checker, String code) {
+
+        final MessageCollector result = new MessageCollector();
+
+        checker.addListener(result);
+        try {
+            checker.process(code);
+        } catch (CheckstyleException e) {
+            throw new AssertionError(e);
+        } finally {
+            checker.removeListener(result);
         }
-        
-        if (actualIt.hasNext()) Assert.fail("Unexpected CheckStyle message \"" + actualIt.next() + "\"");
 
-        checker.destroy();
+        return result;
     }
     
+    /**
+     * Runs the given checks over the <var>cus</var>, under a {@link CachingTreeWalker} that reports to a {@link
+     * CheckProfiler}. The <var>n</var>th compilation unit is reported as "{@code Unit}<var>n</var>{@code .java}".
+     *
+     * @return The profiler, for reporting or for assertions
+     */
+    protected CheckProfiler
+    profile(List<String> cus, Configuration... checkConfigurations) {
+
+        final DefaultConfiguration walkerConfiguration = new DefaultConfiguration(CachingTreeWalker.class.getName());
+        for (Configuration checkConfiguration : checkConfigurations) walkerConfiguration.addChild(checkConfiguration);
+
+        final InMemoryChecker checker  = CheckStyleTest.createChecker(this.createCheckerConfig(walkerConfiguration));
+        final CheckProfiler   profiler = new CheckProfiler();
+
+        for (FileSetCheck fsc : checker.getFileSetChecks()) {
+            if (fsc instanceof CachingTreeWalker) ((CachingTreeWalker) fsc).setProfiler(profiler);
+        }
+
+        checker.addListener(profiler);
+        try {
+            for (int i = 0; i < cus.size(); i++) checker.process("Unit" + i + ".java", cus.get(i));
+        } catch (CheckstyleException e) {
+            throw new AssertionError(e);
+        } finally {
+            checker.destroy();
+        }
+
+        return profiler;
+    }
+
     protected void
     assertNoMessages(Checker checker, String code) {
         assertMessages(checker, code, new String[0]);
     }
 
+    /**
+     * Runs the <var>checker</var> on the <var>code</var> and verifies the audit events. If the <var>checker</var>
+     * is an {@link InMemoryChecker}, then the code is processed in memory, otherwise it is written to a temporary
+     * file, which is deleted afterwards.
+     */
     protected void
     assertMessages(Checker checker, String code, String... expectedMessages) {
         
+        if (checker instanceof InMemoryChecker) {
+            verify((InMemoryChecker) checker, code, expectedMessages);
+            return;
+        }
+
         try {
             File tempFile = File.createTempFile("checkstyle-test", ".java");
-            
-            try (Writer w = new FileWriter(tempFile)) {
-                w.write(code);
-                w.close();
+            try {
+                
+                try (Writer w = new FileWriter(tempFile)) {
+                    w.write(code);
+                }
                 verify(checker, tempFile, expectedMessages);
+            } finally {
+                tempFile.delete();
             }
         } catch (IOException e) {
             throw new AssertionError(e);
@@ -0,0 +1,151 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A pool of idle, configured {@link InMemoryChecker}s, keyed by their configuration tree, i.e. the module names,
+ * attributes, messages and children. This saves the cost of creating and reflectively configuring a new
+ * {@link com.puppycrawl.tools.checkstyle.Checker}, {@link com.puppycrawl.tools.checkstyle.TreeWalker} and check
+ * for each assertion.
+ * <p>
+ *   Checkers are <em>taken</em> from the pool for exclusive use, and later <em>put</em> back. The caller must
+ *   remove all listeners that it added before putting a checker back.
+ * </p>
+ */
+public
+class CheckerPool {
+
+    /**
+     * Idle checkers are not destroyed until the pool is {@link #clear() cleared}, so limit their number per key.
+     */
+    private static final int MAX_IDLE_CHECKERS_PER_KEY = 8;
+
+    private final Map<String, Deque<InMemoryChecker>> idleCheckers = new HashMap<String, Deque<InMemoryChecker>>();
+
+    /**
+     * @return An idle checker that was configured with an equal configuration, or {@code null}
+     */
+    @Nullable public synchronized InMemoryChecker
+    take(Configuration configuration) {
+
+        Deque<InMemoryChecker> checkers = this.idleCheckers.get(CheckerPool.key(configuration));
+
+        return checkers == null ? null : checkers.pollFirst();
+    }
+
+    /**
+     * Makes the <var>checker</var> available for reuse with an equal <var>configuration</var>.
+     */
+    public synchronized void
+    put(Configuration configuration, InMemoryChecker checker) {
+
+        String key = CheckerPool.key(configuration);
+
+        Deque<InMemoryChecker> checkers = this.idleCheckers.get(key);
+        if (checkers == null) this.idleCheckers.put(key, (checkers = new ArrayDeque<InMemoryChecker>()));
+
+        if (checkers.size() >= CheckerPool.MAX_IDLE_CHECKERS_PER_KEY) {
+            checker.destroy();
+            return;
+        }
+
+        checkers.addFirst(checker);
+    }
+
+    /**
+     * Destroys all idle checkers.
+     */
+    public synchronized void
+    clear() {
+
+        for (Deque<InMemoryChecker> checkers : this.idleCheckers.values()) {
+            for (InMemoryChecker checker : checkers) checker.destroy();
+        }
+
+        this.idleCheckers.clear();
+    }
+
+    /**
+     * @return A string that is equal for two configuration trees iff they have equal module names, attributes,
+     *         messages and children; the order of the attributes and messages is irrelevant
+     */
+    public static String
+    key(Configuration configuration) {
+        StringBuilder sb = new StringBuilder();
+        CheckerPool.appendKey(configuration, sb);
+        return sb.toString();
+    }
+
+    private static void
+    appendKey(Configuration configuration, StringBuilder sb) {
+
+        sb.append(configuration.getName()).append('(');
+
+        String[] attributeNames = configuration.getAttributeNames().clone();
+        Arrays.sort(attributeNames);
+        for (String attributeName : attributeNames) {
+            try {
+                CheckerPool.appendQuoted(attributeName, sb.append(' '));
+                CheckerPool.appendQuoted(configuration.getAttribute(attributeName), sb.append('='));
+            } catch (CheckstyleException ce) {
+                throw new IllegalArgumentException(ce);
+            }
+        }
+
+        Entry<?, ?>[] messages = configuration.getMessages().entrySet().toArray(new Entry<?, ?>[0]);
+        Arrays.sort(messages, new java.util.Comparator<Entry<?, ?>>() {
+
+            @Override public int
+            compare(Entry<?, ?> e1, Entry<?, ?> e2) { return ((String) e1.getKey()).compareTo((String) e2.getKey()); }
+        });
+        for (Entry<?, ?> message : messages) {
+            CheckerPool.appendQuoted((String) message.getKey(), sb.append(" message "));
+            CheckerPool.appendQuoted((String) message.getValue(), sb.append('='));
+        }
+
+        for (Configuration child : configuration.getChildren()) CheckerPool.appendKey(child, sb.append(' '));
+
+        sb.append(')');
+    }
+
+    private static void
+    appendQuoted(String s, StringBuilder sb) {
+        sb.append('"').append(s.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+}
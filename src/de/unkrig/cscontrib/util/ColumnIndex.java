@@ -0,0 +1,258 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.utils.CommonUtil;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Maps character indexes to TAB-expanded columns and back, for all lines of one file, exactly like {@link
+ * CommonUtil#lengthExpandedTabs(String, int, int)} does, but without rescanning the line text on each query.
+ * <p>
+ *   The index is built once per file, in one scan, and consists of primitive arrays only: The positions of the TAB
+ *   characters, and the columns where they end. Columns right of the last TAB of a line (which is where almost all
+ *   tokens are, because TABs are typically used for indentation only) are computed with one addition; all others
+ *   with a binary search over the TABs of the line.
+ * </p>
+ * <p>
+ *   All checks under one {@link com.puppycrawl.tools.checkstyle.TreeWalker} see the same {@link FileContents}
+ *   object, so {@link #of(FileContents, int)} builds the index for the first check that asks for it, and returns
+ *   the same instance to all the others.
+ * </p>
+ * <p>
+ *   Line numbers are 1-based (like {@link com.puppycrawl.tools.checkstyle.api.DetailAST#getLineNo()}), character
+ *   indexes and columns are 0-based (like {@link com.puppycrawl.tools.checkstyle.api.DetailAST#getColumnNo()}).
+ * </p>
+ */
+public
+class ColumnIndex {
+
+    /**
+     * The TAB width that checkstyle uses unless configured otherwise.
+     */
+    public static final int DEFAULT_TAB_WIDTH = CommonUtil.DEFAULT_TAB_WIDTH;
+
+    /**
+     * The index that {@link #of(FileContents, int)} built most recently on the current thread; holds the file
+     * contents only weakly, so that they can be garbage-collected after the file was processed.
+     */
+    private static final ThreadLocal<ColumnIndex> LAST = new ThreadLocal<ColumnIndex>();
+
+    private final int tabWidth;
+
+    /**
+     * The lengths (in characters) of the lines.
+     */
+    private final int[] lengths;
+
+    /**
+     * Element <var>n</var> is the offset into {@link #tabIndexes} and {@link #tabEnds} of the first TAB of line
+     * <var>n</var>+1; element <var>lineCount</var> is the total number of TABs.
+     */
+    private final int[] firstTabs;
+
+    /**
+     * The character index of each TAB, and the column right after it.
+     */
+    private final int[] tabIndexes, tabEnds;
+
+    /**
+     * The character index of the last TAB of each line (-1 for lines without TABs), and the column right after it.
+     */
+    private final int[] lastTabIndexes, lastTabEnds;
+
+    @Nullable private WeakReference<FileContents> fileContents;
+
+    public
+    ColumnIndex(List<String> lines, int tabWidth) {
+        this(lines.toArray(new String[lines.size()]), tabWidth);
+    }
+
+    public
+    ColumnIndex(String[] lines, int tabWidth) {
+
+        this.tabWidth  = tabWidth;
+        this.lengths   = new int[lines.length];
+        this.firstTabs = new int[lines.length + 1];
+
+        this.lastTabIndexes = new int[lines.length];
+        this.lastTabEnds    = new int[lines.length];
+
+        int[] tabIndexes = new int[16], tabEnds = new int[16];
+        int   tabCount   = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+
+            this.lengths[i]   = line.length();
+            this.firstTabs[i] = tabCount;
+
+            for (int idx = line.indexOf('\t'); idx != -1; idx = line.indexOf('\t', idx + 1)) {
+
+                // The column where the TAB starts.
+                int column = (
+                    tabCount == this.firstTabs[i]
+                    ? idx
+                    : tabEnds[tabCount - 1] + (idx - tabIndexes[tabCount - 1] - 1)
+                );
+
+                if (tabCount == tabIndexes.length) {
+                    tabIndexes = Arrays.copyOf(tabIndexes, 2 * tabCount);
+                    tabEnds    = Arrays.copyOf(tabEnds, 2 * tabCount);
+                }
+                tabIndexes[tabCount] = idx;
+                tabEnds[tabCount]    = (column / tabWidth + 1) * tabWidth;
+                tabCount++;
+            }
+
+            this.lastTabIndexes[i] = tabCount == this.firstTabs[i] ? -1 : tabIndexes[tabCount - 1];
+            this.lastTabEnds[i]    = tabCount == this.firstTabs[i] ? 0 : tabEnds[tabCount - 1];
+        }
+        this.firstTabs[lines.length] = tabCount;
+
+        this.tabIndexes = Arrays.copyOf(tabIndexes, tabCount);
+        this.tabEnds    = Arrays.copyOf(tabEnds, tabCount);
+    }
+
+    /**
+     * @return The index of the <var>fileContents</var>, shared with all other checks that process the same file
+     *         on the same thread
+     */
+    public static ColumnIndex
+    of(FileContents fileContents, int tabWidth) {
+
+        ColumnIndex last = ColumnIndex.LAST.get();
+        if (last != null && last.tabWidth == tabWidth) {
+            WeakReference<FileContents> wr = last.fileContents;
+            if (wr != null && wr.get() == fileContents) return last;
+        }
+
+        ColumnIndex result = new ColumnIndex(fileContents.getLines(), tabWidth);
+        result.fileContents = new WeakReference<FileContents>(fileContents);
+        ColumnIndex.LAST.set(result);
+
+        return result;
+    }
+
+    public int
+    getLineCount() { return this.lengths.length; }
+
+    public int
+    getTabWidth() { return this.tabWidth; }
+
+    /**
+     * @return Whether the given line contains any TAB characters
+     */
+    public boolean
+    hasTabs(int lineNo) { return this.lastTabIndexes[lineNo - 1] != -1; }
+
+    /**
+     * @return The TAB-expanded column of the character at <var>index</var>; equals {@link
+     *         CommonUtil#lengthExpandedTabs(String, int, int) CommonUtil.lengthExpandedTabs(line, index, tabWidth)}
+     */
+    public int
+    expandedColumn(int lineNo, int index) {
+
+        int lastTabIndex = this.lastTabIndexes[lineNo - 1];
+        if (lastTabIndex == -1) return index;
+        if (index > lastTabIndex) return this.lastTabEnds[lineNo - 1] + (index - lastTabIndex - 1);
+
+        int k = this.lastTabBefore(lineNo, index);
+
+        return k == -1 ? index : this.tabEnds[k] + (index - this.tabIndexes[k] - 1);
+    }
+
+    /**
+     * The inverse of {@link #expandedColumn(int, int)}: Beyond the end of the line, the characters are assumed to
+     * be spaces.
+     *
+     * @return The index of the character that covers the given TAB-expanded <var>column</var>
+     */
+    public int
+    index(int lineNo, int column) {
+
+        int lastTabIndex = this.lastTabIndexes[lineNo - 1];
+        if (lastTabIndex == -1) return column;
+
+        int lastTabEnd = this.lastTabEnds[lineNo - 1];
+        if (column >= lastTabEnd) return lastTabIndex + 1 + (column - lastTabEnd);
+
+        int from = this.firstTabs[lineNo - 1], to = this.firstTabs[lineNo];
+
+        // Find the last TAB that ends at or before the column.
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.tabEnds[mid] <= column) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int k = lo - 1;
+
+        int result = k < from ? column : this.tabIndexes[k] + 1 + (column - this.tabEnds[k]);
+
+        // Is the column covered by the next TAB?
+        if (lo < to && this.tabIndexes[lo] <= result) return this.tabIndexes[lo];
+
+        return result;
+    }
+
+    /**
+     * @return The length of the line, in characters
+     */
+    public int
+    length(int lineNo) { return this.lengths[lineNo - 1]; }
+
+    /**
+     * @return The offset of the last TAB in the line that precedes the <var>index</var>, or -1
+     */
+    private int
+    lastTabBefore(int lineNo, int index) {
+
+        int from = this.firstTabs[lineNo - 1], to = this.firstTabs[lineNo];
+        if (from == to) return -1;
+
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.tabIndexes[mid] < index) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+
+        return lo == from ? -1 : lo - 1;
+    }
+}
@@ -0,0 +1,449 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.ModuleFactory;
+import com.puppycrawl.tools.checkstyle.PackageNamesLoader;
+import com.puppycrawl.tools.checkstyle.PackageObjectFactory;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A configuration tree that was compiled once, and can be written to and read from a stream, and configures checkers
+ * faster than {@link Checker#configure(Configuration)} does with the original configuration:
+ * <ul>
+ *   <li>
+ *     The module names are resolved to classes at compile time, so that the checker needs no {@link
+ *     PackageObjectFactory}, which would load the package names from the class path.
+ *   </li>
+ *   <li>
+ *     The attribute values are converted at compile time, and the setters are looked up (through the bean
+ *     introspector, like {@code BeanUtils} does) once per snapshot, not once per checker. The modules are created
+ *     and their setters invoked by a {@link ModuleFactory}, so that {@code AutomaticBean.configure()} finds no
+ *     attributes to set through {@code BeanUtils}.
+ *   </li>
+ * </ul>
+ * <p>
+ *   Attributes of types that the snapshot cannot convert, and attributes that the parent module passes down through
+ *   the context as well (e.g. "{@code severity}" and "{@code tabWidth}"), are left to {@code BeanUtils}, so that
+ *   they are set in the same order as without a snapshot.
+ * </p>
+ */
+public
+class ConfigurationSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The attributes that {@code Checker} and {@code TreeWalker} pass to their children through the context; these
+     * must be set <em>after</em> contextualization, i.e. by {@code AutomaticBean.configure()}.
+     */
+    private static final Set<String> CONTEXT_ATTRIBUTES = new HashSet<String>(Arrays.asList(
+        "basedir", "charset", "classLoader", "moduleFactory", "severity", "tabWidth"
+    ));
+
+    /**
+     * The prefix of the module names in the {@link #stripped} configuration; the rest is the index into {@link
+     * #modules}.
+     */
+    private static final String MODULE_NAME_PREFIX = "#";
+
+    /**
+     * One module of the configuration tree.
+     */
+    static
+    class Module implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final String   className;
+        final String[] setterNames;
+        final String[] parameterTypeNames;
+        final Object[] arguments;
+
+        @Nullable transient Class<?> clazz;
+        @Nullable transient Method[] setters;
+
+        Module(String className, List<String> setterNames, List<String> parameterTypeNames, List<Object> arguments) {
+            this.className          = className;
+            this.setterNames        = setterNames.toArray(new String[setterNames.size()]);
+            this.parameterTypeNames = parameterTypeNames.toArray(new String[parameterTypeNames.size()]);
+            this.arguments          = arguments.toArray();
+        }
+    }
+
+    /**
+     * Index 0 is the checker itself.
+     */
+    private final List<Module> modules = new ArrayList<Module>();
+
+    /**
+     * The configuration tree without the attributes that are set by the {@link #modules}, and with the module names
+     * replaced with {@link #MODULE_NAME_PREFIX} and the index into {@link #modules}.
+     */
+    private final DefaultConfiguration stripped;
+
+    /**
+     * The class loader that the snapshot was compiled with; {@code null} after deserialization.
+     */
+    @Nullable private transient ClassLoader moduleClassLoader;
+
+    @Nullable private transient ClassLoader boundTo;
+
+    private
+    ConfigurationSnapshot(Configuration checkerConfiguration, ClassLoader moduleClassLoader) throws CheckstyleException {
+
+        this.moduleClassLoader = moduleClassLoader;
+
+        ModuleFactory moduleFactory = new PackageObjectFactory(
+            PackageNamesLoader.getPackageNames(moduleClassLoader),
+            moduleClassLoader
+        );
+
+        this.stripped = this.compile(checkerConfiguration, Checker.class, moduleFactory);
+    }
+
+    /**
+     * Resolves the module names and converts the attribute values of the <var>checkerConfiguration</var>.
+     *
+     * @throws CheckstyleException A module cannot be found, an attribute does not exist, or its value is invalid
+     */
+    public static ConfigurationSnapshot
+    compile(Configuration checkerConfiguration, ClassLoader moduleClassLoader) throws CheckstyleException {
+        return new ConfigurationSnapshot(checkerConfiguration, moduleClassLoader);
+    }
+
+    public void
+    writeTo(OutputStream os) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(os);
+        oos.writeObject(this);
+        oos.flush();
+    }
+
+    public static ConfigurationSnapshot
+    readFrom(InputStream is) throws IOException {
+        try {
+            return (ConfigurationSnapshot) new ObjectInputStream(is).readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException(cnfe);
+        }
+    }
+
+    /**
+     * Configures the <var>checker</var> like {@link Checker#configure(Configuration)} would do with the original
+     * configuration, with the modules loaded through the class loader that the snapshot was compiled with, or, if
+     * the snapshot was {@link #readFrom(InputStream) read from a stream}, through the context class loader. Notice
+     * that the checker's module factory is replaced.
+     */
+    public void
+    configure(Checker checker) throws CheckstyleException {
+
+        ClassLoader classLoader = this.moduleClassLoader;
+        if (classLoader == null) classLoader = Thread.currentThread().getContextClassLoader();
+
+        this.configure(checker, classLoader);
+    }
+
+    /**
+     * Configures the <var>checker</var> like {@link Checker#configure(Configuration)} would do with the original
+     * configuration, with the modules loaded through the <var>moduleClassLoader</var>. Notice that the checker's
+     * module factory is replaced.
+     */
+    public void
+    configure(Checker checker, ClassLoader moduleClassLoader) throws CheckstyleException {
+
+        this.bind(moduleClassLoader);
+
+        ConfigurationSnapshot.apply(this.modules.get(0), checker);
+
+        checker.setModuleFactory(new ModuleFactory() {
+
+            @Override public Object
+            createModule(String name) throws CheckstyleException {
+
+                if (!name.startsWith(ConfigurationSnapshot.MODULE_NAME_PREFIX)) {
+                    throw new CheckstyleException("Module \"" + name + "\" is not part of the snapshot");
+                }
+
+                Module module = ConfigurationSnapshot.this.modules.get(
+                    Integer.parseInt(name.substring(ConfigurationSnapshot.MODULE_NAME_PREFIX.length()))
+                );
+
+                Class<?> clazz = module.clazz;
+                assert clazz != null;
+
+                Object result;
+                try {
+                    result = clazz.newInstance();
+                } catch (Exception e) {
+                    throw new CheckstyleException("Unable to instantiate \"" + module.className + "\"", e);
+                }
+
+                ConfigurationSnapshot.apply(module, result);
+
+                return result;
+            }
+        });
+
+        checker.configure(this.stripped);
+    }
+
+    /**
+     * @return A checker with english messages, configured from this snapshot; the caller is responsible for
+     *         destroying it
+     */
+    public InMemoryChecker
+    createChecker() throws CheckstyleException {
+
+        InMemoryChecker result = new InMemoryChecker();
+
+        // make sure the tests always run with english error messages
+        final Locale locale = Locale.ENGLISH;
+        result.setLocaleCountry(locale.getCountry());
+        result.setLocaleLanguage(locale.getLanguage());
+
+        this.configure(result);
+        return result;
+    }
+
+    private DefaultConfiguration
+    compile(Configuration configuration, Class<?> moduleClass, ModuleFactory moduleFactory)
+    throws CheckstyleException {
+
+        final boolean isRoot = this.modules.isEmpty();
+
+        DefaultConfiguration result = new DefaultConfiguration(
+            isRoot ? configuration.getName() : ConfigurationSnapshot.MODULE_NAME_PREFIX + this.modules.size()
+        );
+
+        List<String> setterNames        = new ArrayList<String>();
+        List<String> parameterTypeNames = new ArrayList<String>();
+        List<Object> arguments          = new ArrayList<Object>();
+        for (String attributeName : configuration.getAttributeNames()) {
+            String value = configuration.getAttribute(attributeName);
+
+            Method setter = ConfigurationSnapshot.findSetter(moduleClass, attributeName);
+            if (setter == null) {
+                throw new CheckstyleException(
+                    "Property '"
+                    + attributeName
+                    + "' does not exist, please check the documentation of \""
+                    + configuration.getName()
+                    + "\""
+                );
+            }
+
+            Object argument = ConfigurationSnapshot.convert(value, setter.getParameterTypes()[0]);
+            if (argument == null || (!isRoot && ConfigurationSnapshot.CONTEXT_ATTRIBUTES.contains(attributeName))) {
+                result.addAttribute(attributeName, value);
+                continue;
+            }
+
+            setterNames.add(setter.getName());
+            parameterTypeNames.add(setter.getParameterTypes()[0].getName());
+            arguments.add(argument);
+        }
+        this.modules.add(new Module(moduleClass.getName(), setterNames, parameterTypeNames, arguments));
+
+        for (Map.Entry<String, String> e : configuration.getMessages().entrySet()) {
+            result.addMessage(e.getKey(), e.getValue());
+        }
+
+        for (Configuration child : configuration.getChildren()) {
+            Class<?> childClass = moduleFactory.createModule(child.getName()).getClass();
+            result.addChild(this.compile(child, childClass, moduleFactory));
+        }
+
+        return result;
+    }
+
+    /**
+     * Resolves the module classes and the setters, once per class loader.
+     */
+    private synchronized void
+    bind(ClassLoader classLoader) throws CheckstyleException {
+
+        if (this.boundTo == classLoader) return;
+
+        // Resolve all modules before binding any, so that a failure leaves the previous binding intact.
+        Class<?>[] classes  = new Class<?>[this.modules.size()];
+        Method[][] setterss = new Method[this.modules.size()][];
+        for (int m = 0; m < classes.length; m++) {
+            Module module = this.modules.get(m);
+            try {
+                Class<?> clazz = Class.forName(module.className, false, classLoader);
+
+                Method[] setters = new Method[module.setterNames.length];
+                for (int i = 0; i < setters.length; i++) {
+                    setters[i] = clazz.getMethod(
+                        module.setterNames[i],
+                        ConfigurationSnapshot.typeForName(module.parameterTypeNames[i], classLoader)
+                    );
+                }
+
+                classes[m]  = clazz;
+                setterss[m] = setters;
+            } catch (Exception e) {
+                throw new CheckstyleException("Snapshot does not match module \"" + module.className + "\"", e);
+            }
+        }
+
+        for (int m = 0; m < classes.length; m++) {
+            this.modules.get(m).clazz   = classes[m];
+            this.modules.get(m).setters = setterss[m];
+        }
+
+        this.boundTo = classLoader;
+    }
+
+    private static void
+    apply(Module module, Object target) throws CheckstyleException {
+
+        Method[] setters = module.setters;
+        assert setters != null;
+
+        for (int i = 0; i < setters.length; i++) {
+            try {
+                setters[i].invoke(target, module.arguments[i]);
+            } catch (InvocationTargetException ite) {
+                throw new CheckstyleException(
+                    "Cannot set property '" + setters[i].getName() + "' of \"" + module.className + "\"",
+                    ite.getCause()
+                );
+            } catch (IllegalAccessException iae) {
+                throw new CheckstyleException(String.valueOf(iae), iae);
+            }
+        }
+    }
+
+    /**
+     * Chooses the setter exactly like {@code BeanUtils} does, i.e. through the bean introspector, which also decides
+     * between overloaded setters.
+     *
+     * @return {@code null} iff the <var>clazz</var> has no writable property with the given name
+     */
+    @Nullable private static Method
+    findSetter(Class<?> clazz, String attributeName) throws CheckstyleException {
+
+        PropertyDescriptor[] pds;
+        try {
+            pds = Introspector.getBeanInfo(clazz).getPropertyDescriptors();
+        } catch (IntrospectionException ie) {
+            throw new CheckstyleException("Cannot introspect \"" + clazz.getName() + "\"", ie);
+        }
+
+        for (PropertyDescriptor pd : pds) {
+            if (pd.getName().equals(attributeName) && !(pd instanceof IndexedPropertyDescriptor)) {
+                return pd.getWriteMethod();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Converts the <var>value</var> exactly like the {@code BeanUtils} converters that {@code AutomaticBean}
+     * registers.
+     *
+     * @return {@code null} iff the snapshot cannot convert to the given type
+     */
+    @Nullable private static Object
+    convert(String value, Class<?> type) throws CheckstyleException {
+
+        try {
+            if (type == String.class) return value;
+
+            if (type == boolean.class || type == Boolean.class) {
+                String s = value.trim().toLowerCase(Locale.ENGLISH);
+                if ("true".equals(s) || "yes".equals(s) || "y".equals(s) || "on".equals(s) || "1".equals(s)) {
+                    return Boolean.TRUE;
+                }
+                if ("false".equals(s) || "no".equals(s) || "n".equals(s) || "off".equals(s) || "0".equals(s)) {
+                    return Boolean.FALSE;
+                }
+                throw new CheckstyleException("Invalid boolean value \"" + value + "\"");
+            }
+
+            if (type == int.class    || type == Integer.class) return Integer.valueOf(value.trim());
+            if (type == long.class   || type == Long.class)    return Long.valueOf(value.trim());
+            if (type == double.class || type == Double.class)  return Double.valueOf(value.trim());
+
+            if (type == String[].class) {
+                List<String>    result = new ArrayList<String>();
+                StringTokenizer st     = new StringTokenizer(value.trim(), ",");
+                while (st.hasMoreTokens()) result.add(st.nextToken().trim());
+                return result.toArray(new String[result.size()]);
+            }
+
+            if (type == Pattern.class) return Pattern.compile(value);
+        } catch (NumberFormatException nfe) {
+            throw new CheckstyleException("Invalid number \"" + value + "\"", nfe);
+        } catch (PatternSyntaxException pse) {
+            throw new CheckstyleException("Invalid pattern \"" + value + "\"", pse);
+        }
+
+        return null;
+    }
+
+    private static Class<?>
+    typeForName(String name, ClassLoader classLoader) throws ClassNotFoundException {
+
+        if ("boolean".equals(name)) return boolean.class;
+        if ("int".equals(name))     return int.class;
+        if ("long".equals(name))    return long.class;
+        if ("double".equals(name))  return double.class;
+
+        return Class.forName(name, false, classLoader);
+    }
+}
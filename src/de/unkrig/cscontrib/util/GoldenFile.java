@@ -0,0 +1,448 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.Assert;
+
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Compares the audit events of a checker run against a "golden file" with the expected events, one per line, as
+ * "<var>file</var>{@code :}<var>line</var>{@code x}<var>column</var>{@code : }<var>message</var>".
+ * <p>
+ *   Neither side is held in memory: The events are compared as they are issued, and the golden file is memory-mapped
+ *   and read sequentially. Thus, hundreds of thousands of expected events (e.g. for a legacy corpus) cost no more
+ *   heap than ten.
+ * </p>
+ * <p>
+ *   The diff is concise: After a mismatch, the comparison re-synchronizes within the next {@value #LOOKAHEAD} lines,
+ *   so that one missing or one unexpected event yields one diff line, and not a mismatch of all the events that
+ *   follow it. Only the first {@value #MAX_DIFF_LINES} diff lines are reported, plus the total counts. After more
+ *   than {@value #MAX_RESYNCHRONIZED_DIFFERENCES} differences, the events are compared line by line, so that a
+ *   completely different golden file does not take a lookahead search per event.
+ * </p>
+ * <p>
+ *   If the system property "{@code cscontrib.golden.regenerate}" is {@code true}, then the events are written to the
+ *   golden file instead (replacing it when the run is {@link #finish() finished}), and the comparison always succeeds.
+ * </p>
+ */
+public
+class GoldenFile implements AuditListener, Closeable {
+
+    /**
+     * Whether golden files are regenerated instead of compared, by default.
+     */
+    public static final boolean REGENERATE = Boolean.getBoolean("cscontrib.golden.regenerate");
+
+    /**
+     * How many lines ahead the comparison looks for a match after a mismatch.
+     */
+    public static final int LOOKAHEAD = 1000;
+
+    /**
+     * After how many differences the comparison stops re-synchronizing.
+     */
+    public static final int MAX_RESYNCHRONIZED_DIFFERENCES = 10000;
+
+    /**
+     * How many diff lines {@link #getDiff()} reports.
+     */
+    public static final int MAX_DIFF_LINES = 20;
+
+    private final File           file;
+    @Nullable private final File baseDirectory;
+
+    // Comparison mode: The mapped golden file, the position and the (1-based) number of the next expected line, and
+    // the actual events that did not match yet.
+    @Nullable private final ByteBuffer expected;
+    private int                        position;
+    private int                        lineNumber = 1;
+    private final Deque<String>        pending    = new ArrayDeque<String>();
+
+    // Regeneration mode.
+    @Nullable private final File   tempFile;
+    @Nullable private final Writer writer;
+
+    private int                missingCount, unexpectedCount, matchCount;
+    private final List<String> diffLines     = new ArrayList<String>();
+    private boolean            resynchronize = true;
+    private boolean            finished;
+
+    /**
+     * Equivalent with {@link #GoldenFile(File, File, boolean) GoldenFile(file, baseDirectory, REGENERATE)}.
+     */
+    public
+    GoldenFile(File file, @Nullable File baseDirectory) throws IOException {
+        this(file, baseDirectory, GoldenFile.REGENERATE);
+    }
+
+    /**
+     * @param baseDirectory Iff non-{@code null}, then the file names of the events are written relative to it (with
+     *                      "/" as the separator), so that the golden file does not depend on where the checked files
+     *                      are
+     * @param regenerate    Whether to (re-)write the <var>file</var> instead of comparing against it
+     */
+    public
+    GoldenFile(File file, @Nullable File baseDirectory, boolean regenerate) throws IOException {
+
+        this.file          = file;
+        this.baseDirectory = baseDirectory;
+
+        if (regenerate) {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            this.tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+            this.writer   = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(this.tempFile),
+                StandardCharsets.UTF_8
+            ));
+            this.expected = null;
+            return;
+        }
+
+        this.tempFile = null;
+        this.writer   = null;
+
+        if (!file.exists()) {
+            throw new IOException(
+                "Golden file \""
+                + file
+                + "\" does not exist; run with \"-Dcscontrib.golden.regenerate=true\" to create it"
+            );
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel fc = raf.getChannel();
+            if (fc.size() > Integer.MAX_VALUE) throw new IOException("Golden file \"" + file + "\" is too large");
+
+            // The mapping remains valid after the channel is closed.
+            this.expected = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        }
+    }
+
+    @Override public void auditStarted(AuditEvent event)  {}
+    @Override public void auditFinished(AuditEvent event) {}
+    @Override public void fileStarted(AuditEvent event)   {}
+    @Override public void fileFinished(AuditEvent event)  {}
+
+    @Override public void
+    addError(AuditEvent event) { this.add(this.format(event, null)); }
+
+    @Override public void
+    addException(AuditEvent event, Throwable throwable) { this.add(this.format(event, throwable)); }
+
+    /**
+     * Compares (or, when regenerating, writes) one event, formatted like a line of the golden file.
+     */
+    public void
+    add(String event) {
+
+        if (this.finished) throw new IllegalStateException("Already finished");
+
+        Writer w = this.writer;
+        if (w != null) {
+            try {
+                w.write(event);
+                w.write('\n');
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe);
+            }
+            return;
+        }
+
+        // Fast path: The event matches the next expected line.
+        if (this.pending.isEmpty() && this.position < this.limit() && this.lineMatches(this.position, event)) {
+            this.position = this.nextLine(this.position);
+            this.lineNumber++;
+            this.matchCount++;
+            return;
+        }
+
+        if (!this.resynchronize) {
+            if (this.position < this.limit()) this.missing();
+            this.unexpected(event);
+            return;
+        }
+
+        // Look for the event in the next expected lines; if found, then the lines before it are missing.
+        int p = this.position;
+        for (int i = 0; i < GoldenFile.LOOKAHEAD && p < this.limit(); i++, p = this.nextLine(p)) {
+            if (this.lineMatches(p, event)) {
+                for (int j = 0; j < i; j++) this.missing();
+                while (!this.pending.isEmpty()) this.unexpected(this.pending.removeFirst());
+                this.position = this.nextLine(this.position);
+                this.lineNumber++;
+                this.matchCount++;
+                return;
+            }
+        }
+
+        // Not found (yet); maybe one of the next expected lines matches a later event.
+        this.pending.addLast(event);
+        if (this.pending.size() > GoldenFile.LOOKAHEAD) this.unexpected(this.pending.removeFirst());
+
+        if (this.missingCount + this.unexpectedCount > GoldenFile.MAX_RESYNCHRONIZED_DIFFERENCES) {
+            this.resynchronize = false;
+            while (!this.pending.isEmpty()) this.unexpected(this.pending.removeFirst());
+        }
+    }
+
+    /**
+     * Reports the remaining expected lines as missing and the remaining actual events as unexpected, or, when
+     * regenerating, replaces the golden file with the events written so far. Idempotent.
+     */
+    public void
+    finish() throws IOException {
+
+        if (this.finished) return;
+        this.finished = true;
+
+        Writer w = this.writer;
+        if (w != null) {
+            w.close();
+
+            File tempFile = this.tempFile;
+            assert tempFile != null;
+            if (this.file.exists() && !this.file.delete()) throw new IOException("Cannot delete \"" + this.file + "\"");
+            if (!tempFile.renameTo(this.file)) {
+                throw new IOException("Cannot rename \"" + tempFile + "\" to \"" + this.file + "\"");
+            }
+            return;
+        }
+
+        while (this.position < this.limit()) this.missing();
+        while (!this.pending.isEmpty()) this.unexpected(this.pending.removeFirst());
+    }
+
+    @Override public void
+    close() throws IOException { this.finish(); }
+
+    /**
+     * @return Whether all events matched the golden file (always {@code true} when regenerating)
+     */
+    public boolean
+    matches() { return this.missingCount == 0 && this.unexpectedCount == 0; }
+
+    /**
+     * @return The number of expected lines that no event matched
+     */
+    public int
+    getMissingCount() { return this.missingCount; }
+
+    /**
+     * @return The number of events that matched no expected line
+     */
+    public int
+    getUnexpectedCount() { return this.unexpectedCount; }
+
+    /**
+     * @return The number of events that matched an expected line
+     */
+    public int
+    getMatchCount() { return this.matchCount; }
+
+    /**
+     * @return A summary, followed by the first {@value #MAX_DIFF_LINES} diff lines: "{@code -}<var>line-number</var>
+     *         {@code : }<var>expected</var>" for missing, and "{@code +}<var>actual</var>" for unexpected events
+     */
+    public String
+    getDiff() {
+
+        StringBuilder sb = new StringBuilder()
+        .append("Golden file \"")
+        .append(this.file)
+        .append("\": ")
+        .append(this.matchCount)
+        .append(" matching, ")
+        .append(this.missingCount)
+        .append(" missing, ")
+        .append(this.unexpectedCount)
+        .append(" unexpected events; run with \"-Dcscontrib.golden.regenerate=true\" to update it");
+
+        for (String diffLine : this.diffLines) sb.append('\n').append(diffLine);
+
+        int more = this.missingCount + this.unexpectedCount - this.diffLines.size();
+        if (more > 0) sb.append("\n... and ").append(more).append(" more");
+
+        return sb.toString();
+    }
+
+    /**
+     * {@link #finish() Finishes} the comparison and fails with the {@link #getDiff() diff} iff an event did not
+     * match.
+     */
+    public void
+    assertMatches() {
+
+        try {
+            this.finish();
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+
+        if (!this.matches()) Assert.fail(this.getDiff());
+    }
+
+    private String
+    format(AuditEvent event, @Nullable Throwable throwable) {
+
+        StringBuilder sb = new StringBuilder();
+
+        String fileName = event.getFileName();
+        if (fileName != null) sb.append(this.relativize(fileName)).append(':');
+
+        sb.append(event.getLine()).append('x').append(event.getColumn()).append(": ");
+        if (throwable != null) sb.append(throwable).append(": ");
+
+        // Keep each event on one line.
+        String message = event.getLocalizedMessage() == null ? "" : event.getMessage();
+        return sb.append(message.replace("\n", "\\n")).toString();
+    }
+
+    private String
+    relativize(String fileName) {
+
+        File baseDirectory = this.baseDirectory;
+        if (baseDirectory == null) return fileName;
+
+        String base = baseDirectory.getAbsolutePath() + File.separatorChar;
+        String path = new File(fileName).getAbsolutePath();
+        return (path.startsWith(base) ? path.substring(base.length()) : path).replace(File.separatorChar, '/');
+    }
+
+    private void
+    missing() {
+        this.missingCount++;
+        if (this.diffLines.size() < GoldenFile.MAX_DIFF_LINES) {
+            this.diffLines.add("-" + this.lineNumber + ": " + this.line(this.position));
+        }
+        this.position = this.nextLine(this.position);
+        this.lineNumber++;
+    }
+
+    private void
+    unexpected(String event) {
+        this.unexpectedCount++;
+        if (this.diffLines.size() < GoldenFile.MAX_DIFF_LINES) this.diffLines.add("+" + event);
+    }
+
+    private int
+    limit() {
+        ByteBuffer expected = this.expected;
+        return expected == null ? 0 : expected.limit();
+    }
+
+    /**
+     * @return The position after the line terminator of the line that starts at <var>p</var>
+     */
+    private int
+    nextLine(int p) {
+
+        ByteBuffer expected = this.expected;
+        assert expected != null;
+
+        int limit = expected.limit();
+        while (p < limit && expected.get(p) != '\n') p++;
+        return p < limit ? p + 1 : p;
+    }
+
+    /**
+     * @return The end of the content of the line that starts at <var>p</var>, i.e. without the line terminator
+     */
+    private int
+    lineEnd(int p) {
+
+        ByteBuffer expected = this.expected;
+        assert expected != null;
+
+        int end = this.nextLine(p);
+        if (end > p && expected.get(end - 1) == '\n') end--;
+        if (end > p && expected.get(end - 1) == '\r') end--;
+        return end;
+    }
+
+    /**
+     * @return Whether the line that starts at <var>p</var> equals the <var>event</var>; compares byte-by-byte
+     *         without decoding, unless the <var>event</var> contains non-ASCII characters
+     */
+    private boolean
+    lineMatches(int p, String event) {
+
+        ByteBuffer expected = this.expected;
+        assert expected != null;
+
+        int end = this.lineEnd(p);
+        int n   = event.length();
+        for (int i = 0; i < n; i++) {
+            char c = event.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length != end - p) return false;
+                for (int j = 0; j < bytes.length; j++) {
+                    if (expected.get(p + j) != bytes[j]) return false;
+                }
+                return true;
+            }
+            if (p + i >= end || expected.get(p + i) != c) return false;
+        }
+
+        return p + n == end;
+    }
+
+    /**
+     * @return The decoded line that starts at <var>p</var>
+     */
+    private String
+    line(int p) {
+
+        ByteBuffer expected = this.expected;
+        assert expected != null;
+
+        byte[] bytes = new byte[this.lineEnd(p) - p];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = expected.get(p + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
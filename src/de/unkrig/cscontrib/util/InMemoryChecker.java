@@ -0,0 +1,239 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.api.BeforeExecutionFileFilter;
+import com.puppycrawl.tools.checkstyle.api.BeforeExecutionFileFilterSet;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileSetCheck;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+import com.puppycrawl.tools.checkstyle.utils.CommonUtil;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A {@link Checker} that can also process source code that is held in memory, i.e. without writing it to a file
+ * and reading it back.
+ */
+public
+class InMemoryChecker extends Checker {
+
+    /**
+     * The file name under which in-memory code is reported; must end with ".java" so that the {@link
+     * com.puppycrawl.tools.checkstyle.TreeWalker} accepts it.
+     */
+    public static final String DEFAULT_FILE_NAME = "checkstyle-test.java";
+
+    // The {@link Checker} keeps its file set checks, file filters, base directory and charset private, so we
+    // remember them as they are set.
+    private final List<FileSetCheck>           fileSetChecks              = new ArrayList<FileSetCheck>();
+    private final BeforeExecutionFileFilterSet beforeExecutionFileFilters = new BeforeExecutionFileFilterSet();
+    @Nullable private String                   basedir;
+
+    // Same default as in the {@link Checker}.
+    private String charset = System.getProperty("file.encoding", "UTF-8");
+
+    @Override public void
+    addFileSetCheck(FileSetCheck fileSetCheck) {
+        super.addFileSetCheck(fileSetCheck);
+        this.fileSetChecks.add(fileSetCheck);
+    }
+
+    @Override public void
+    addBeforeExecutionFileFilter(BeforeExecutionFileFilter filter) {
+        super.addBeforeExecutionFileFilter(filter);
+        this.beforeExecutionFileFilters.addBeforeExecutionFileFilter(filter);
+    }
+
+    @Override public void
+    removeBeforeExecutionFileFilter(BeforeExecutionFileFilter filter) {
+        super.removeBeforeExecutionFileFilter(filter);
+        this.beforeExecutionFileFilters.removeBeforeExecutionFileFilter(filter);
+    }
+
+    @Override public void
+    setBasedir(String basedir) {
+        super.setBasedir(basedir);
+        this.basedir = basedir;
+    }
+
+    @Override public void
+    setCharset(String charset) throws UnsupportedEncodingException {
+        super.setCharset(charset);
+        this.charset = charset;
+    }
+
+    /**
+     * @return The name of the charset that this checker was configured with
+     */
+    public String
+    getCharset() { return this.charset; }
+
+    /**
+     * @return The file set checks of this checker, e.g. {@link com.puppycrawl.tools.checkstyle.TreeWalker}s
+     */
+    public List<FileSetCheck>
+    getFileSetChecks() { return Collections.unmodifiableList(this.fileSetChecks); }
+
+    /**
+     * @return The "{@code tabWidth}" that this checker was configured with, or {@link
+     *         ColumnIndex#DEFAULT_TAB_WIDTH}
+     */
+    public int
+    getTabWidth() {
+
+        Configuration configuration = this.getConfiguration();
+        if (configuration == null || !Arrays.asList(configuration.getAttributeNames()).contains("tabWidth")) {
+            return ColumnIndex.DEFAULT_TAB_WIDTH;
+        }
+
+        try {
+            return Integer.parseInt(configuration.getAttribute("tabWidth").trim());
+        } catch (CheckstyleException ce) {
+            throw new IllegalStateException(ce);
+        }
+    }
+
+    /**
+     * Like {@link Checker#process(List)}, accepts only files that have one of the configured "{@code
+     * fileExtensions}" and that pass all {@link BeforeExecutionFileFilter}s.
+     */
+    public boolean
+    accepts(File file) {
+        return (
+            CommonUtil.matchesFileExtension(file, this.getFileExtensions())
+            && this.beforeExecutionFileFilters.accept(
+                CommonUtil.relativizeAndNormalizePath(this.basedir, file.getAbsolutePath())
+            )
+        );
+    }
+
+    /**
+     * Equivalent with {@code process(DEFAULT_FILE_NAME, code)}.
+     */
+    public void
+    process(String code) throws CheckstyleException {
+        this.process(InMemoryChecker.DEFAULT_FILE_NAME, code);
+    }
+
+    /**
+     * Runs all file set checks on the given <var>code</var> and reports the resulting audit events to the
+     * listeners, exactly like {@link Checker#process(List)} would do for a file with that content; in particular,
+     * files that this checker does not {@link #accepts(File) accept} are silently skipped. Notice, however, that
+     * neither "audit started" nor "audit finished" events are fired, and that the file set checks are <em>not</em>
+     * destroyed afterwards, so this checker can be used again and again.
+     */
+    public void
+    process(String fileName, String code) throws CheckstyleException {
+
+        final File file = new File(fileName);
+
+        this.process(file, new FileText(file, InMemoryChecker.lines(code)));
+    }
+
+    /**
+     * Runs all file set checks on the given <var>fileText</var>; see {@link #process(String, String)}.
+     */
+    public void
+    process(File file, FileText fileText) throws CheckstyleException {
+
+        if (!this.accepts(file)) return;
+
+        final String fileName = file.getPath();
+
+        for (FileSetCheck fsc : this.fileSetChecks) fsc.beginProcessing(this.charset);
+
+        this.fireFileStarted(fileName);
+
+        final SortedSet<LocalizedMessage> messages = new TreeSet<LocalizedMessage>();
+        for (FileSetCheck fsc : this.fileSetChecks) messages.addAll(fsc.process(file, fileText));
+
+        this.fireErrors(fileName, messages);
+        this.fireFileFinished(fileName);
+
+        for (FileSetCheck fsc : this.fileSetChecks) fsc.finishProcessing();
+    }
+
+    /**
+     * @return The "{@code fileExtensions}" that this checker was configured with, or an empty array
+     */
+    private String[]
+    getFileExtensions() {
+
+        Configuration configuration = this.getConfiguration();
+        if (
+            configuration == null
+            || !Arrays.asList(configuration.getAttributeNames()).contains("fileExtensions")
+        ) return new String[0];
+
+        final List<String> result = new ArrayList<String>();
+        try {
+            for (String extension : configuration.getAttribute("fileExtensions").split(",")) {
+                extension = extension.trim();
+                if (!extension.isEmpty()) result.add(extension);
+            }
+        } catch (CheckstyleException ce) {
+            throw new IllegalStateException(ce);
+        }
+
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * Splits the <var>code</var> into lines exactly like {@link FileText#FileText(File, String)} does.
+     */
+    static List<String>
+    lines(String code) {
+
+        final List<String> result = new ArrayList<String>();
+        try {
+            BufferedReader br = new BufferedReader(new StringReader(code));
+            for (String line = br.readLine(); line != null; line = br.readLine()) result.add(line);
+        } catch (IOException ioe) {
+
+            // A StringReader never throws IOExceptions.
+            throw new AssertionError(ioe);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,370 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.puppycrawl.tools.checkstyle.JavaParser;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.TextBlock;
+import com.puppycrawl.tools.checkstyle.api.TokenTypes;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Re-checks a compilation unit after an edit, but only the region that the edit can affect, and reuses the
+ * previous results for the rest of the unit.
+ * <p>
+ *   The region is determined as follows: The members of the type declaration that contains the edit are grouped into
+ *   <em>blocks</em>, which are separated by empty lines, because that is where the alignment of fields, parameters,
+ *   one-line methods and trailing comments ends. Empty lines within block comments (and doc comments) do not separate
+ *   blocks, and a block comment is never split between two blocks. The messages of the changed blocks and of their
+ *   neighbour blocks are re-computed, by checking a copy of the unit where all other blocks (except for another
+ *   neighbour on each side, as context) are blanked out; thus line and column numbers remain the same. The messages of
+ *   all other lines are taken over from the previous check, shifted by the number of inserted or deleted lines; this
+ *   includes line references of the form "line <var>n</var>" in message texts.
+ * </p>
+ * <p>
+ *   Edits that touch anything but the member declarations of a top-level type, and code that does not parse, are
+ *   re-checked completely.
+ * </p>
+ */
+public
+class IncrementalChecker {
+
+    private static final Pattern LINE_REFERENCE = Pattern.compile("\\bline (\\d+)");
+
+    private final InMemoryChecker checker;
+
+    private List<String> lines              = Collections.emptyList();
+    private List<String> messages           = Collections.emptyList();
+    private int          lastRecheckedLines = -1;
+
+    /**
+     * @param checker Is used for all checks; the caller remains responsible for destroying it
+     */
+    public
+    IncrementalChecker(InMemoryChecker checker) { this.checker = checker; }
+
+    /**
+     * Checks the <var>code</var> completely, and remembers the code and the messages for subsequent {@link
+     * #edit(int, int, String) edits}.
+     *
+     * @return "<var>line</var>x<var>column</var>: <var>message</var>" strings, like {@link
+     *         MessageCollector#getMessages()}
+     */
+    public List<String>
+    check(String code) {
+
+        this.lines              = InMemoryChecker.lines(code);
+        this.messages           = this.run(this.lines);
+        this.lastRecheckedLines = -1;
+
+        return this.messages;
+    }
+
+    /**
+     * Replaces lines <var>fromLine</var> (inclusive) through <var>toLine</var> (exclusive) of the current code with
+     * the lines of the <var>replacement</var>, and re-checks incrementally.
+     *
+     * @param fromLine 1-based
+     * @return         The messages for the edited code, exactly as a complete check would report them
+     */
+    public List<String>
+    edit(int fromLine, int toLine, String replacement) {
+
+        final List<String> oldLines         = this.lines;
+        final List<String> replacementLines = InMemoryChecker.lines(replacement);
+
+        final List<String> newLines = new ArrayList<String>(oldLines.subList(0, fromLine - 1));
+        newLines.addAll(replacementLines);
+        newLines.addAll(oldLines.subList(toLine - 1, oldLines.size()));
+
+        this.lines = newLines;
+
+        // The changed lines, in new line numbers; a deletion touches the lines before and after it.
+        int changedFrom = fromLine, changedTo = fromLine + replacementLines.size() - 1;
+        if (changedTo < changedFrom) {
+            changedFrom--;
+            changedTo++;
+        }
+
+        final List<int[]> spans = IncrementalChecker.blockSpans(newLines, changedFrom, changedTo);
+        if (spans == null) {
+            this.lastRecheckedLines = -1;
+            return (this.messages = this.run(newLines));
+        }
+
+        int first = 0;
+        while (spans.get(first)[1] < changedFrom) first++;
+        int last = spans.size() - 1;
+        while (spans.get(last)[0] > changedTo) last--;
+
+        // Re-compute the messages of the changed blocks and their neighbours ("adopted"), and give them one more
+        // block of context on either side.
+        final int adoptFrom   = spans.get(Math.max(0, first - 1))[0];
+        final int adoptTo     = spans.get(Math.min(spans.size() - 1, last + 1))[1];
+        final int contextFrom = Math.max(0, first - 2);
+        final int contextTo   = Math.min(spans.size() - 1, last + 2);
+
+        final List<String> reducedLines = new ArrayList<String>(newLines);
+        int                rechecked    = newLines.size();
+        for (int i = 0; i < spans.size(); i++) {
+            if (i >= contextFrom && i <= contextTo) continue;
+            for (int line = spans.get(i)[0]; line <= spans.get(i)[1]; line++) reducedLines.set(line - 1, "");
+            rechecked -= spans.get(i)[1] - spans.get(i)[0] + 1;
+        }
+        this.lastRecheckedLines = rechecked;
+
+        final int delta = replacementLines.size() - (toLine - fromLine);
+
+        final List<String> result = new ArrayList<String>();
+        for (String message : this.messages) {
+            if (IncrementalChecker.lineOf(message) < adoptFrom) result.add(message);
+        }
+        for (String message : this.run(reducedLines)) {
+            int line = IncrementalChecker.lineOf(message);
+            if (line >= adoptFrom && line <= adoptTo) result.add(message);
+        }
+        for (String message : this.messages) {
+            if (IncrementalChecker.lineOf(message) > adoptTo - delta) {
+                result.add(IncrementalChecker.shift(message, toLine, delta));
+            }
+        }
+
+        return (this.messages = result);
+    }
+
+    /**
+     * @return The current code, i.e. after all edits
+     */
+    public String
+    getCode() {
+        StringBuilder sb = new StringBuilder();
+        for (String line : this.lines) sb.append(line).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * @return The number of lines that the last {@link #edit(int, int, String)} actually re-checked, or -1 iff it
+     *         re-checked the code completely
+     */
+    public int
+    getLastRecheckedLines() { return this.lastRecheckedLines; }
+
+    private List<String>
+    run(List<String> lines) {
+
+        final MessageCollector collector = new MessageCollector();
+
+        this.checker.addListener(collector);
+        try {
+            File file = new File(InMemoryChecker.DEFAULT_FILE_NAME);
+            this.checker.process(file, new FileText(file, lines));
+        } catch (CheckstyleException ce) {
+            throw new AssertionError(ce);
+        } finally {
+            this.checker.removeListener(collector);
+        }
+
+        return new ArrayList<String>(collector.getMessages());
+    }
+
+    /**
+     * Determines the blocks of members of the top-level type whose body contains the changed lines. The "span" of a
+     * block extends from the line after the preceding block (or after the opening brace of the type body) to the
+     * last line of the block (or to the line before the closing brace), so the spans cover the type body without
+     * gaps.
+     *
+     * @return The first and last line of each span, or {@code null} iff the changed lines are not entirely within
+     *         one type body, or the code does not parse
+     */
+    @Nullable private static List<int[]>
+    blockSpans(List<String> lines, int changedFrom, int changedTo) {
+
+        final File         file     = new File(InMemoryChecker.DEFAULT_FILE_NAME);
+        final FileContents contents = new FileContents(new FileText(file, lines));
+
+        DetailAST root;
+        try {
+            root = JavaParser.parse(contents);
+        } catch (CheckstyleException ce) {
+            return null;
+        }
+
+        // The parser reports the block comments to the file contents.
+        final List<int[]> comments = new ArrayList<int[]>();
+        for (List<TextBlock> tbs : contents.getBlockComments().values()) {
+            for (TextBlock tb : tbs) comments.add(new int[] { tb.getStartLineNo(), tb.getEndLineNo() });
+        }
+
+        for (DetailAST type = root; type != null; type = type.getNextSibling()) {
+
+            DetailAST objBlock = type.findFirstToken(TokenTypes.OBJBLOCK);
+            if (objBlock == null) continue;
+
+            DetailAST lcurly = objBlock.findFirstToken(TokenTypes.LCURLY);
+            DetailAST rcurly = objBlock.findFirstToken(TokenTypes.RCURLY);
+            if (lcurly == null || rcurly == null) continue;
+
+            final int bodyFrom = lcurly.getLineNo() + 1, bodyTo = rcurly.getLineNo() - 1;
+            if (changedFrom < bodyFrom || changedTo > bodyTo) continue;
+
+            // Determine the blocks of members.
+            List<int[]> blocks = new ArrayList<int[]>();
+            for (DetailAST member = objBlock.getFirstChild(); member != null; member = member.getNextSibling()) {
+                if (member == lcurly || member == rcurly) continue;
+
+                int[] extent = { Integer.MAX_VALUE, 0 };
+                IncrementalChecker.extent(member, extent);
+                IncrementalChecker.includeComments(extent, comments);
+                if (extent[0] < bodyFrom || extent[1] > bodyTo) return null;
+
+                int[] previous = blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+                if (
+                    previous != null
+                    && !IncrementalChecker.containsEmptyLine(lines, previous[1], extent[0], comments)
+                ) {
+                    previous[1] = Math.max(previous[1], extent[1]);
+                } else {
+                    blocks.add(extent);
+                }
+            }
+            if (blocks.isEmpty()) return null;
+
+            // Make the blocks' spans cover the type body without gaps.
+            blocks.get(0)[0]                 = bodyFrom;
+            blocks.get(blocks.size() - 1)[1] = bodyTo;
+            for (int i = 1; i < blocks.size(); i++) blocks.get(i)[0] = blocks.get(i - 1)[1] + 1;
+
+            // Blanking some spans but not others must not cut a block comment, e.g. one that begins on the line of
+            // the opening brace; otherwise, check completely.
+            for (int[] comment : comments) {
+                for (int[] block : blocks) {
+                    boolean startsIn = comment[0] >= block[0] && comment[0] <= block[1];
+                    boolean endsIn   = comment[1] >= block[0] && comment[1] <= block[1];
+                    if (startsIn != endsIn) return null;
+                }
+            }
+
+            return blocks;
+        }
+
+        return null;
+    }
+
+    /**
+     * Widens the <var>extent</var> to include the lines of the <var>ast</var> and all its descendants.
+     */
+    private static void
+    extent(DetailAST ast, int[] extent) {
+
+        if (ast.getLineNo() > 0) {
+            extent[0] = Math.min(extent[0], ast.getLineNo());
+            extent[1] = Math.max(extent[1], ast.getLineNo());
+        }
+
+        for (DetailAST child = ast.getFirstChild(); child != null; child = child.getNextSibling()) {
+            IncrementalChecker.extent(child, extent);
+        }
+    }
+
+    /**
+     * Widens the <var>extent</var> to include all the <var>comments</var> that overlap with it.
+     */
+    private static void
+    includeComments(int[] extent, List<int[]> comments) {
+
+        for (boolean widened = true; widened;) {
+            widened = false;
+            for (int[] comment : comments) {
+                if (comment[0] > extent[1] || comment[1] < extent[0]) continue;
+                if (comment[0] < extent[0]) {
+                    extent[0] = comment[0];
+                    widened   = true;
+                }
+                if (comment[1] > extent[1]) {
+                    extent[1] = comment[1];
+                    widened   = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Whether any of the lines between <var>afterLine</var> and <var>beforeLine</var> (both exclusive) is
+     *         empty and not within one of the <var>comments</var>
+     */
+    private static boolean
+    containsEmptyLine(List<String> lines, int afterLine, int beforeLine, List<int[]> comments) {
+        for (int line = afterLine + 1; line < beforeLine; line++) {
+            if (lines.get(line - 1).trim().isEmpty() && !IncrementalChecker.isInComment(line, comments)) return true;
+        }
+        return false;
+    }
+
+    private static boolean
+    isInComment(int line, List<int[]> comments) {
+        for (int[] comment : comments) {
+            if (line >= comment[0] && line <= comment[1]) return true;
+        }
+        return false;
+    }
+
+    private static int
+    lineOf(String message) { return Integer.parseInt(message.substring(0, message.indexOf('x'))); }
+
+    /**
+     * Shifts the line number of the <var>message</var>, and the line references in its text which are greater than
+     * or equal to <var>fromLine</var>, by <var>delta</var>.
+     */
+    private static String
+    shift(String message, int fromLine, int delta) {
+
+        if (delta == 0) return message;
+
+        final int          x  = message.indexOf('x');
+        final StringBuffer sb = new StringBuffer().append(Integer.parseInt(message.substring(0, x)) + delta);
+
+        Matcher m = IncrementalChecker.LINE_REFERENCE.matcher(message.substring(x));
+        while (m.find()) {
+            int line = Integer.parseInt(m.group(1));
+            m.appendReplacement(sb, "line " + (line >= fromLine ? line + delta : line));
+        }
+        m.appendTail(sb);
+
+        return sb.toString();
+    }
+}
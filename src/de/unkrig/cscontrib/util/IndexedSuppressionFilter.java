@@ -0,0 +1,224 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.puppycrawl.tools.checkstyle.TreeWalkerAuditEvent;
+import com.puppycrawl.tools.checkstyle.TreeWalkerFilter;
+import com.puppycrawl.tools.checkstyle.api.AutomaticBean;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Suppresses audit events as directed by "{@code // SUPPRESS CHECKSTYLE }<var>check-name-regex</var>[{@code
+ * :}<var>n</var>]" comments in the checked file: Such a comment in line <var>L</var> suppresses all events in lines
+ * <var>L</var> through <var>L</var>+<var>n</var> (only line <var>L</var> if "{@code :}<var>n</var>" is missing)
+ * from checks whose name (the simple class name without the "{@code Check}" suffix, or the module ID) contains a
+ * match of the <var>check-name-regex</var>. Comments with a malformed <var>check-name-regex</var> are ignored.
+ * <p>
+ *   To be configured as a child of the {@link com.puppycrawl.tools.checkstyle.TreeWalker}, next to the checks.
+ * </p>
+ * <p>
+ *   Matching each audit event against each suppression comment costs O(<var>events</var> x <var>comments</var>),
+ *   which hurts on generated files with thousands of suppressions. Instead, this filter builds an {@link Index} per
+ *   file, in one scan, which answers each event with one binary search per distinct <var>check-name-regex</var>.
+ * </p>
+ */
+public
+class IndexedSuppressionFilter extends AutomaticBean implements TreeWalkerFilter {
+
+    private static final Pattern SUPPRESSION = Pattern.compile("//\\s*SUPPRESS CHECKSTYLE\\s+([^\\s:]+)(?::(\\d+))?");
+
+    @Nullable private FileContents lastFileContents;
+    @Nullable private Index        lastIndex;
+
+    @Override protected void
+    finishLocalSetup() {}
+
+    @Override public boolean
+    accept(TreeWalkerAuditEvent event) {
+
+        // All events of one file carry the same FileContents object, so index each file only once.
+        FileContents fileContents = event.getFileContents();
+        Index        index        = this.lastIndex;
+        if (index == null || fileContents != this.lastFileContents) {
+            this.lastIndex        = (index = new Index(fileContents.getLines()));
+            this.lastFileContents = fileContents;
+        }
+
+        if (index.isEmpty()) return true;
+
+        String moduleId = event.getModuleId();
+        return !(
+            index.isSuppressed(event.getLine(), IndexedSuppressionFilter.checkName(event.getSourceName()))
+            || (moduleId != null && index.isSuppressed(event.getLine(), moduleId))
+        );
+    }
+
+    /**
+     * @return The simple name of the <var>sourceName</var> class, without the "{@code Check}" suffix
+     */
+    public static String
+    checkName(String sourceName) {
+        String result = sourceName.substring(sourceName.lastIndexOf('.') + 1);
+        return result.endsWith("Check") ? result.substring(0, result.length() - 5) : result;
+    }
+
+    /**
+     * The suppressions of one file. For each distinct <var>check-name-regex</var>, the suppressed line ranges are
+     * merged into sorted, disjoint intervals, which are stored in primitive arrays.
+     */
+    public static
+    class Index {
+
+        private final Pattern[] patterns;
+
+        /**
+         * Per pattern, the first and the last line number of each suppressed interval, in ascending order.
+         */
+        private final int[][] starts, ends;
+
+        /**
+         * Per pattern, whether it matches a check name; filled lazily, because there are only few check names.
+         */
+        private final List<Map<String, Boolean>> matches = new ArrayList<Map<String, Boolean>>();
+
+        private final int suppressionCount;
+
+        /**
+         * Scans the <var>lines</var> of a file for suppression comments.
+         */
+        public
+        Index(String[] lines) {
+
+            Map<String, Pattern>     patternsByRegex  = new LinkedHashMap<String, Pattern>();
+            Map<String, List<int[]>> intervalsByRegex = new HashMap<String, List<int[]>>();
+
+            int suppressionCount = 0;
+            for (int i = 0; i < lines.length; i++) {
+                String line = lines[i];
+
+                // Fast path: Most lines don't contain a suppression.
+                if (!line.contains("SUPPRESS CHECKSTYLE")) continue;
+
+                Matcher m = IndexedSuppressionFilter.SUPPRESSION.matcher(line);
+                if (!m.find()) continue;
+
+                List<int[]> intervals = intervalsByRegex.get(m.group(1));
+                if (intervals == null) {
+
+                    // A malformed regex (e.g. "// SUPPRESS CHECKSTYLE (Foo") must not break the check of the file.
+                    try {
+                        patternsByRegex.put(m.group(1), Pattern.compile(m.group(1)));
+                    } catch (PatternSyntaxException pse) {
+                        continue;
+                    }
+                    intervalsByRegex.put(m.group(1), (intervals = new ArrayList<int[]>()));
+                }
+
+                int count = m.group(2) == null ? 0 : Integer.parseInt(m.group(2));
+                intervals.add(new int[] { i + 1, i + 1 + count });
+                suppressionCount++;
+            }
+
+            this.suppressionCount = suppressionCount;
+            this.patterns         = new Pattern[patternsByRegex.size()];
+            this.starts           = new int[this.patterns.length][];
+            this.ends             = new int[this.patterns.length][];
+
+            int p = 0;
+            for (Entry<String, Pattern> e : patternsByRegex.entrySet()) {
+                this.patterns[p] = e.getValue();
+                this.matches.add(new HashMap<String, Boolean>());
+
+                // The intervals start in ascending order (because the lines were scanned top-down), but may
+                // overlap; merge them.
+                List<int[]> intervals = intervalsByRegex.get(e.getKey());
+                int[]       starts    = new int[intervals.size()], ends = new int[intervals.size()];
+                int         n         = 0;
+                for (int[] interval : intervals) {
+                    if (n > 0 && interval[0] <= ends[n - 1] + 1) {
+                        ends[n - 1] = Math.max(ends[n - 1], interval[1]);
+                    } else {
+                        starts[n] = interval[0];
+                        ends[n++] = interval[1];
+                    }
+                }
+                this.starts[p] = Arrays.copyOf(starts, n);
+                this.ends[p++] = Arrays.copyOf(ends, n);
+            }
+        }
+
+        /**
+         * @return Whether the file contains no suppression comments at all
+         */
+        public boolean
+        isEmpty() { return this.patterns.length == 0; }
+
+        /**
+         * @return The number of suppression comments in the file
+         */
+        public int
+        getSuppressionCount() { return this.suppressionCount; }
+
+        /**
+         * @param lineNo    1-based
+         * @param checkName E.g. "{@code Whitespace}" or "{@code WrapMethod}"; see {@link
+         *                  IndexedSuppressionFilter#checkName(String)}
+         * @return          Whether events of the named check are suppressed in the given line
+         */
+        public boolean
+        isSuppressed(int lineNo, String checkName) {
+
+            for (int p = 0; p < this.patterns.length; p++) {
+
+                Map<String, Boolean> matches = this.matches.get(p);
+                Boolean              match   = matches.get(checkName);
+                if (match == null) matches.put(checkName, (match = this.patterns[p].matcher(checkName).find()));
+                if (!match) continue;
+
+                // Find the last interval that starts at or before the line.
+                int idx = Arrays.binarySearch(this.starts[p], lineNo);
+                if (idx < 0) idx = -idx - 2;
+                if (idx >= 0 && lineNo <= this.ends[p][idx]) return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Searches for compilation units that maximize the runtime per byte of a check, by randomly mutating seed
+ * compilation units and keeping the mutants that are slower (per byte) than their parents.
+ * <p>
+ *   The mutations work on lines (duplicating, deleting, re-indenting); mutants that do not parse are discarded.
+ * </p>
+ * <p>
+ *   The runtime per byte excludes the fixed cost of one check (measured with a trivial compilation unit), because
+ *   otherwise the search would favor ever smaller inputs.
+ * </p>
+ */
+public
+class LatencyFuzzer {
+
+    /**
+     * The operation under test.
+     */
+    public
+    interface Target {
+
+        /**
+         * Checks the <var>cu</var>; throws an exception or error iff the <var>cu</var> is not valid input.
+         */
+        void check(String cu);
+    }
+
+    /**
+     * A compilation unit and the time it took to check it.
+     */
+    public static
+    class Finding {
+
+        public final String cu;
+        public final long   ns;
+
+        /**
+         * The time it took to check a trivial compilation unit.
+         */
+        public final long baselineNs;
+
+        Finding(String cu, long ns, long baselineNs) {
+            this.cu         = cu;
+            this.ns         = ns;
+            this.baselineNs = baselineNs;
+        }
+
+        /**
+         * @return The time that the checking took beyond the baseline, per byte of the compilation unit
+         */
+        public double
+        getNsPerByte() { return (double) Math.max(0, this.ns - this.baselineNs) / Math.max(1, this.cu.length()); }
+    }
+
+    /**
+     * The compilation unit that determines the fixed cost of one check.
+     */
+    private static final String BASELINE_CU = "class Baseline {}\n";
+
+    private final Target target;
+    private final Random random;
+    private long         baselineNs = -1;
+
+    /**
+     * @param seed Makes the search reproducible
+     */
+    public
+    LatencyFuzzer(Target target, long seed) {
+        this.target = target;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Mutates the worst compilation units found so far, <var>iterations</var> times, starting with the
+     * <var>seeds</var>.
+     *
+     * @param maxLength Mutants longer than this are discarded, so that the search does not simply grow the input
+     * @return          The <var>keep</var> findings with the greatest runtime per byte, greatest first
+     */
+    public List<Finding>
+    search(List<String> seeds, int iterations, int keep, int maxLength) {
+
+        final List<Finding> population = new ArrayList<Finding>();
+        for (String seed : seeds) {
+            Finding f = this.measure(seed);
+            if (f != null) population.add(f);
+        }
+        if (population.isEmpty()) throw new IllegalArgumentException("None of the seeds is valid");
+
+        for (int i = 0; i < iterations; i++) {
+
+            // Prefer the worst findings as parents.
+            LatencyFuzzer.sort(population);
+            Finding parent = population.get(
+                Math.min(population.size() - 1, (int) Math.abs(this.random.nextGaussian() * keep / 2))
+            );
+
+            String mutant = LatencyFuzzer.mutate(parent.cu, this.random);
+            if (mutant.length() > maxLength) continue;
+
+            Finding f = this.measure(mutant);
+            if (f == null || f.getNsPerByte() <= parent.getNsPerByte()) continue;
+
+            population.add(f);
+            if (population.size() > 4 * keep) {
+                LatencyFuzzer.sort(population);
+                population.subList(4 * keep, population.size()).clear();
+            }
+        }
+
+        LatencyFuzzer.sort(population);
+        return new ArrayList<Finding>(population.subList(0, Math.min(keep, population.size())));
+    }
+
+    /**
+     * @return The least time of three checks of the <var>cu</var> (after one warm-up check), or {@code null} iff the
+     *         <var>cu</var> is not valid input
+     */
+    @Nullable public Finding
+    measure(String cu) {
+
+        if (this.baselineNs == -1) {
+            Long baselineNs = this.time(LatencyFuzzer.BASELINE_CU);
+            this.baselineNs = baselineNs == null ? 0 : baselineNs;
+        }
+
+        Long ns = this.time(cu);
+        return ns == null ? null : new Finding(cu, ns, this.baselineNs);
+    }
+
+    /**
+     * @return The least time of three checks of the <var>cu</var> (after one warm-up check), or {@code null} iff the
+     *         <var>cu</var> is not valid input
+     */
+    @Nullable private Long
+    time(String cu) {
+
+        try {
+            this.target.check(cu);
+        } catch (RuntimeException re) {
+            return null;
+        } catch (AssertionError ae) {
+            return null;
+        }
+
+        long result = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            this.target.check(cu);
+            result = Math.min(result, System.nanoTime() - start);
+        }
+
+        return result;
+    }
+
+    /**
+     * Applies one random, line-based mutation to the <var>cu</var>.
+     */
+    public static String
+    mutate(String cu, Random random) {
+
+        final List<String> lines = new ArrayList<String>(InMemoryChecker.lines(cu));
+
+        // Leave the first and the last line alone; they typically hold the class declaration.
+        if (lines.size() < 3) return cu;
+        int line = 1 + random.nextInt(lines.size() - 2);
+
+        final String s = lines.get(line);
+
+        switch (random.nextInt(5)) {
+
+        case 0: // Duplicate one line.
+            lines.add(line, s);
+            break;
+
+        case 1: // Duplicate a range of lines.
+            int to = Math.min(lines.size() - 1, line + 1 + random.nextInt(20));
+            lines.addAll(to, new ArrayList<String>(lines.subList(line, to)));
+            break;
+
+        case 2: // Delete one line.
+            lines.remove(line);
+            break;
+
+        case 3: // Indent one line differently.
+            String        trimmed = s.trim();
+            StringBuilder indent  = new StringBuilder();
+            for (int i = s.indexOf(trimmed) + random.nextInt(5) - 2; i > 0; i--) indent.append(' ');
+            lines.set(line, indent + trimmed);
+            break;
+
+        default: // Insert spaces somewhere within one line, e.g. before an "=" or a comment.
+            int at = random.nextInt(s.length() + 1);
+            lines.set(line, s.substring(0, at) + "    ".substring(random.nextInt(4)) + s.substring(at));
+            break;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (String l : lines) sb.append(l).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Saves the <var>finding</var> as a regression test case: Writes the compilation unit to
+     * "<var>directory</var>/<var>name</var>.txt", and appends "<var>name</var> = <var>budget</var>" to
+     * "<var>directory</var>/latency-budgets.properties", where the budget is the measured time (in milliseconds)
+     * times the <var>headroom</var>.
+     */
+    public static void
+    save(Finding finding, File directory, String name, double headroom) throws IOException {
+
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(new File(directory, name + ".txt")), StandardCharsets.UTF_8)) {
+            w.write(finding.cu);
+        }
+
+        try (Writer w = new OutputStreamWriter(
+            new FileOutputStream(new File(directory, "latency-budgets.properties"), true),
+            StandardCharsets.ISO_8859_1
+        )) {
+            w.write(String.format(Locale.US, "%s = %d%n", name, (long) Math.ceil(finding.ns * headroom / 1E6)));
+        }
+    }
+
+    private static void
+    sort(List<Finding> findings) {
+        Collections.sort(findings, new Comparator<Finding>() {
+
+            @Override public int
+            compare(Finding f1, Finding f2) { return Double.compare(f2.getNsPerByte(), f1.getNsPerByte()); }
+        });
+    }
+}
@@ -0,0 +1,110 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.util.Locale;
+
+/**
+ * Counts latencies in buckets of exponentially growing width: Bucket 0 counts latencies below 1 microsecond, and
+ * bucket <var>n</var> counts latencies from 2<sup><var>n</var>-1</sup> to 2<sup><var>n</var></sup> microseconds.
+ */
+public
+class LatencyHistogram {
+
+    private static final int BUCKETS = 40;
+
+    private final long[] counts = new long[LatencyHistogram.BUCKETS];
+    private long         count;
+    private long         maxNs;
+
+    /**
+     * Counts one latency.
+     */
+    public void
+    record(long ns) {
+
+        long us = ns / 1000;
+        int  bucket = us == 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(us), LatencyHistogram.BUCKETS - 1);
+
+        this.counts[bucket]++;
+        this.count++;
+        if (ns > this.maxNs) this.maxNs = ns;
+    }
+
+    /**
+     * @return The number of recorded latencies
+     */
+    public long
+    getCount() { return this.count; }
+
+    /**
+     * @return The greatest recorded latency, in nanoseconds
+     */
+    public long
+    getMaxNs() { return this.maxNs; }
+
+    /**
+     * @param percent 0...100
+     * @return        An upper bound for the given percentile of the recorded latencies, in nanoseconds; precise
+     *                within a factor of two
+     */
+    public long
+    getPercentileNs(double percent) {
+
+        if (this.count == 0) return 0;
+
+        long threshold = (long) Math.ceil(this.count * percent / 100);
+        long sum       = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            sum += this.counts[i];
+            if (sum >= threshold) return Math.min(1000L << i, this.maxNs);
+        }
+
+        return this.maxNs;
+    }
+
+    /**
+     * @return One line per non-empty bucket, with the bucket's upper bound, count and a bar
+     */
+    @Override public String
+    toString() {
+
+        long maxCount = 0;
+        for (long c : this.counts) maxCount = Math.max(maxCount, c);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            if (this.counts[i] == 0) continue;
+
+            sb.append(String.format(Locale.US, "  < %,12d us %,10d ", 1L << i, this.counts[i]));
+            for (long j = (40 * this.counts[i] + maxCount - 1) / maxCount; j > 0; j--) sb.append('#');
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,353 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Assert;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.AbstractCheck;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Runs checks over many files, through many create/process/destroy cycles of the checker, and then verifies through
+ * {@link WeakReference}s that no checker, no {@link DetailAST} and no {@link FileContents} remains reachable, and
+ * (optionally) that the retained heap did not grow noticeably.
+ * <p>
+ *   Also, while a checker is alive, the checks must not keep the ASTs and file contents of <em>previous</em> files;
+ *   only those of the most recently processed file may still be reachable (e.g. through the per-file context of
+ *   {@link AbstractCheck}).
+ * </p>
+ * <p>
+ *   Each cycle executes in its own thread, because checkstyle's checks keep their per-file context in {@link
+ *   ThreadLocal}s, which are released only when the thread ends (or, lazily, when the thread uses other thread
+ *   locals).
+ * </p>
+ */
+public final
+class LeakDetector {
+
+    private LeakDetector() {}
+
+    /**
+     * By how much the used heap may grow through all cycles; configurable through the system property "{@code
+     * cscontrib.leak.maxRetainedBytes}". Retaining the AST of each file would cost far more than that.
+     *
+     * @see Result#assertRetainedBytes()
+     */
+    public static final long MAX_RETAINED_BYTES = Long.getLong("cscontrib.leak.maxRetainedBytes", 16L << 20);
+
+    /**
+     * The weak references of the run in progress; {@code null} when no run is in progress.
+     */
+    @Nullable private static volatile Tracker tracker;
+
+    /**
+     * The outcome of a {@link LeakDetector#run(int, List, Configuration...) run}.
+     */
+    public static
+    class Result {
+
+        /**
+         * How many files were processed, in how many cycles.
+         */
+        public final int files, cycles;
+
+        /**
+         * How many of the checkers, ASTs and file contents were still reachable after all cycles.
+         */
+        public final int retainedCheckers, retainedAsts, retainedFileContents;
+
+        /**
+         * The maximum number of ASTs and file contents of one cycle that were still reachable at the end of the
+         * cycle, while the checker was still alive.
+         */
+        public final int maxAstsPerLiveChecker, maxFileContentsPerLiveChecker;
+
+        /**
+         * By how much the used heap of the <em>whole JVM</em> grew through all cycles (after garbage collection).
+         * Concurrently running tests distort this value.
+         */
+        public final long retainedBytes;
+
+        Result(
+            int  files,
+            int  cycles,
+            int  retainedCheckers,
+            int  retainedAsts,
+            int  retainedFileContents,
+            int  maxAstsPerLiveChecker,
+            int  maxFileContentsPerLiveChecker,
+            long retainedBytes
+        ) {
+            this.files                         = files;
+            this.cycles                        = cycles;
+            this.retainedCheckers              = retainedCheckers;
+            this.retainedAsts                  = retainedAsts;
+            this.retainedFileContents          = retainedFileContents;
+            this.maxAstsPerLiveChecker         = maxAstsPerLiveChecker;
+            this.maxFileContentsPerLiveChecker = maxFileContentsPerLiveChecker;
+            this.retainedBytes                 = retainedBytes;
+        }
+
+        /**
+         * Fails iff any checker, AST or file contents was retained after the checker was destroyed, or, while the
+         * checker was alive, beyond the most recently processed file.
+         */
+        public void
+        assertNoLeaks() {
+            Assert.assertEquals(this.toString(), 0, this.retainedCheckers);
+            Assert.assertEquals(this.toString(), 0, this.retainedAsts);
+            Assert.assertEquals(this.toString(), 0, this.retainedFileContents);
+            Assert.assertTrue(this.toString(), this.maxAstsPerLiveChecker <= 1);
+            Assert.assertTrue(this.toString(), this.maxFileContentsPerLiveChecker <= 1);
+        }
+
+        /**
+         * Fails iff the heap grew by more than {@link LeakDetector#MAX_RETAINED_BYTES}. Because the {@link
+         * #retainedBytes} cover the whole JVM, only {@link PerformanceTests} should invoke this method.
+         */
+        public void
+        assertRetainedBytes() {
+            Assert.assertTrue(this.toString(), this.retainedBytes <= LeakDetector.MAX_RETAINED_BYTES);
+        }
+
+        @Override public String
+        toString() {
+            return String.format(
+                Locale.US,
+                (
+                    "%,d files in %,d cycles: retained %d checkers, %d ASTs, %d file contents, %,d bytes; "
+                    + "while alive, up to %d ASTs and %d file contents per checker"
+                ),
+                this.files,
+                this.cycles,
+                this.retainedCheckers,
+                this.retainedAsts,
+                this.retainedFileContents,
+                this.retainedBytes,
+                this.maxAstsPerLiveChecker,
+                this.maxFileContentsPerLiveChecker
+            );
+        }
+    }
+
+    /**
+     * Records weak references to the ASTs and file contents of the files that are processed in a run.
+     */
+    private static
+    class Tracker {
+        final List<WeakReference<Object>> asts         = new ArrayList<WeakReference<Object>>();
+        final List<WeakReference<Object>> fileContents = new ArrayList<WeakReference<Object>>();
+
+        synchronized void
+        add(DetailAST ast, FileContents fileContents) {
+            this.asts.add(new WeakReference<Object>(ast));
+            this.fileContents.add(new WeakReference<Object>(fileContents));
+        }
+    }
+
+    /**
+     * Is added to the tree walker next to the checks under test, and reports each file's AST and file contents to
+     * the run in progress.
+     */
+    public static
+    class Probe extends ParseOnlyCheck {
+
+        @Override public void
+        beginTree(DetailAST rootAst) {
+            Tracker t = LeakDetector.tracker;
+            if (t != null) t.add(rootAst, this.getFileContents());
+        }
+    }
+
+    /**
+     * Creates a checker with the given checks, processes the <var>cus</var> and destroys the checker, <var>cycles</var>
+     * times, after one warm-up cycle.
+     */
+    public static synchronized Result
+    run(int cycles, List<String> cus, Configuration... checkConfigurations) {
+
+        DefaultConfiguration treeWalker = new DefaultConfiguration(TreeWalker.class.getName());
+        for (Configuration checkConfiguration : checkConfigurations) treeWalker.addChild(checkConfiguration);
+        treeWalker.addChild(new DefaultConfiguration(Probe.class.getName()));
+
+        DefaultConfiguration checkerConfiguration = new DefaultConfiguration("root");
+        checkerConfiguration.addChild(treeWalker);
+
+        // The warm-up cycle fills the static caches (classes, resource bundles, message templates).
+        LeakDetector.cycle(checkerConfiguration, cus, new Tracker());
+        long usedBefore = LeakDetector.usedHeapAfterGc();
+
+        Tracker t = new Tracker();
+        LeakDetector.tracker = t;
+        try {
+            List<WeakReference<Object>> checkers        = new ArrayList<WeakReference<Object>>();
+            int                         maxAsts         = 0;
+            int                         maxFileContents = 0;
+            for (int i = 0; i < cycles; i++) {
+                int[] reachable = new int[2];
+                checkers.add(LeakDetector.cycle(checkerConfiguration, cus, t, reachable));
+                maxAsts         = Math.max(maxAsts, reachable[0]);
+                maxFileContents = Math.max(maxFileContents, reachable[1]);
+            }
+
+            LeakDetector.gc(t.asts, t.fileContents, checkers);
+            long usedAfter = LeakDetector.usedHeapAfterGc();
+
+            return new Result(
+                cycles * cus.size(),
+                cycles,
+                LeakDetector.countReachable(checkers),
+                LeakDetector.countReachable(t.asts),
+                LeakDetector.countReachable(t.fileContents),
+                maxAsts,
+                maxFileContents,
+                Math.max(0, usedAfter - usedBefore)
+            );
+        } finally {
+            LeakDetector.tracker = null;
+        }
+    }
+
+    private static WeakReference<Object>
+    cycle(Configuration checkerConfiguration, List<String> cus, Tracker tracker) {
+        return LeakDetector.cycle(checkerConfiguration, cus, tracker, new int[2]);
+    }
+
+    /**
+     * In a new thread, creates a checker, processes the <var>cus</var> and destroys the checker. Right before the
+     * checker is destroyed, counts how many of the cycle's ASTs and file contents are still reachable.
+     *
+     * @param reachable Is set to the number of ASTs and the number of file contents of this cycle that the live
+     *                  checker still references
+     * @return          A weak reference to the (destroyed) checker
+     */
+    private static WeakReference<Object>
+    cycle(
+        final Configuration checkerConfiguration,
+        final List<String>  cus,
+        final Tracker       tracker,
+        final int[]         reachable
+    ) {
+
+        final List<WeakReference<Object>> result = new ArrayList<WeakReference<Object>>();
+        final Throwable[]                 error  = new Throwable[1];
+
+        Thread thread = new Thread("leak-detector") {
+
+            @Override public void
+            run() {
+                try {
+                    int first = tracker.asts.size();
+
+                    InMemoryChecker checker = CheckStyleTest.createChecker(checkerConfiguration);
+                    result.add(new WeakReference<Object>(checker));
+                    try {
+                        for (int i = 0; i < cus.size(); i++) checker.process("Unit" + i + ".java", cus.get(i));
+
+                        List<WeakReference<Object>> asts         = tracker.asts.subList(first, tracker.asts.size());
+                        List<WeakReference<Object>> fileContents = (
+                            tracker.fileContents.subList(first, tracker.fileContents.size())
+                        );
+                        LeakDetector.gc(asts, fileContents);
+                        reachable[0] = LeakDetector.countReachable(asts);
+                        reachable[1] = LeakDetector.countReachable(fileContents);
+                    } finally {
+                        checker.destroy();
+                    }
+                } catch (Throwable t) { // SUPPRESS CHECKSTYLE IllegalCatch
+                    error[0] = t;
+                }
+            }
+        };
+        thread.setContextClassLoader(Thread.currentThread().getContextClassLoader());
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException ie) {
+            throw new AssertionError(ie);
+        }
+
+        if (error[0] instanceof RuntimeException) throw (RuntimeException) error[0];
+        if (error[0] instanceof Error)            throw (Error) error[0];
+        if (error[0] != null)                     throw new AssertionError(error[0]);
+
+        return result.get(0);
+    }
+
+    /**
+     * Triggers garbage collections until all the <var>references</var> are cleared, or until the number of reachable
+     * referents did not change through three collections, but at most for about one second.
+     */
+    @SafeVarargs private static void
+    gc(List<WeakReference<Object>>... references) {
+
+        for (int i = 0, previous = -1, unchanged = 0; i < 50; i++) {
+            System.gc();
+
+            int reachable = 0;
+            for (List<WeakReference<Object>> l : references) reachable += LeakDetector.countReachable(l);
+            if (reachable == 0) return;
+
+            unchanged = reachable == previous ? unchanged + 1 : 0;
+            if (unchanged == 3) return;
+            previous = reachable;
+
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ie) {
+                throw new AssertionError(ie);
+            }
+        }
+    }
+
+    private static int
+    countReachable(List<WeakReference<Object>> references) {
+        int result = 0;
+        for (WeakReference<Object> r : references) {
+            if (r.get() != null) result++;
+        }
+        return result;
+    }
+
+    private static long
+    usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,100 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+
+/**
+ * Records the audit events of one processing run, and presents them as
+ * "<var>line</var>x<var>column</var>: <var>message</var>" strings.
+ * Each assertion uses its own collector, so that assertions can execute concurrently.
+ * <p>
+ *   The strings are only built on demand; {@link #assertMessages(String...)} compares without building them unless
+ *   the assertion fails.
+ * </p>
+ */
+public
+class MessageCollector extends AuditEventRecorder {
+
+    /**
+     * @return The messages recorded so far; each is {@link #format(int) formatted} when it is retrieved
+     */
+    public List<String>
+    getMessages() {
+
+        return new AbstractList<String>() {
+            @Override public String get(int index) { return MessageCollector.this.format(index); }
+            @Override public int    size()         { return MessageCollector.this.size();        }
+        };
+    }
+
+    /**
+     * @return The messages recorded so far, grouped by the name of the module that issued them, typically the
+     *         fully qualified name of a check class
+     */
+    public Map<String, List<String>>
+    getMessagesBySource() {
+
+        final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+        for (int i = 0; i < this.size(); i++) {
+            String       sourceName = this.getSourceName(i);
+            List<String> l          = result.get(sourceName);
+            if (l == null) result.put(sourceName, (l = new ArrayList<String>()));
+            l.add(this.format(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Verifies that the recorded messages equal the <var>expectedMessages</var>.
+     */
+    public void
+    assertMessages(String... expectedMessages) {
+
+        for (int i = 0; i < expectedMessages.length; i++) {
+
+            final String expectedMessage = expectedMessages[i];
+
+            if (i >= this.size()) Assert.fail("Expected CheckStyle message \"" + expectedMessage + "\"");
+
+            if (this.matches(i, expectedMessage)) continue;
+
+            Assert.assertEquals("CheckStyle message #" + i, expectedMessage, this.format(i));
+        }
+
+        if (this.size() > expectedMessages.length) {
+            Assert.fail("Unexpected CheckStyle message \"" + this.format(expectedMessages.length) + "\"");
+        }
+    }
+}
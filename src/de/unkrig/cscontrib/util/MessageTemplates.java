@@ -0,0 +1,218 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Formats {@link LocalizedMessage}s exactly like {@link LocalizedMessage#getMessage()}, but with cached, compiled
+ * message templates.
+ * <p>
+ *   {@link LocalizedMessage#getMessage()} looks up the pattern in the resource bundle and parses it into a new
+ *   {@link MessageFormat} on each invocation, which dominates the cost of reporting when a check issues tens of
+ *   thousands of messages. Here, the {@link MessageFormat} is compiled once per bundle, key and locale (or once per
+ *   custom message), and only the arguments are formatted for each message. Because {@link MessageFormat} is not
+ *   thread-safe, each thread formats with its own clone of the compiled template.
+ * </p>
+ * <p>
+ *   The arguments, the bundle name and the custom message of a {@link LocalizedMessage} are not part of its API, so
+ *   they are read by reflection; if that is not possible (e.g. with a different checkstyle version), {@link
+ *   #format(LocalizedMessage)} falls back to {@link LocalizedMessage#getMessage()}.
+ * </p>
+ */
+public final
+class MessageTemplates {
+
+    private MessageTemplates() {}
+
+    @Nullable private static final Field  ARGS, BUNDLE, CUSTOM_MESSAGE, LOCALE;
+    @Nullable private static final Method GET_BUNDLE;
+    static {
+        Field  args = null, bundle = null, customMessage = null, locale = null;
+        Method getBundle = null;
+        try {
+            args          = MessageTemplates.accessibleField("args");
+            bundle        = MessageTemplates.accessibleField("bundle");
+            customMessage = MessageTemplates.accessibleField("customMessage");
+            locale        = MessageTemplates.accessibleField("sLocale");
+            getBundle     = LocalizedMessage.class.getDeclaredMethod("getBundle", String.class);
+            getBundle.setAccessible(true);
+        } catch (Exception e) {
+
+            // Another checkstyle version; fall back to "LocalizedMessage.getMessage()".
+            args = null;
+        }
+        ARGS           = args;
+        BUNDLE         = bundle;
+        CUSTOM_MESSAGE = customMessage;
+        LOCALE         = locale;
+        GET_BUNDLE     = getBundle;
+    }
+
+    /**
+     * Bundle name => message key => template.
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<String, Template>>
+    BUNDLE_TEMPLATES = new ConcurrentHashMap<String, ConcurrentMap<String, Template>>();
+
+    /**
+     * Custom message => template.
+     */
+    private static final ConcurrentMap<String, Template>
+    CUSTOM_TEMPLATES = new ConcurrentHashMap<String, Template>();
+
+    /**
+     * A compiled {@link MessageFormat}, and the locale that its pattern was looked up for.
+     */
+    private static
+    class Template {
+
+        @Nullable final Locale           locale;
+        final ThreadLocal<MessageFormat> formats;
+
+        Template(@Nullable Locale locale, String pattern) {
+            this.locale = locale;
+
+            // MessageFormat is not thread-safe, so each thread gets its own clone; cloning does not parse the
+            // pattern again.
+            final MessageFormat prototype = new MessageFormat(pattern, Locale.ROOT);
+            this.formats = new ThreadLocal<MessageFormat>() {
+                @Override protected MessageFormat initialValue() { return (MessageFormat) prototype.clone(); }
+            };
+        }
+
+        String
+        format(@Nullable Object[] args) { return this.formats.get().format(args); }
+    }
+
+    /**
+     * @return The locale that {@link LocalizedMessage}s are currently localized for
+     */
+    public static Locale
+    getLocale() {
+
+        Field locale = MessageTemplates.LOCALE;
+        if (locale != null) {
+            try {
+                Locale result = (Locale) locale.get(null);
+                if (result != null) return result;
+            } catch (IllegalAccessException iae) {
+                ;
+            }
+        }
+
+        return Locale.getDefault();
+    }
+
+    /**
+     * @return The same as {@link LocalizedMessage#getMessage() lm.getMessage()}
+     */
+    public static String
+    format(LocalizedMessage lm) {
+
+        Field args = MessageTemplates.ARGS, bundle = MessageTemplates.BUNDLE;
+        if (args == null || bundle == null) return lm.getMessage();
+
+        try {
+            return MessageTemplates.format(lm, (Object[]) args.get(lm), (String) bundle.get(lm));
+        } catch (IllegalAccessException iae) {
+            return lm.getMessage();
+        }
+    }
+
+    private static String
+    format(LocalizedMessage lm, @Nullable Object[] args, String bundle) throws IllegalAccessException {
+
+        assert MessageTemplates.CUSTOM_MESSAGE != null;
+        assert MessageTemplates.LOCALE != null;
+
+        String customMessage = (String) MessageTemplates.CUSTOM_MESSAGE.get(lm);
+        if (customMessage != null) {
+            Template t = MessageTemplates.CUSTOM_TEMPLATES.get(customMessage);
+            if (t == null) MessageTemplates.CUSTOM_TEMPLATES.put(customMessage, (t = new Template(null, customMessage)));
+            return t.format(args);
+        }
+
+        ConcurrentMap<String, Template> templates = MessageTemplates.BUNDLE_TEMPLATES.get(bundle);
+        if (templates == null) {
+            templates = new ConcurrentHashMap<String, Template>();
+            ConcurrentMap<String, Template> tmp = MessageTemplates.BUNDLE_TEMPLATES.putIfAbsent(bundle, templates);
+            if (tmp != null) templates = tmp;
+        }
+
+        // The locale can change between checker runs (see "Checker.setLocaleLanguage()").
+        Locale   locale = (Locale) MessageTemplates.LOCALE.get(null);
+        String   key    = lm.getKey();
+        Template t      = templates.get(key);
+        if (t == null || (t.locale == null ? locale != null : !t.locale.equals(locale))) {
+            templates.put(key, (t = new Template(locale, MessageTemplates.pattern(lm, bundle, key))));
+        }
+
+        return t.format(args);
+    }
+
+    /**
+     * Looks up the pattern like {@link LocalizedMessage#getMessage()} does: Through checkstyle's bundle cache, and,
+     * iff the bundle or the key does not exist, the key itself.
+     */
+    private static String
+    pattern(LocalizedMessage lm, String bundle, String key) throws IllegalAccessException {
+
+        assert MessageTemplates.GET_BUNDLE != null;
+
+        try {
+            return ((ResourceBundle) MessageTemplates.GET_BUNDLE.invoke(lm, bundle)).getString(key);
+        } catch (MissingResourceException mre) {
+            return key;
+        } catch (InvocationTargetException ite) {
+            Throwable cause = ite.getCause();
+            if (cause instanceof MissingResourceException) return key;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Field
+    accessibleField(String name) throws NoSuchFieldException {
+        Field result = LocalizedMessage.class.getDeclaredField(name);
+        result.setAccessible(true);
+        return result;
+    }
+}
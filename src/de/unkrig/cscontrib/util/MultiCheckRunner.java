@@ -0,0 +1,113 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.DefaultConfiguration;
+import com.puppycrawl.tools.checkstyle.TreeWalker;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+
+/**
+ * Executes any number of checks under one {@link TreeWalker}, so that each compilation unit is parsed only once, as
+ * in a production CheckStyle configuration, and reports the messages of each check separately.
+ */
+public
+class MultiCheckRunner {
+
+    private final InMemoryChecker checker;
+
+    public
+    MultiCheckRunner(Configuration... checkConfigurations) {
+
+        final DefaultConfiguration treeWalkerConfiguration = new DefaultConfiguration(TreeWalker.class.getName());
+        for (Configuration cc : checkConfigurations) treeWalkerConfiguration.addChild(cc);
+
+        final DefaultConfiguration checkerConfiguration = new DefaultConfiguration("root");
+        checkerConfiguration.addChild(treeWalkerConfiguration);
+
+        this.checker = CheckStyleTest.createChecker(checkerConfiguration);
+    }
+
+    /**
+     * Checks the <var>code</var>.
+     *
+     * @return The "<var>line</var>x<var>column</var>: <var>message</var>" strings, grouped by check class name
+     */
+    public Map<String, List<String>>
+    process(String fileName, String code) throws CheckstyleException {
+
+        final MessageCollector collector = new MessageCollector();
+
+        this.checker.addListener(collector);
+        try {
+            this.checker.process(fileName, code);
+        } finally {
+            this.checker.removeListener(collector);
+        }
+
+        return collector.getMessagesBySource();
+    }
+
+    /**
+     * Checks the <var>files</var>, one after the other.
+     *
+     * @return The "<var>file</var>:<var>line</var>x<var>column</var>: <var>message</var>" strings, grouped by check
+     *         class name
+     */
+    public Map<String, List<String>>
+    process(List<File> files, String charsetName) throws CheckstyleException, IOException {
+
+        final MessageCollector collector = new MessageCollector() {
+
+            @Override public String
+            format(int index) {
+                return this.getFileName(index) + ":" + super.format(index);
+            }
+        };
+
+        this.checker.addListener(collector);
+        try {
+            for (File file : files) this.checker.process(file, new FileText(file, charsetName));
+        } finally {
+            this.checker.removeListener(collector);
+        }
+
+        return collector.getMessagesBySource();
+    }
+
+    /**
+     * Releases the resources of the underlying checker.
+     */
+    public void
+    destroy() { this.checker.destroy(); }
+}
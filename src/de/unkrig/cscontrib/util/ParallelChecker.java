@@ -0,0 +1,267 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.puppycrawl.tools.checkstyle.Definitions;
+import com.puppycrawl.tools.checkstyle.api.AuditEvent;
+import com.puppycrawl.tools.checkstyle.api.AuditListener;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+import com.puppycrawl.tools.checkstyle.api.LocalizedMessage;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Checks files on several threads, each file with one of several checkers that are built from the same
+ * configuration, and reports the audit events to the listener in file order, as one {@link
+ * com.puppycrawl.tools.checkstyle.Checker} would on one thread. Files that the checkers do not {@link
+ * InMemoryChecker#accepts(File) accept} (because of their "{@code fileExtensions}" or "before execution file
+ * filters") are skipped without being read. Files that cannot be read are reported as one error each, like {@link
+ * com.puppycrawl.tools.checkstyle.Checker} does.
+ * <p>
+ *   The worker threads are created through a {@link ThreadFactory}, so that e.g. virtual threads can be used where
+ *   the JRE supports them ({@code Thread.ofVirtual().factory()}). The number of checkers, not the number of threads,
+ *   limits the parallelism.
+ * </p>
+ */
+public
+class ParallelChecker {
+
+    private final ExecutorService                executor;
+    private final BlockingQueue<InMemoryChecker> checkers;
+    private final List<InMemoryChecker>          allCheckers = new ArrayList<InMemoryChecker>();
+    @Nullable private final String               charsetName;
+    private final int                            window;
+
+    /**
+     * Equivalent with {@link #ParallelChecker(Configuration, int, String, ThreadFactory)
+     * ParallelChecker}{@code (checkerConfiguration, parallelism, null, Executors.defaultThreadFactory())}.
+     */
+    public
+    ParallelChecker(Configuration checkerConfiguration, int parallelism) {
+        this(checkerConfiguration, parallelism, null, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param checkerConfiguration The configuration of the "root" module
+     * @param parallelism          The number of checkers and of worker threads
+     * @param charsetName          The encoding of the files, or {@code null} to use the "{@code charset}" of the
+     *                             <var>checkerConfiguration</var>
+     */
+    public
+    ParallelChecker(
+        Configuration    checkerConfiguration,
+        int              parallelism,
+        @Nullable String charsetName,
+        ThreadFactory    threadFactory
+    ) {
+        this.charsetName = charsetName;
+        this.checkers    = new ArrayBlockingQueue<InMemoryChecker>(parallelism);
+
+        // Limit the number of checked files that wait for the listener, so that memory consumption does not depend
+        // on the number of files.
+        this.window = 4 * parallelism;
+
+        for (int i = 0; i < parallelism; i++) {
+            InMemoryChecker checker = CheckStyleTest.createChecker(checkerConfiguration);
+            this.allCheckers.add(checker);
+            this.checkers.add(checker);
+        }
+
+        this.executor = Executors.newFixedThreadPool(parallelism, threadFactory);
+    }
+
+    /**
+     * Checks the <var>files</var> in parallel, and reports the audit events to the <var>listener</var>; all events
+     * of the first file, then all events of the second file, and so forth. Notice that the <var>listener</var> is
+     * invoked on the calling thread only.
+     */
+    public void
+    process(List<File> files, AuditListener listener) throws CheckstyleException {
+
+        listener.auditStarted(new AuditEvent(this));
+
+        final Queue<Future<FileEvents>> pending = new ArrayDeque<Future<FileEvents>>();
+        try {
+            Iterator<File> it = files.iterator();
+            while (it.hasNext() || !pending.isEmpty()) {
+
+                while (it.hasNext() && pending.size() < this.window) {
+                    final File file = it.next();
+                    pending.add(this.executor.submit(new Callable<FileEvents>() {
+
+                        @Override public FileEvents
+                        call() throws Exception { return ParallelChecker.this.process(file); }
+                    }));
+                }
+
+                ParallelChecker.get(pending.remove()).replayTo(listener);
+            }
+        } finally {
+            for (Future<?> f : pending) f.cancel(true);
+        }
+
+        listener.auditFinished(new AuditEvent(this));
+    }
+
+    /**
+     * Shuts down the worker threads and destroys the checkers.
+     */
+    public void
+    destroy() {
+        this.executor.shutdownNow();
+        for (InMemoryChecker checker : this.allCheckers) checker.destroy();
+    }
+
+    /**
+     * Checks one file with one of the checkers.
+     *
+     * @return The events of the file, which are empty iff the checker does not accept the file
+     */
+    private FileEvents
+    process(File file) throws Exception {
+
+        final FileEvents events = new FileEvents();
+
+        InMemoryChecker checker = this.checkers.take();
+        try {
+            if (!checker.accepts(file)) return events;
+
+            String         charsetName = this.charsetName;
+            final FileText fileText;
+            try {
+                fileText = new FileText(
+                    file.getAbsoluteFile(),
+                    charsetName != null ? charsetName : checker.getCharset()
+                );
+            } catch (IOException ioe) {
+
+                // Like "Checker.processFile()", report an unreadable file as one error, and continue with the
+                // other files.
+                String fileName = file.getAbsolutePath();
+                events.fileStarted(new AuditEvent(checker, fileName));
+                events.addError(new AuditEvent(checker, fileName, new LocalizedMessage(
+                    1,
+                    Definitions.CHECKSTYLE_BUNDLE,
+                    "general.exception",
+                    new String[] { ioe.getMessage() },
+                    null,
+                    checker.getClass(),
+                    null
+                )));
+                events.fileFinished(new AuditEvent(checker, fileName));
+                return events;
+            }
+
+            checker.addListener(events);
+            try {
+                checker.process(file.getAbsoluteFile(), fileText);
+            } finally {
+                checker.removeListener(events);
+            }
+        } finally {
+            this.checkers.add(checker);
+        }
+
+        return events;
+    }
+
+    private static FileEvents
+    get(Future<FileEvents> future) throws CheckstyleException {
+        try {
+            return future.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof CheckstyleException) throw (CheckstyleException) cause;
+            throw new CheckstyleException(String.valueOf(cause), cause);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new CheckstyleException("Interrupted", ie);
+        }
+    }
+
+    /**
+     * Records the events of one file, so that they can be replayed in file order.
+     */
+    private static
+    class FileEvents implements AuditListener {
+
+        private final List<AuditEvent>           events     = new ArrayList<AuditEvent>();
+        private final Map<AuditEvent, Throwable> exceptions = new IdentityHashMap<AuditEvent, Throwable>();
+
+        @Override public void auditStarted(AuditEvent event)  {}
+        @Override public void auditFinished(AuditEvent event) {}
+        @Override public void fileStarted(AuditEvent event)   { this.events.add(event); }
+        @Override public void addError(AuditEvent event)      { this.events.add(event); }
+        @Override public void fileFinished(AuditEvent event)  { this.events.add(event); }
+
+        @Override public void
+        addException(AuditEvent event, Throwable throwable) {
+            this.events.add(event);
+            this.exceptions.put(event, throwable);
+        }
+
+        /**
+         * Reports the recorded events to the <var>listener</var>; nothing iff the file was skipped.
+         */
+        void
+        replayTo(AuditListener listener) {
+
+            if (this.events.isEmpty()) return;
+
+            listener.fileStarted(this.events.get(0));
+            for (AuditEvent event : this.events.subList(1, this.events.size() - 1)) {
+                Throwable throwable = this.exceptions.get(event);
+                if (throwable == null) {
+                    listener.addError(event);
+                } else {
+                    listener.addException(event, throwable);
+                }
+            }
+            listener.fileFinished(this.events.get(this.events.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.puppycrawl.tools.checkstyle.JavaParser;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A bounded cache of parsed compilation units, keyed by a hash of their content. Least recently used entries are
+ * evicted when the cache is full.
+ * <p>
+ *   The cached {@link DetailAST}s and {@link FileContents} are shared by all checks that process the same content,
+ *   so checks must not modify them (which well-behaved checks don't).
+ *   They must not be shared between threads, though, because {@link DetailAST}s lazily compute and publish state;
+ *   use one cache per thread.
+ * </p>
+ */
+public
+class ParseCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The result of parsing one compilation unit.
+     */
+    public static final
+    class ParsedUnit {
+
+        /**
+         * The file contents, which also carries the comments that the parser reported.
+         */
+        public final FileContents fileContents;
+
+        /**
+         * The AST without comment nodes.
+         */
+        public final DetailAST rootAst;
+
+        @Nullable private DetailAST rootAstWithComments;
+
+        ParsedUnit(FileContents fileContents, DetailAST rootAst) {
+            this.fileContents = fileContents;
+            this.rootAst      = rootAst;
+        }
+
+        /**
+         * Because {@link JavaParser#appendHiddenCommentNodes(DetailAST)} modifies the AST it is given, the AST with
+         * comment nodes is the result of a second parse; it is created on first request.
+         *
+         * @return The AST with comment nodes
+         */
+        public synchronized DetailAST
+        getRootAstWithComments() throws CheckstyleException {
+
+            DetailAST result = this.rootAstWithComments;
+            if (result != null) return result;
+
+            return (this.rootAstWithComments = JavaParser.parseFileText(
+                this.fileContents.getText(),
+                JavaParser.Options.WITH_COMMENTS
+            ));
+        }
+    }
+
+    private final Map<String, ParsedUnit> entries;
+    private int                      hits, misses;
+
+    /**
+     * @param maxEntries The maximum number of compilation units to cache
+     */
+    public
+    ParseCache(final int maxEntries) {
+
+        this.entries = new LinkedHashMap<String, ParsedUnit>(16, .75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override protected boolean
+            removeEldestEntry(Map.Entry<String, ParsedUnit> eldest) { return this.size() > maxEntries; }
+        };
+    }
+
+    /**
+     * @return The cached parse result for the <var>fileText</var>, or a new parse result which is then cached
+     */
+    public ParsedUnit
+    get(FileText fileText) throws CheckstyleException {
+
+        final String key = ParseCache.hash(fileText);
+
+        synchronized (this) {
+            ParsedUnit result = this.entries.get(key);
+            if (result != null) {
+                this.hits++;
+                return result;
+            }
+            this.misses++;
+        }
+
+        // Parse outside the lock; if two threads parse the same content concurrently, one of the results wins.
+        final FileContents fileContents = new FileContents(fileText);
+        final ParsedUnit   result       = new ParsedUnit(fileContents, JavaParser.parse(fileContents));
+
+        synchronized (this) {
+            this.entries.put(key, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The number of {@link #get(FileText)} invocations that were served from the cache
+     */
+    public synchronized int
+    getHits() { return this.hits; }
+
+    /**
+     * @return The number of {@link #get(FileText)} invocations that required a parse
+     */
+    public synchronized int
+    getMisses() { return this.misses; }
+
+    /**
+     * Removes all entries and resets the hit and miss counts.
+     */
+    public synchronized void
+    clear() {
+        this.entries.clear();
+        this.hits = this.misses = 0;
+    }
+
+    /**
+     * @return The SHA-256 hash of the file name and the text
+     */
+    private static String
+    hash(FileText fileText) {
+
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        }
+
+        // The file name is part of the key, because checks may look at it.
+        md.update(fileText.getFile().getPath().getBytes(ParseCache.UTF_8));
+        md.update((byte) 0);
+        md.update(fileText.getFullText().toString().getBytes(ParseCache.UTF_8));
+
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+        }
+
+        return sb.toString();
+    }
+}
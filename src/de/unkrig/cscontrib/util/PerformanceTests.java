@@ -0,0 +1,57 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import org.junit.Assume;
+import org.junit.experimental.categories.Category;
+
+/**
+ * The JUNIT {@link Category} of the tests that measure execution time, throughput, latency, allocations or heap
+ * usage. Such tests must run alone, because concurrent tests distort their measurements.
+ * <p>
+ *   Also, they take long and depend on the machine, so they {@link #assumeEnabled() skip themselves} unless the
+ *   system property "{@code cscontrib.perf}" is {@code true}.
+ * </p>
+ */
+public final
+class PerformanceTests {
+
+    private PerformanceTests() {}
+
+    /**
+     * Whether the system property "{@code cscontrib.perf}" is {@code true}.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("cscontrib.perf");
+
+    /**
+     * Skips the current test unless the performance tests are {@link #ENABLED}.
+     */
+    public static void
+    assumeEnabled() {
+        Assume.assumeTrue("Performance tests are enabled with \"-Dcscontrib.perf=true\"", PerformanceTests.ENABLED);
+    }
+}
@@ -0,0 +1,445 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.puppycrawl.tools.checkstyle.Checker;
+import com.puppycrawl.tools.checkstyle.api.Configuration;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A persistent cache of check results, keyed by the SHA-256 hash of the complete checker configuration (see {@link
+ * CheckerPool#key(Configuration)}; this includes all attributes of all modules, so changing any check property
+ * invalidates the entry), of the implementation of its modules and of the locale of the messages, and by the SHA-256
+ * hash of the file name and content.
+ * <p>
+ *   The cache file is an append-only log of entries, which is memory-mapped for reading. Entries that were written
+ *   incompletely, e.g. because the JVM was killed, are discarded when the file is opened. Several processes (and
+ *   several instances in one process) can use the same cache file; appending is serialized with a {@link FileLock}.
+ * </p>
+ */
+public
+class ResultCache implements Closeable {
+
+    private static final int MAGIC      = 0x43535243; // "CSRC"
+    private static final int VERSION    = 1;
+    private static final int HEADER     = 8;
+    private static final int KEY_LENGTH = 64;
+
+    /**
+     * Entries become invalid when the Checkstyle version changes.
+     */
+    private static final String
+    CHECKSTYLE_VERSION = String.valueOf(Checker.class.getPackage().getImplementationVersion());
+
+    /**
+     * Maps module names to {@link #moduleHash(String)}.
+     */
+    private static final Map<String, String> MODULE_HASHES = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Maps code source locations to {@link #codeSourceHash(URL)}.
+     */
+    private static final Map<URL, String> CODE_SOURCE_HASHES = new ConcurrentHashMap<URL, String>();
+
+    /**
+     * Maps canonical cache file paths to monitors: {@link FileLock}s are held by the JVM, so instances in the same JVM
+     * must not lock the same file concurrently.
+     */
+    private static final ConcurrentMap<String, Object> FILE_MONITORS = new ConcurrentHashMap<String, Object>();
+
+    private final Object                monitor;
+    private final FileChannel           channel;
+    private final Map<ByteBuffer, Long> index = new HashMap<ByteBuffer, Long>();
+    @Nullable private MappedByteBuffer  mapped;
+    private int                         hits, misses;
+
+    /**
+     * Opens the cache file, or creates it if it does not exist.
+     */
+    @SuppressWarnings("resource") public
+    ResultCache(File file) throws IOException {
+
+        Object monitor = new Object();
+        Object tmp     = ResultCache.FILE_MONITORS.putIfAbsent(file.getCanonicalPath(), monitor);
+        this.monitor   = tmp != null ? tmp : monitor;
+
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+
+        // Another process may be appending an entry right now, which must not be mistaken for an incomplete one.
+        synchronized (this.monitor) {
+            try (FileLock lock = this.channel.lock()) {
+                this.mapped = this.load();
+            }
+        }
+    }
+
+    /**
+     * Initializes the file iff it has no valid header, indexes its entries, and discards an incompletely written
+     * entry.
+     */
+    private MappedByteBuffer
+    load() throws IOException {
+
+        long size = this.channel.size();
+
+        ByteBuffer header = ByteBuffer.allocate(ResultCache.HEADER);
+        if (size >= ResultCache.HEADER) this.channel.read(header, 0);
+        header.flip();
+        if (
+            size < ResultCache.HEADER
+            || header.getInt() != ResultCache.MAGIC
+            || header.getInt() != ResultCache.VERSION
+        ) {
+            header = ByteBuffer.allocate(ResultCache.HEADER);
+            header.putInt(ResultCache.MAGIC).putInt(ResultCache.VERSION).flip();
+            this.channel.truncate(0);
+            this.channel.write(header, 0);
+            size = ResultCache.HEADER;
+        }
+
+        MappedByteBuffer mapped = this.channel.map(MapMode.READ_ONLY, 0, size);
+
+        long position = ResultCache.HEADER;
+        while (position + ResultCache.KEY_LENGTH + 4 <= size) {
+
+            byte[] key = new byte[ResultCache.KEY_LENGTH];
+            mapped.position((int) position);
+            mapped.get(key);
+            int length = mapped.getInt();
+
+            long payload = position + ResultCache.KEY_LENGTH + 4;
+            if (length < 0 || payload + length > size) break;
+
+            this.index.put(ByteBuffer.wrap(key), payload);
+            position = payload + length;
+        }
+
+        // Discard an incompletely written entry.
+        if (position < size) {
+            this.channel.truncate(position);
+            mapped = this.channel.map(MapMode.READ_ONLY, 0, position);
+        }
+
+        return mapped;
+    }
+
+    /**
+     * @return The messages that a checker with the given configuration issued for the file with the given name and
+     *         content, or {@code null} iff the cache has no such entry
+     */
+    @Nullable public synchronized MessageCollector
+    get(Configuration checkerConfiguration, String fileName, String code) throws IOException {
+
+        Long payload = this.index.get(ByteBuffer.wrap(ResultCache.key(checkerConfiguration, fileName, code)));
+        if (payload == null) {
+            this.misses++;
+            return null;
+        }
+
+        MappedByteBuffer mapped = this.mapped;
+        if (mapped == null || payload >= mapped.capacity()) {
+            this.mapped = (mapped = this.channel.map(MapMode.READ_ONLY, 0, this.channel.size()));
+        }
+
+        ByteBuffer b = mapped.duplicate();
+        b.position((int) (long) payload);
+
+        final MessageCollector result = new MessageCollector();
+        for (int i = b.getInt(); i > 0; i--) {
+            int line   = b.getInt();
+            int column = b.getInt();
+
+            String sourceName = ResultCache.getString(b);
+            String key        = ResultCache.getString(b);
+            String message    = ResultCache.getString(b);
+
+            result.add(line, column, sourceName, key, fileName, message == null ? "" : message);
+        }
+
+        this.hits++;
+        return result;
+    }
+
+    /**
+     * Stores the messages that the <var>recorder</var> recorded. Results with exceptions are not stored.
+     */
+    public synchronized void
+    put(Configuration checkerConfiguration, String fileName, String code, AuditEventRecorder recorder)
+    throws IOException {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream      dos  = new DataOutputStream(baos);
+
+        dos.write(ResultCache.key(checkerConfiguration, fileName, code));
+        dos.writeInt(0); // Placeholder for the payload length.
+        dos.writeInt(recorder.size());
+        for (int i = 0; i < recorder.size(); i++) {
+            if (recorder.getException(i) != null) return;
+
+            dos.writeInt(recorder.getLine(i));
+            dos.writeInt(recorder.getColumn(i));
+            ResultCache.putString(dos, recorder.getSourceName(i));
+            ResultCache.putString(dos, recorder.getKey(i));
+            ResultCache.putString(dos, recorder.getMessage(i));
+        }
+        dos.flush();
+
+        ByteBuffer entry = ByteBuffer.wrap(baos.toByteArray());
+        entry.putInt(ResultCache.KEY_LENGTH, entry.capacity() - ResultCache.KEY_LENGTH - 4);
+
+        // Other instances, in this and in other processes, may append concurrently.
+        long position;
+        synchronized (this.monitor) {
+            try (FileLock lock = this.channel.lock()) {
+                position = this.channel.size();
+                while (entry.hasRemaining()) this.channel.write(entry, position + entry.position());
+            }
+        }
+
+        byte[] key = new byte[ResultCache.KEY_LENGTH];
+        System.arraycopy(entry.array(), 0, key, 0, key.length);
+        this.index.put(ByteBuffer.wrap(key), position + ResultCache.KEY_LENGTH + 4);
+    }
+
+    /**
+     * @return The number of entries
+     */
+    public synchronized int
+    size() { return this.index.size(); }
+
+    /**
+     * @return The number of {@link #get(Configuration, String, String)} invocations that found an entry
+     */
+    public synchronized int
+    getHits() { return this.hits; }
+
+    /**
+     * @return The number of {@link #get(Configuration, String, String)} invocations that found no entry
+     */
+    public synchronized int
+    getMisses() { return this.misses; }
+
+    @Override public synchronized void
+    close() throws IOException {
+        this.mapped = null;
+        this.channel.close();
+    }
+
+    /**
+     * @return The hash of the configuration, of its modules' implementation and of the locale of the messages,
+     *         followed by the hash of the file name and the content
+     */
+    private static byte[]
+    key(Configuration checkerConfiguration, String fileName, String code) {
+
+        byte[] result = new byte[ResultCache.KEY_LENGTH];
+
+        StringBuilder sb = new StringBuilder(ResultCache.CHECKSTYLE_VERSION);
+        sb.append('\0').append(MessageTemplates.getLocale());
+        ResultCache.appendModuleHashes(checkerConfiguration, sb.append('\0'));
+        sb.append('\0').append(CheckerPool.key(checkerConfiguration));
+
+        System.arraycopy(ResultCache.sha256(sb.toString()), 0, result, 0, 32);
+        System.arraycopy(ResultCache.sha256(fileName + '\0' + code), 0, result, 32, 32);
+
+        return result;
+    }
+
+    private static void
+    appendModuleHashes(Configuration configuration, StringBuilder sb) {
+        sb.append(ResultCache.moduleHash(configuration.getName())).append(' ');
+        for (Configuration child : configuration.getChildren()) ResultCache.appendModuleHashes(child, sb);
+    }
+
+    /**
+     * Entries must become invalid when the implementation of a check changes, e.g. that of a cs-contrib check, even
+     * if the Checkstyle version does not. Modules that are configured by their qualified class name are identified
+     * by the hash of their complete code source, i.e. of the JAR file or the class directory, so that changes of
+     * their superclasses, helper classes and message bundles are also covered, as long as these come from the same
+     * code source. Other modules (typically those of Checkstyle itself) are covered by the {@link
+     * #CHECKSTYLE_VERSION}.
+     *
+     * @return A string that identifies the implementation of the module with the given <var>name</var>
+     */
+    private static String
+    moduleHash(String name) {
+
+        String result = ResultCache.MODULE_HASHES.get(name);
+        if (result != null) return result;
+
+        Class<?> c;
+        try {
+            c = Class.forName(name, false, ResultCache.class.getClassLoader());
+        } catch (ClassNotFoundException cnfe) {
+            c = null;
+        } catch (LinkageError le) {
+            c = null;
+        }
+
+        if (c == null) {
+            result = "-";
+        } else {
+            CodeSource cs       = c.getProtectionDomain().getCodeSource();
+            URL        location = cs == null ? null : cs.getLocation();
+
+            // Without a code source, the implementation cannot be identified, so entries must not outlive this JVM.
+            result = location == null ? UUID.randomUUID().toString() : ResultCache.codeSourceHash(location);
+        }
+
+        ResultCache.MODULE_HASHES.put(name, result);
+        return result;
+    }
+
+    /**
+     * @return The SHA-256 hash of the JAR file or of the names and contents of all files under the class directory
+     *         at the given <var>location</var>; or, iff that cannot be read, a random string, so that entries do not
+     *         outlive this JVM
+     */
+    private static String
+    codeSourceHash(URL location) {
+
+        String result = ResultCache.CODE_SOURCE_HASHES.get(location);
+        if (result != null) return result;
+
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+
+            File file = "file".equals(location.getProtocol()) ? new File(location.toURI()) : null;
+            if (file != null && file.isDirectory()) {
+                ResultCache.hashDirectory(file, "", md);
+            } else {
+                try (InputStream is = location.openStream()) {
+                    ResultCache.hash(is, md);
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+            }
+            result = sb.toString();
+        } catch (IOException ioe) {
+            result = UUID.randomUUID().toString();
+        } catch (URISyntaxException use) {
+            result = UUID.randomUUID().toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        }
+
+        ResultCache.CODE_SOURCE_HASHES.put(location, result);
+        return result;
+    }
+
+    private static void
+    hashDirectory(File directory, String path, MessageDigest md) throws IOException {
+
+        File[] members = directory.listFiles();
+        if (members == null) throw new IOException("Cannot list \"" + directory + "\"");
+
+        // Hash in a defined order, so that the result does not depend on the file system.
+        Arrays.sort(members);
+
+        for (File member : members) {
+            String memberPath = path + '/' + member.getName();
+            if (member.isDirectory()) {
+                ResultCache.hashDirectory(member, memberPath, md);
+            } else {
+                md.update((memberPath + '\0').getBytes(StandardCharsets.UTF_8));
+                try (InputStream is = new FileInputStream(member)) {
+                    ResultCache.hash(is, md);
+                }
+            }
+        }
+    }
+
+    private static void
+    hash(InputStream is, MessageDigest md) throws IOException {
+        byte[] buffer = new byte[8192];
+        for (int n; (n = is.read(buffer)) != -1;) md.update(buffer, 0, n);
+    }
+
+    private static byte[]
+    sha256(String s) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        }
+    }
+
+    private static void
+    putString(DataOutputStream dos, @Nullable String s) throws IOException {
+
+        if (s == null) {
+            dos.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    @Nullable private static String
+    getString(ByteBuffer b) {
+
+        int length = b.getInt();
+        if (length == -1) return null;
+
+        byte[] bytes = new byte[length];
+        b.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,156 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import org.junit.Assert;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Verifies that the cost of an operation grows no faster than linearly with the size of its input.
+ *
+ * @see PerformanceTests
+ */
+public final
+class Scaling {
+
+    private Scaling() {}
+
+    /**
+     * Differences of the retained heap below this size are considered noise of the garbage collector.
+     */
+    private static final long RETAINED_BYTES_NOISE = 1L << 20;
+
+    /**
+     * An operation whose input size can be chosen.
+     */
+    public
+    interface SizedOperation {
+
+        /**
+         * Executes the operation on an input of the given <var>size</var>.
+         *
+         * @return An object that keeps the state of the operation reachable while the retained heap is measured, or
+         *         {@code null}
+         */
+        @Nullable Object run(int size);
+    }
+
+    /**
+     * Executes the <var>operation</var> for each of the <var>sizes</var> (which must be ascending), and fails if the
+     * execution time or the retained heap grows significantly faster than the size.
+     * <p>
+     *   Execution times are the best of three runs, and the smallest size also serves as a warm-up. A
+     *   <var>tolerance</var> of 3 means that, when the size grows ten-fold, the cost must not grow more than
+     *   thirty-fold; a quadratic algorithm would take a hundred times as long.
+     * </p>
+     * <p>
+     *   The retained heap is the growth of the used heap (after garbage collection) through the operation, while
+     *   the result of the operation is still reachable; growths below one megabyte are not significant.
+     * </p>
+     * <p>
+     *   Only {@link PerformanceTests} should invoke this method.
+     * </p>
+     */
+    public static void
+    assertLinear(String name, double tolerance, SizedOperation operation, int... sizes) {
+
+        final long[] nanos = new long[sizes.length];
+        final long[] bytes = new long[sizes.length];
+
+        for (int i = 0; i < sizes.length; i++) {
+
+            final int size = sizes[i];
+
+            nanos[i] = Long.MAX_VALUE;
+            for (int j = 0; j < 3; j++) {
+                final long start = System.nanoTime();
+                operation.run(size);
+                nanos[i] = Math.min(nanos[i], System.nanoTime() - start);
+            }
+
+            final long before = Scaling.usedHeapAfterGc();
+            Object     result = operation.run(size);
+            bytes[i] = Math.max(0, Scaling.usedHeapAfterGc() - before);
+            if (result != null) result.hashCode(); // Keep the result reachable up to here.
+
+            System.out.println(String.format(
+                Locale.US,
+                "%s: size %,d: %,d ns (%,.1f ns/unit), %,d bytes retained",
+                name,
+                size,
+                nanos[i],
+                (double) nanos[i] / size,
+                bytes[i]
+            ));
+        }
+
+        for (int i = 1; i < sizes.length; i++) {
+
+            final double sizeRatio = (double) sizes[i] / sizes[i - 1];
+
+            final double timeRatio = (double) nanos[i] / nanos[i - 1];
+            Assert.assertTrue(
+                String.format(
+                    Locale.US,
+                    "%s: Size grew %.1f-fold from %,d to %,d, but execution time grew %.1f-fold",
+                    name,
+                    sizeRatio,
+                    sizes[i - 1],
+                    sizes[i],
+                    timeRatio
+                ),
+                timeRatio <= sizeRatio * tolerance
+            );
+
+            if (bytes[i] <= Scaling.RETAINED_BYTES_NOISE) continue;
+
+            final double bytesRatio = (double) bytes[i] / Math.max(bytes[i - 1], Scaling.RETAINED_BYTES_NOISE);
+            Assert.assertTrue(
+                String.format(
+                    Locale.US,
+                    "%s: Size grew %.1f-fold from %,d to %,d, but retained heap grew %.1f-fold",
+                    name,
+                    sizeRatio,
+                    sizes[i - 1],
+                    sizes[i],
+                    bytesRatio
+                ),
+                bytesRatio <= sizeRatio * tolerance
+            );
+        }
+    }
+
+    private static long
+    usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
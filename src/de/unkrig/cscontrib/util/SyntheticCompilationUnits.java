@@ -0,0 +1,414 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import com.puppycrawl.tools.checkstyle.JavaParser;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.puppycrawl.tools.checkstyle.api.DetailAST;
+import com.puppycrawl.tools.checkstyle.api.FileContents;
+import com.puppycrawl.tools.checkstyle.api.FileText;
+
+/**
+ * Generates large, syntactically valid compilation units that contain the constructs which the cs-contrib checks
+ * care about: Field blocks, parameter lists, local variable blocks, assignment runs, switch case groups, groups of
+ * one-line methods, and C++-style trailing comments.
+ * <p>
+ *   The output is a function of the arguments only, so benchmarks and corpora are reproducible.
+ * </p>
+ */
+public final
+class SyntheticCompilationUnits {
+
+    private SyntheticCompilationUnits() {}
+
+    private static final String[] TYPES = { "int", "double", "String", "long", "java.util.List<String>", "char[]" };
+    private static final String[] MODIFIERS = { "public", "public static", "private", "protected final", "" };
+
+    /**
+     * Generates a compilation unit with one top-level class that contains <var>blocks</var> blocks, each of which
+     * is a field block, a method with a parameter list, local variables, assignments and a switch statement, or a
+     * group of one-line methods.
+     *
+     * @param misalignmentRate The probability that any given line within an aligned group is misaligned; 0 yields
+     *                         a compilation unit without any alignment violations
+     */
+    public static String
+    generate(String className, int blocks, long seed, double misalignmentRate) {
+
+        final Random        r  = new Random(seed);
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("package generated;\n\npublic class ").append(className).append(" {\n");
+
+        for (int i = 0; i < blocks; i++) {
+            sb.append('\n');
+            switch (i % 3) {
+
+            case 0:
+                SyntheticCompilationUnits.fieldBlock(r, misalignmentRate, sb);
+                break;
+
+            case 1:
+                SyntheticCompilationUnits.method(i, r, misalignmentRate, sb);
+                break;
+
+            default:
+                SyntheticCompilationUnits.oneLineMethods(i, r, misalignmentRate, sb);
+                break;
+            }
+        }
+
+        return sb.append("}\n").toString();
+    }
+
+    /**
+     * Generates <var>lines</var> consecutive statements, each with a trailing C++-style comment, all comments
+     * aligned.
+     */
+    public static String
+    trailingComments(String className, int lines) {
+
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("public class ").append(className).append(" {\n    void method() {\n");
+        for (int i = 0; i < lines; i++) {
+            sb.append(SyntheticCompilationUnits.pad("        x" + (i % 100) + " = " + i + ";", 40));
+            sb.append("// Entry #").append(i).append('\n');
+        }
+
+        return sb.append("    }\n}\n").toString();
+    }
+
+    /**
+     * Generates a method call that is nested <var>depth</var> levels deep, once on one line, and once wrapped with
+     * one argument per line.
+     */
+    public static String
+    nestedCalls(String className, int depth) {
+
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("public class ").append(className).append(" {\n    void method() {\n        x = ");
+        for (int i = 0; i < depth; i++) sb.append("f(");
+        sb.append('0');
+        for (int i = 0; i < depth; i++) sb.append(')');
+        sb.append(";\n        y = f(\n");
+        for (int i = 1; i < depth; i++) {
+            sb.append(SyntheticCompilationUnits.pad("", 8 + 4 * i)).append("f(\n");
+        }
+        sb.append(SyntheticCompilationUnits.pad("", 8 + 4 * depth)).append("0\n");
+        for (int i = depth - 1; i > 0; i--) {
+            sb.append(SyntheticCompilationUnits.pad("", 8 + 4 * i)).append(")\n");
+        }
+
+        return sb.append("        );\n    }\n}\n").toString();
+    }
+
+    /**
+     * Generates a switch statement with <var>cases</var> aligned case groups.
+     */
+    public static String
+    hugeSwitch(String className, int cases) {
+
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("public class ").append(className).append(" {\n    void method() {\n        switch (x) {\n");
+        for (int i = 0; i < cases; i++) {
+            sb.append(SyntheticCompilationUnits.pad("        case " + i + ":", 24));
+            sb.append(i % 2 == 0 ? "x++; break;\n" : "return;\n");
+        }
+        sb.append(SyntheticCompilationUnits.pad("        default:", 24)).append("break;\n");
+
+        return sb.append("        }\n    }\n}\n").toString();
+    }
+
+    /**
+     * Generates <var>lines</var> lines that mix statements, trailing C++-style comments, C-style comments and
+     * comment-only lines.
+     */
+    public static String
+    denseComments(String className, int lines) {
+
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("public class ").append(className).append(" {\n    void method() {\n");
+        for (int i = 0; i < lines; i++) {
+            switch (i % 4) {
+            case 0:
+                sb.append(SyntheticCompilationUnits.pad("        x = " + i + ";", 40)).append("// c").append(i);
+                break;
+            case 1:
+                sb.append(SyntheticCompilationUnits.pad("        /* " + i + " */ y = 1;", 40)).append("// c");
+                break;
+            case 2:
+                sb.append(SyntheticCompilationUnits.pad("", 40)).append("// Comment only");
+                break;
+            default:
+                sb.append(SyntheticCompilationUnits.pad("        z = /* a */ 2; /* b */", 40)).append("//");
+                break;
+            }
+            sb.append('\n');
+        }
+
+        return sb.append("    }\n}\n").toString();
+    }
+
+    /**
+     * Writes a corpus of <var>units</var> {@link #generate(String, int, long, double) generated} compilation units
+     * into the <var>directory</var>, UTF-8-encoded; existing files are overwritten.
+     *
+     * @return The written files
+     */
+    public static File[]
+    writeCorpus(File directory, int units, int blocksPerUnit, long seed, double misalignmentRate)
+    throws IOException {
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory \"" + directory + "\"");
+        }
+
+        final File[] result = new File[units];
+        for (int i = 0; i < units; i++) {
+            String className = "Unit" + i;
+
+            result[i] = new File(directory, className + ".java");
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(result[i]), StandardCharsets.UTF_8)) {
+                w.write(SyntheticCompilationUnits.generate(className, blocksPerUnit, seed + i, misalignmentRate));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The number of AST nodes, including comment nodes, in the given compilation unit
+     */
+    public static int
+    countTokens(String code) {
+
+        final FileContents fileContents = new FileContents(
+            new FileText(new File(InMemoryChecker.DEFAULT_FILE_NAME), InMemoryChecker.lines(code))
+        );
+
+        try {
+            return SyntheticCompilationUnits.countNodes(
+                JavaParser.appendHiddenCommentNodes(JavaParser.parse(fileContents))
+            );
+        } catch (CheckstyleException ce) {
+            throw new IllegalArgumentException(ce);
+        }
+    }
+
+    private static int
+    countNodes(DetailAST ast) {
+
+        int result = 0;
+        for (DetailAST sibling = ast; sibling != null; sibling = sibling.getNextSibling()) {
+            result++;
+            DetailAST firstChild = sibling.getFirstChild();
+            if (firstChild != null) result += SyntheticCompilationUnits.countNodes(firstChild);
+        }
+
+        return result;
+    }
+
+    private static void
+    fieldBlock(Random r, double misalignmentRate, StringBuilder sb) {
+
+        final int      n     = 2 + r.nextInt(7);
+        final String[] types = new String[n];
+        final String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            types[i] = SyntheticCompilationUnits.TYPES[r.nextInt(SyntheticCompilationUnits.TYPES.length)];
+            names[i] = SyntheticCompilationUnits.identifier("field", r);
+        }
+
+        SyntheticCompilationUnits.declarations("    ", types, names, r, misalignmentRate, sb);
+    }
+
+    private static void
+    method(int index, Random r, double misalignmentRate, StringBuilder sb) {
+
+        // Parameter list.
+        {
+            final int      n     = 1 + r.nextInt(6);
+            final String[] types = new String[n];
+            final String[] names = new String[n];
+            for (int i = 0; i < n; i++) {
+                types[i] = SyntheticCompilationUnits.TYPES[r.nextInt(SyntheticCompilationUnits.TYPES.length)];
+                names[i] = SyntheticCompilationUnits.identifier("param", r);
+            }
+            final int typeWidth = SyntheticCompilationUnits.maxLength(types);
+
+            sb.append("    public static void meth").append(index).append("(\n");
+            for (int i = 0; i < n; i++) {
+                sb.append("        ");
+                sb.append(SyntheticCompilationUnits.maybePad(types[i], typeWidth, r, misalignmentRate));
+                sb.append(' ').append(names[i]).append(i == n - 1 ? "\n" : ",\n");
+            }
+            sb.append("    ) {\n");
+        }
+
+        // Local variables.
+        {
+            final int      n     = 2 + r.nextInt(5);
+            final String[] types = new String[n];
+            final String[] names = new String[n];
+            for (int i = 0; i < n; i++) {
+                types[i] = SyntheticCompilationUnits.TYPES[r.nextInt(3)];
+                names[i] = SyntheticCompilationUnits.identifier("local", r);
+            }
+            SyntheticCompilationUnits.declarations("        ", types, names, r, misalignmentRate, sb);
+        }
+
+        // Assignments.
+        {
+            sb.append('\n');
+
+            final int      n     = 2 + r.nextInt(6);
+            final String[] names = new String[n];
+            for (int i = 0; i < n; i++) names[i] = SyntheticCompilationUnits.identifier("v", r);
+            final int nameWidth = SyntheticCompilationUnits.maxLength(names);
+
+            for (int i = 0; i < n; i++) {
+                sb.append("        ");
+                sb.append(SyntheticCompilationUnits.maybePad(names[i], nameWidth, r, misalignmentRate));
+                sb.append(" = ").append(r.nextInt(1000)).append(";\n");
+            }
+        }
+
+        // Switch statement with case groups.
+        {
+            sb.append("\n        switch (x) {\n");
+
+            final int      n      = 2 + r.nextInt(10);
+            final String[] labels = new String[n];
+            for (int i = 0, value = 0; i < n - 1; i++, value += 1 + r.nextInt(50)) labels[i] = "case " + value + ":";
+            labels[n - 1] = "default:";
+            final int labelWidth = SyntheticCompilationUnits.maxLength(labels);
+
+            for (int i = 0; i < n; i++) {
+                sb.append("        ");
+                sb.append(SyntheticCompilationUnits.maybePad(labels[i], labelWidth, r, misalignmentRate));
+                sb.append(' ').append(r.nextBoolean() ? "break;" : "x++; break;").append('\n');
+            }
+
+            sb.append("        }\n");
+        }
+
+        sb.append("    }\n");
+    }
+
+    private static void
+    oneLineMethods(int index, Random r, double misalignmentRate, StringBuilder sb) {
+
+        final int      n         = 2 + r.nextInt(5);
+        final String[] modifiers = new String[n];
+        final String[] names     = new String[n];
+        for (int i = 0; i < n; i++) {
+            String m = SyntheticCompilationUnits.MODIFIERS[r.nextInt(SyntheticCompilationUnits.MODIFIERS.length)];
+            modifiers[i] = m.isEmpty() ? "void" : m + " void";
+            names[i]     = SyntheticCompilationUnits.identifier("m" + index + "_", r) + "()";
+        }
+        final int modifiersWidth = SyntheticCompilationUnits.maxLength(modifiers);
+        final int namesWidth     = SyntheticCompilationUnits.maxLength(names);
+
+        for (int i = 0; i < n; i++) {
+            boolean misaligned = SyntheticCompilationUnits.misaligned(r, misalignmentRate);
+            sb.append("    ");
+            sb.append(misaligned ? modifiers[i] : SyntheticCompilationUnits.pad(modifiers[i], modifiersWidth));
+            sb.append(' ');
+            sb.append(misaligned ? names[i] : SyntheticCompilationUnits.pad(names[i], namesWidth));
+            sb.append(" {}\n");
+        }
+    }
+
+    /**
+     * Generates a block of variable declarations with aligned names and initializers.
+     */
+    private static void
+    declarations(
+        String        indentation,
+        String[]      types,
+        String[]      names,
+        Random        r,
+        double        misalignmentRate,
+        StringBuilder sb
+    ) {
+        final int typeWidth = SyntheticCompilationUnits.maxLength(types);
+        final int nameWidth = SyntheticCompilationUnits.maxLength(names);
+
+        for (int i = 0; i < types.length; i++) {
+            boolean misaligned = SyntheticCompilationUnits.misaligned(r, misalignmentRate);
+            sb.append(indentation);
+            sb.append(misaligned ? types[i] : SyntheticCompilationUnits.pad(types[i], typeWidth));
+            sb.append(' ');
+            sb.append(misaligned ? names[i] : SyntheticCompilationUnits.pad(names[i], nameWidth));
+            sb.append(" = null;");
+            if (r.nextInt(4) == 0) sb.append(" // ").append(names[i]);
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * @return The string, padded to the given width, unless the line is to be misaligned
+     */
+    private static String
+    maybePad(String s, int width, Random r, double misalignmentRate) {
+        return SyntheticCompilationUnits.misaligned(r, misalignmentRate) ? s : SyntheticCompilationUnits.pad(s, width);
+    }
+
+    private static boolean
+    misaligned(Random r, double misalignmentRate) { return misalignmentRate > 0 && r.nextDouble() < misalignmentRate; }
+
+    private static String
+    identifier(String prefix, Random r) {
+        return prefix + Integer.toString(r.nextInt(1 << (4 * (1 + r.nextInt(4)))), 36);
+    }
+
+    private static int
+    maxLength(String[] strings) {
+        int result = 0;
+        for (String s : strings) result = Math.max(result, s.length());
+        return result;
+    }
+
+    private static String
+    pad(String s, int width) {
+        StringBuilder sb = new StringBuilder(s);
+        while (sb.length() < width) sb.append(' ');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,136 @@
+
+/*
+ * de.unkrig.cs-contrib - Additional checks, filters and quickfixes for CheckStyle and Eclipse-CS
+ *
+ * Copyright (c) 2019, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.cscontrib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.ClassRule;
+import org.junit.rules.ExternalResource;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * A corpus of {@link SyntheticCompilationUnits#writeCorpus(File, int, int, long, double) synthetic compilation
+ * units} in a new temporary directory, which is written on first request and deleted (with everything else that
+ * was put into it) after the test class, when used as a {@link ClassRule}:
+ * <pre>
+ *   &#64;ClassRule public static final TemporaryCorpus CORPUS = new TemporaryCorpus("cs-contrib-foo", 100, 12, 0, 0.1);
+ * </pre>
+ * Because each instance has its own directory, concurrent test runs do not interfere.
+ */
+public
+class TemporaryCorpus extends ExternalResource {
+
+    private final String prefix;
+    private final int    units, blocksPerUnit;
+    private final long   seed;
+    private final double misalignmentRate;
+
+    @Nullable private File   directory;
+    @Nullable private File[] files;
+
+    /**
+     * @param prefix The prefix of the name of the temporary directory
+     * @see          SyntheticCompilationUnits#writeCorpus(File, int, int, long, double)
+     */
+    public
+    TemporaryCorpus(String prefix, int units, int blocksPerUnit, long seed, double misalignmentRate) {
+        this.prefix           = prefix;
+        this.units            = units;
+        this.blocksPerUnit    = blocksPerUnit;
+        this.seed             = seed;
+        this.misalignmentRate = misalignmentRate;
+    }
+
+    /**
+     * @return The directory that contains the corpus
+     */
+    public synchronized File
+    getDirectory() {
+
+        File result = this.directory;
+        if (result != null) return result;
+
+        try {
+            return (this.directory = Files.createTempDirectory(this.prefix).toFile());
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+    }
+
+    /**
+     * @return The files of the corpus, which are written on first request
+     */
+    public synchronized File[]
+    getFiles() {
+
+        File[] result = this.files;
+        if (result != null) return result;
+
+        try {
+            return (this.files = SyntheticCompilationUnits.writeCorpus(
+                this.getDirectory(),
+                this.units,
+                this.blocksPerUnit,
+                this.seed,
+                this.misalignmentRate
+            ));
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+    }
+
+    /**
+     * Deletes the directory and everything in it. A later request writes a new corpus.
+     */
+    public synchronized void
+    delete() {
+
+        File directory = this.directory;
+        if (directory == null) return;
+
+        TemporaryCorpus.delete(directory);
+        this.directory = null;
+        this.files     = null;
+    }
+
+    @Override protected void
+    after() { this.delete(); }
+
+    private static void
+    delete(File file) {
+
+        File[] members = file.listFiles();
+        if (members != null) {
+            for (File member : members) TemporaryCorpus.delete(member);
+        }
+
+        file.delete();
+    }
+}